@@ -1,15 +1,43 @@
 package CLI;
 
 import java.io.*;
-import java.text.SimpleDateFormat;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import ledger.Categorizer;
+import ledger.DayFiles;
+import ledger.CsvImporter;
+import ledger.LedgerDates;
+import ledger.LedgerExporter;
+import ledger.LedgerLoader;
+import ledger.LedgerStore;
+import ledger.MalformedLine;
+import ledger.Metrics;
+import ledger.Money;
+import ledger.RecordBatch;
+import ledger.RecordParser;
+import ledger.ReportEngine;
+import ledger.Rollup;
+import ledger.StorageLocks;
 
 public class ExpenseTrackerCLI {
     private static final Scanner sc = new Scanner(System.in);
     private static final String BASE_DIR = "CLI"; // store data inside CLI folder
     private static final String BUDGET_FILE = BASE_DIR + "/budget.txt";
+    private static final RecordParser parser = new RecordParser();
+    private static final Metrics.Histogram VIEW_TIME = Metrics.histogram("cli.view");
+    private static final Metrics.Histogram SUMMARY_TIME = Metrics.histogram("cli.summary");
+    private static final Metrics.Counter ROWS_READ = Metrics.counter("rows.read");
+    private static final Metrics.Counter BYTES_READ = Metrics.counter("bytes.read");
+    private static final Metrics.Counter FILES_READ = Metrics.counter("files.read");
+    private static final Metrics.Counter ROWS_WRITTEN = Metrics.counter("rows.written");
+    private static final Metrics.Counter BYTES_WRITTEN = Metrics.counter("bytes.written");
+    private static final Metrics.Counter MALFORMED = Metrics.counter("lines.malformed");
+    // Daily expense files, leaving out budget.txt
+    private static final FilenameFilter EXPENSE_FILES =
+        (d, name) -> name.endsWith(".txt") && !name.equals(new File(BUDGET_FILE).getName());
 
     public static void main(String[] args) {
+        Metrics.registerMBean();
         while (true) {
             System.out.println("\n========= EXPENSE TRACKER CLI =========");
             System.out.println("1. Add Expense");
@@ -19,7 +47,11 @@ public class ExpenseTrackerCLI {
             System.out.println("5. Delete Expense by Date");
             System.out.println("6. Clear All Expenses");
             System.out.println("7. Clear Screen");
-            System.out.println("8. Exit");
+            System.out.println("8. Import CSV Statement");
+            System.out.println("9. Export Expenses");
+            System.out.println("10. Stats");
+            System.out.println("11. Reports");
+            System.out.println("12. Exit");
             System.out.print("Choose an option: ");
 
             String choice = sc.nextLine();
@@ -32,11 +64,14 @@ public class ExpenseTrackerCLI {
                 case "5" -> deleteExpense();
                 case "6" -> clearAllExpenses();
                 case "7" -> clearScreen();
-                case "8" -> {
+                case "8" -> importStatement();
+                case "9" -> exportExpenses();
+                case "10", "stats" -> showStats();
+                case "11", "report" -> showReport();
+                case "12" -> {
                     System.out.println("Exiting... Goodbye!");
                     return;
                 }
-                // case "9" -> addDummyData();
                 default -> System.out.println("Invalid choice! Please try again.");
             }
         }
@@ -46,21 +81,19 @@ public class ExpenseTrackerCLI {
     private static void addExpense() {
         try {
             System.out.print("Enter amount: ");
-            double amount = Double.parseDouble(sc.nextLine());
+            long amount = Money.parse(sc.nextLine());
             System.out.print("Enter category: ");
-            String category = sc.nextLine();
+            String category = DayFiles.clean(sc.nextLine());
             System.out.print("Enter description: ");
-            String description = sc.nextLine();
+            String description = DayFiles.clean(sc.nextLine());
 
-            String filename = getDateFileName(new Date());
+            Date now = new Date();
             File dir = new File(BASE_DIR);
             if (!dir.exists()) dir.mkdirs();
-
-            try (BufferedWriter bw = new BufferedWriter(new FileWriter(BASE_DIR + "/" + filename, true))) {
-                String date = new SimpleDateFormat("dd-MM-yyyy HH:mm").format(new Date());
-                bw.write(date + "|" + amount + "|" + category + "|" + description);
-                bw.newLine();
-            }
+            RecordBatch row = new RecordBatch(1);
+            row.add(LedgerDates.toEpochDay(now), LedgerDates.toMinute(now), amount, category, description);
+            BYTES_WRITTEN.add(DayFiles.append(dir, ExpenseTrackerCLI::dayFile, row));
+            ROWS_WRITTEN.increment();
 
             System.out.println(" Expense added successfully!");
         } catch (Exception e) {
@@ -71,24 +104,40 @@ public class ExpenseTrackerCLI {
     // 📄 VIEW EXPENSES
     private static void viewExpenses() {
         try {
-            File dir = new File(BASE_DIR);
-            File[] files = dir.listFiles((d, name) -> name.endsWith(".txt"));
+            File[] files = listExpenseFiles();
             if (files == null || files.length == 0) {
                 System.out.println("No expenses found.");
                 return;
             }
 
+            long start = System.nanoTime();
+            StringBuilder out = new StringBuilder(256);
             for (File file : files) {
                 System.out.println("\n📅 File: " + file.getName());
-                try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-                    String line;
-                    while ((line = br.readLine()) != null) {
-                        String[] parts = line.split("\\|");
-                        if (parts.length == 4)
-                            System.out.printf("%s | ₹%s | %s | %s%n", parts[0], parts[1], parts[2], parts[3]);
-                    }
+                try (InputStream in = new FileInputStream(file)) {
+                    parser.parse(in, new RecordParser.Handler() {
+                        @Override
+                        public void record(int day, int minute, long paise, String category, String description) {
+                            ROWS_READ.increment();
+                            out.setLength(0);
+                            LedgerDates.appendDateTime(out, day, minute).append(" | ₹");
+                            Money.appendGrouped(out, paise)
+                                .append(" | ").append(category)
+                                .append(" | ").append(description);
+                            System.out.println(out);
+                        }
+
+                        @Override
+                        public void malformed(long offset, int line, String reason) {
+                            MALFORMED.increment();
+                            reportMalformed(file, offset, line, reason);
+                        }
+                    });
                 }
+                FILES_READ.increment();
+                BYTES_READ.add(file.length());
             }
+            VIEW_TIME.recordSince(start);
         } catch (Exception e) {
             System.out.println("Error reading expenses: " + e.getMessage());
         }
@@ -98,13 +147,13 @@ public class ExpenseTrackerCLI {
     private static void setBudget() {
         try {
             System.out.print("Enter monthly budget: ");
-            double budget = Double.parseDouble(sc.nextLine());
+            long budget = Money.parse(sc.nextLine());
 
             File dir = new File(BASE_DIR);
             if (!dir.exists()) dir.mkdirs();
 
-            try (BufferedWriter bw = new BufferedWriter(new FileWriter(BUDGET_FILE))) {
-                bw.write(String.valueOf(budget));
+            try (BufferedWriter bw = new BufferedWriter(new FileWriter(BUDGET_FILE, StandardCharsets.UTF_8))) {
+                bw.write(Money.plain(budget));
             }
 
             System.out.println(" Monthly budget set successfully!");
@@ -116,33 +165,33 @@ public class ExpenseTrackerCLI {
     // 📊 VIEW SUMMARY
     private static void viewSummary() {
         try {
-            double total = 0;
-            File dir = new File(BASE_DIR);
-            File[] files = dir.listFiles((d, name) -> name.endsWith(".txt"));
-            if (files != null) {
-                for (File file : files) {
-                    try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-                        String line;
-                        while ((line = br.readLine()) != null) {
-                            String[] parts = line.split("\\|");
-                            if (parts.length >= 2) total += Double.parseDouble(parts[1]);
-                        }
-                    }
-                }
-            }
+            long start = System.nanoTime();
+            Rollup rollup = Rollup.open(new File(BASE_DIR), EXPENSE_FILES);
+            SUMMARY_TIME.recordSince(start);
+            long total = rollup.total();
+            long thisMonth = rollup.monthTotal(LedgerDates.monthIndex(LedgerDates.today()));
 
-            double budget = 0;
+            long budget = 0;
             File bFile = new File(BUDGET_FILE);
             if (bFile.exists()) {
-                try (BufferedReader br = new BufferedReader(new FileReader(bFile))) {
-                    budget = Double.parseDouble(br.readLine());
+                try (BufferedReader br = new BufferedReader(new FileReader(bFile, StandardCharsets.UTF_8))) {
+                    budget = Money.parse(br.readLine());
                 }
             }
 
             System.out.println("\n========= SUMMARY =========");
-            System.out.println("Total Expenses: ₹" + total);
-            System.out.println("Monthly Budget: ₹" + budget);
-            System.out.println("Remaining: ₹" + (budget - total));
+            System.out.println("Total Expenses: ₹" + Money.appendGrouped(new StringBuilder(), total)
+                + " (" + rollup.count() + " entries)");
+            System.out.println("This Month: ₹" + Money.appendGrouped(new StringBuilder(), thisMonth));
+            System.out.println("Monthly Budget: ₹" + Money.appendGrouped(new StringBuilder(), budget));
+            System.out.println("Remaining: ₹" + Money.appendGrouped(new StringBuilder(), budget - total));
+            if (!rollup.categories().isEmpty()) {
+                System.out.println("\n--- By Category ---");
+                for (Map.Entry<String, long[]> cat : rollup.categories().entrySet()) {
+                    System.out.println(cat.getKey() + ": ₹" + Money.appendGrouped(new StringBuilder(), cat.getValue()[0])
+                        + " (" + cat.getValue()[1] + ")");
+                }
+            }
         } catch (Exception e) {
             System.out.println("Error viewing summary: " + e.getMessage());
         }
@@ -153,7 +202,18 @@ public class ExpenseTrackerCLI {
         System.out.print("Enter filename (e.g., 30-10-2025.txt): ");
         String filename = sc.nextLine();
         File file = new File(BASE_DIR + "/" + filename);
-        if (file.exists() && file.delete()) {
+        boolean deleted = false;
+        try {
+            int month = LedgerDates.monthIndex(LedgerDates.parseDay(filename, 0));
+            try (StorageLocks.Held held = StorageLocks.of(new File(BASE_DIR)).lock(month)) {
+                deleted = file.exists() && file.delete();
+                if (deleted) held.bump(month);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Not a dd-MM-yyyy.txt name, or no folder to lock: nothing to delete
+        }
+        if (deleted) {
+            // The rollup notices the missing file and drops its days on the next open
             System.out.println(" File deleted successfully!");
         } else {
             System.out.println(" File not found!");
@@ -166,14 +226,203 @@ public class ExpenseTrackerCLI {
         if (!sc.nextLine().equalsIgnoreCase("yes")) return;
 
         File dir = new File(BASE_DIR);
-        File[] files = dir.listFiles((d, name) -> name.endsWith(".txt"));
-        if (files != null) {
-            for (File f : files) f.delete();
+        try {
+            StorageLocks.Held held = StorageLocks.of(dir).lockAll();
+            try {
+                File[] files = dir.listFiles((d, name) -> name.endsWith(".txt"));
+                if (files != null) {
+                    for (File f : files) f.delete();
+                }
+            } finally {
+                held.close();
+            }
+        } catch (IOException e) {
+            System.out.println("Error clearing expenses: " + e.getMessage());
+            return;
         }
+        Rollup.invalidate(dir);
 
         System.out.println(" All expenses cleared!");
     }
 
+    // 📥 IMPORT CSV STATEMENT
+    private static void importStatement() {
+        try {
+            System.out.print("Enter CSV file path: ");
+            File csv = new File(sc.nextLine().trim());
+            if (!csv.isFile()) {
+                System.out.println(" File not found!");
+                return;
+            }
+            System.out.println("Column mapping (Enter for default):");
+            System.out.println("  " + CsvImporter.Mapping.DEFAULT_SPEC);
+            System.out.print("> ");
+            String spec = sc.nextLine().trim();
+            CsvImporter.Mapping mapping = CsvImporter.Mapping.parse(spec.isEmpty() ? CsvImporter.Mapping.DEFAULT_SPEC : spec);
+
+            File dir = new File(BASE_DIR);
+            if (!dir.exists()) dir.mkdirs();
+            long start = System.nanoTime();
+            // The summary's rollup re-reads the files this changes the next time it opens
+            CsvImporter.Result result = new CsvImporter(Categorizer.defaults()).run(csv, mapping,
+                rows -> writeGroupedByDay(dir, rows), null);
+
+            System.out.println(" Imported " + result.imported + " expenses in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms (" + result.skipped + " lines skipped)");
+            for (MalformedLine line : result.malformed) {
+                reportMalformed(csv, line.offset, line.line, line.reason);
+            }
+            if (result.malformedCount > result.malformed.size()) {
+                System.out.println(" ... and " + (result.malformedCount - result.malformed.size()) + " more bad lines");
+            }
+        } catch (Exception e) {
+            System.out.println("Error importing statement: " + e.getMessage());
+        }
+    }
+
+    // Appends the rows to their daily files, one write per day
+    private static void writeGroupedByDay(File dir, RecordBatch rows) throws IOException {
+        BYTES_WRITTEN.add(DayFiles.append(dir, ExpenseTrackerCLI::dayFile, rows));
+        ROWS_WRITTEN.add(rows.size());
+    }
+
+    // 📤 EXPORT EXPENSES
+    private static void exportExpenses() {
+        try {
+            System.out.print("Export to file (.csv or .jsonl): ");
+            File out = new File(sc.nextLine().trim());
+            System.out.print("From date dd-MM-yyyy (Enter for all): ");
+            String from = sc.nextLine().trim();
+            System.out.print("To date dd-MM-yyyy (Enter for all): ");
+            String to = sc.nextLine().trim();
+            System.out.print("Category (Enter for all): ");
+            String category = sc.nextLine().trim();
+
+            int fromDay = from.isEmpty() ? Integer.MIN_VALUE : LedgerDates.parseDay(from, 0);
+            int toDay = to.isEmpty() ? Integer.MAX_VALUE : LedgerDates.parseDay(to, 0);
+            LedgerExporter.Query query = new LedgerExporter.Query().between(fromDay, toDay);
+            if (!category.isEmpty()) query.categories(Collections.singleton(category));
+
+            // Daily files outside the range are never opened
+            List<File> files = new ArrayList<>();
+            File[] all = listExpenseFiles();
+            if (all != null) {
+                for (File file : all) {
+                    int day = dayOf(file);
+                    if (day == Integer.MIN_VALUE || (day >= fromDay && day <= toDay)) files.add(file);
+                }
+            }
+
+            long start = System.nanoTime();
+            LedgerExporter.Result result = new LedgerExporter().export(files, query, LedgerExporter.Format.forFile(out), out);
+            System.out.println(" Exported " + result.rows + " expenses from " + result.files + " files in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (Exception e) {
+            System.out.println("Error exporting expenses: " + e.getMessage());
+        }
+    }
+
+    // 📊 REPORTS
+    private static void showReport() {
+        try {
+            System.out.print("From date dd-MM-yyyy (Enter for all): ");
+            String from = sc.nextLine().trim();
+            System.out.print("To date dd-MM-yyyy (Enter for all): ");
+            String to = sc.nextLine().trim();
+            System.out.print("Top descriptions (Enter for " + ReportEngine.DEFAULT_TOP + "): ");
+            String top = sc.nextLine().trim();
+
+            int fromDay = from.isEmpty() ? Integer.MIN_VALUE : LedgerDates.parseDay(from, 0);
+            int toDay = to.isEmpty() ? Integer.MAX_VALUE : LedgerDates.parseDay(to, 0);
+            List<File> files = new ArrayList<>();
+            File[] all = listExpenseFiles();
+            if (all != null) {
+                for (File file : all) {
+                    int day = dayOf(file);
+                    if (day != Integer.MIN_VALUE && day >= fromDay && day <= toDay) files.add(file);
+                }
+            }
+
+            // The day files are parsed and the report summed on the same fork/join pool
+            long start = System.nanoTime();
+            LedgerStore store = new LedgerStore();
+            new LedgerLoader().load(files, new LedgerLoader.Listener() {
+                @Override
+                public void batch(RecordBatch batch, int filesDone, int filesTotal) {
+                    batch.appendTo(store);
+                }
+
+                @Override
+                public void malformed(MalformedLine line) {
+                    reportMalformed(line.file, line.offset, line.line, line.reason);
+                }
+            });
+            ReportEngine.Report report = new ReportEngine().run(store,
+                top.isEmpty() ? ReportEngine.DEFAULT_TOP : Integer.parseInt(top));
+            if (report.rows == 0) {
+                System.out.println("No expenses found.");
+                return;
+            }
+
+            System.out.println("\n========= MONTH x CATEGORY =========");
+            StringBuilder line = new StringBuilder(256);
+            line.append(String.format("%-8s", "Month"));
+            column(line, "Total");
+            for (String category : report.categories) column(line, category);
+            System.out.println(line);
+            for (int month = report.firstMonth + report.months - 1; month >= report.firstMonth; month--) {
+                line.setLength(0);
+                line.append(String.format("%-8s", LedgerDates.formatMonth(month)));
+                column(line, report.monthTotal(month));
+                for (int c = 0; c < report.categories.size(); c++) column(line, report.cell(month, c));
+                System.out.println(line);
+            }
+            line.setLength(0);
+            line.append(String.format("%-8s", "All"));
+            column(line, report.total);
+            for (int c = 0; c < report.categories.size(); c++) column(line, report.categoryTotal(c));
+            System.out.println(line);
+
+            System.out.println("\n========= YEAR OVER YEAR =========");
+            for (int year = report.lastYear(); year >= report.firstYear(); year--) {
+                double change = report.yearOverYear(year);
+                line.setLength(0);
+                line.append(year);
+                column(line, report.yearTotal(year));
+                line.append(Double.isNaN(change) ? "" : String.format("  %+.1f%%", change));
+                System.out.println(line);
+            }
+
+            System.out.println("\n========= TOP DESCRIPTIONS =========");
+            for (ReportEngine.DescriptionTotal entry : report.top) {
+                System.out.println(entry.description + ": ₹" + Money.appendGrouped(new StringBuilder(), entry.paise)
+                    + " (" + entry.count + ")");
+            }
+            System.out.println("\n " + report.rows + " expenses from " + files.size() + " files in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (Exception e) {
+            System.out.println("Error building report: " + e.getMessage());
+        }
+    }
+
+    // Right-aligned report column, cut to fit
+    private static void column(StringBuilder line, String text) {
+        line.append(String.format(" %14.14s", text));
+    }
+
+    private static void column(StringBuilder line, long paise) {
+        column(line, Money.appendGrouped(new StringBuilder(), paise).toString());
+    }
+
+    // Day a dd-MM-yyyy.txt file holds, or MIN_VALUE if the name does not decode
+    private static int dayOf(File file) {
+        try {
+            return LedgerDates.parseDay(file.getName(), 0);
+        } catch (RuntimeException ex) {
+            return Integer.MIN_VALUE;
+        }
+    }
+
     // 🧹 CLEAR SCREEN
     private static void clearScreen() {
         try {
@@ -184,8 +433,23 @@ public class ExpenseTrackerCLI {
     }
 
 
+    private static File[] listExpenseFiles() {
+        return new File(BASE_DIR).listFiles(EXPENSE_FILES);
+    }
+
+    private static void reportMalformed(File file, long offset, int line, String reason) {
+        System.out.println(" Skipped line " + line + " of " + file.getName() + " (byte " + offset + "): " + reason);
+    }
+
+    // 📈 STATS
+    private static void showStats() {
+        System.out.println("\n========= STATS =========");
+        System.out.print(Metrics.report());
+        System.out.println("JMX: " + Metrics.OBJECT_NAME);
+    }
+
     // 📅 Generate daily expense filename
-    private static String getDateFileName(Date date) {
-        return new SimpleDateFormat("dd-MM-yyyy").format(date) + ".txt";
+    private static File dayFile(int epochDay) {
+        return new File(BASE_DIR, LedgerDates.formatDay(epochDay) + ".txt");
     }
 }
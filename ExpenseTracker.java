@@ -3,22 +3,89 @@ import javax.swing.table.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
-import java.text.SimpleDateFormat;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.util.*;
 import javax.swing.border.*;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import ledger.Categorizer;
+import ledger.CategoryDictionary;
+import ledger.CsvImporter;
+import ledger.DayFiles;
+import ledger.DayIndex;
+import ledger.ExpenseIds;
+import ledger.ExpenseServer;
+import ledger.LedgerCellRenderer;
+import ledger.Journal;
+import ledger.LedgerAggregates;
+import ledger.LedgerDates;
+import ledger.LedgerExporter;
+import ledger.LedgerLoader;
+import ledger.LedgerQuery;
+import ledger.LedgerSnapshot;
+import ledger.LedgerStore;
+import ledger.LedgerTableModel;
+import ledger.MalformedLine;
+import ledger.Metrics;
+import ledger.Money;
+import ledger.RecordBatch;
+import ledger.RefreshScheduler;
+import ledger.ReportEngine;
 
 public class ExpenseTracker extends JFrame {
     private static final String DATA_FOLDER = "data";
     private static final String BUDGET_FILE = "monthly_budget.txt";
+    private static final int CHECKPOINT_MS = 5 * 60 * 1000;
+    private static final String NEW_CATEGORY = "New category...";
    
     private JTable expenseTable;
-    private DefaultTableModel tableModel;
-    private JTextField amountField, descField;
+    private final LedgerStore store = new LedgerStore(
+        new CategoryDictionary(new File(DATA_FOLDER, CategoryDictionary.FILE_NAME)));
+    private final LedgerTableModel tableModel = new LedgerTableModel(store);
+    private final StringBuilder currencyText = new StringBuilder(32);
+    private Journal journal;
+    private DayIndex dayIndex;
+    private LedgerSnapshot snapshot;
+    private javax.swing.Timer checkpointTimer;
+    // True while the store holds exactly what the data files hold, so a checkpoint may be taken
+    private boolean checkpointable;
+    private int checkpointVersion = -1;
+    private JTextField amountField, descField, searchField;
     private JComboBox<String> categoryCombo;
-    private JLabel totalLabel, monthlyLabel, categoryWiseLabel, budgetLabel, remainingLabel;
+    private boolean fillingCategories;
+    private JLabel totalLabel, monthlyLabel, categoryWiseLabel, budgetLabel, remainingLabel, burnLabel;
     private JSpinner dateSpinner, filterFromSpinner, filterToSpinner;
-    private double monthlyBudget = 0;
+    private JTextField filterMinField, filterMaxField;
+    private JButton filterCategoryBtn;
+    private Set<String> filterCategories;
+    private JProgressBar loadProgress;
+    private SwingWorker<Void, RecordBatch> loader;
+    private SwingWorker<CsvImporter.Result, Void> importer;
+    private String importMapping = CsvImporter.Mapping.DEFAULT_SPEC;
+    private long monthlyBudget = 0;
+   
+    // Stat card groups marked dirty with the refresh scheduler
+    private static final int CARDS_ROWS = 1;
+    private static final int CARDS_BUDGET = 2;
+    private static final int CARDS_ALL = CARDS_ROWS | CARDS_BUDGET;
+    private static final Metrics.Histogram LOAD_TIME = Metrics.histogram("load.total");
+    private final RefreshScheduler<CardValues> refresh = new RefreshScheduler<>(new RefreshScheduler.Stage<CardValues>() {
+        @Override
+        public Callable<CardValues> prepare(int dirty) {
+            return prepareCards(dirty);
+        }
+       
+        @Override
+        public void apply(int dirty, CardValues values) {
+            applyCards(dirty, values);
+        }
+    });
+    private CardValues cards;
    
     private final Color PRIMARY = new Color(255, 153, 51);
     private final Color SECONDARY = new Color(249, 250, 251);
@@ -36,12 +103,15 @@ public class ExpenseTracker extends JFrame {
        
         // Create data folder
         new File(DATA_FOLDER).mkdirs();
+        Metrics.registerMBean();
+        openJournal();
        
+        loadCategories();
         loadMonthlyBudget();
         initComponents();
-        loadExpenses();
-        updateUI();
+        refresh.markDirty(CARDS_ALL);
         setVisible(true);
+        loadExpenses();
     }
    
     private void initComponents() {
@@ -122,8 +192,30 @@ public class ExpenseTracker extends JFrame {
         budgetBtn.setBorder(new EmptyBorder(10, 20, 10, 20));
         budgetBtn.addActionListener(e -> setMonthlyBudget());
        
+        JButton diagnosticsBtn = new JButton("Diagnostics");
+        diagnosticsBtn.setFont(new Font("Segoe UI", Font.BOLD, 12));
+        diagnosticsBtn.setBackground(Color.WHITE);
+        diagnosticsBtn.setForeground(PRIMARY);
+        diagnosticsBtn.setFocusPainted(false);
+        diagnosticsBtn.setBorderPainted(false);
+        diagnosticsBtn.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        diagnosticsBtn.setBorder(new EmptyBorder(10, 20, 10, 20));
+        diagnosticsBtn.addActionListener(e -> showDiagnostics());
+       
+        JButton reportsBtn = new JButton("Reports");
+        reportsBtn.setFont(new Font("Segoe UI", Font.BOLD, 12));
+        reportsBtn.setBackground(Color.WHITE);
+        reportsBtn.setForeground(PRIMARY);
+        reportsBtn.setFocusPainted(false);
+        reportsBtn.setBorderPainted(false);
+        reportsBtn.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        reportsBtn.setBorder(new EmptyBorder(10, 20, 10, 20));
+        reportsBtn.addActionListener(e -> showReports());
+       
         rightPanel.add(budgetPanel);
         rightPanel.add(budgetBtn);
+        rightPanel.add(reportsBtn);
+        rightPanel.add(diagnosticsBtn);
        
         panel.add(leftPanel, BorderLayout.WEST);
         panel.add(rightPanel, BorderLayout.EAST);
@@ -185,14 +277,23 @@ public class ExpenseTracker extends JFrame {
         fieldsPanel.add(catLabel, gbc);
        
         gbc.gridx = 1; gbc.weightx = 1;
-        String[] categories = {
-            "Food & Dining", "Transport", "Groceries", "Bills & Utilities",
-            "Entertainment", "Healthcare", "Clothing", "Education",
-            "Rent/EMI", "Mobile/Internet", "Fuel", "Gifts",
-            "Investment", "Other"
-        };
-        categoryCombo = new JComboBox<>(categories);
+        categoryCombo = new JComboBox<>();
         styleComboBox(categoryCombo);
+        // Subcategories are indented under their parent
+        categoryCombo.setRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean selected, boolean focused) {
+                super.getListCellRendererComponent(list, value, index, selected, focused);
+                int id = value == null ? -1 : store.findCategoryId(value.toString());
+                if (index >= 0 && id >= 0 && store.categories().parent(id) >= 0) setText("    " + value);
+                return this;
+            }
+        });
+        fillCategoryCombo(null);
+        categoryCombo.addActionListener(e -> {
+            if (!fillingCategories && NEW_CATEGORY.equals(categoryCombo.getSelectedItem())) SwingUtilities.invokeLater(this::addCategory);
+        });
         fieldsPanel.add(categoryCombo, gbc);
        
         // Description
@@ -226,7 +327,7 @@ public class ExpenseTracker extends JFrame {
             new EmptyBorder(15, 20, 15, 20)
         ));
        
-        JLabel filterLabel = new JLabel("Filter by Date Range:");
+        JLabel filterLabel = new JLabel("Filter:");
         filterLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
         filterLabel.setForeground(TEXT_PRIMARY);
        
@@ -249,8 +350,20 @@ public class ExpenseTracker extends JFrame {
         filterToSpinner.setValue(new Date());
         filterToSpinner.setPreferredSize(new Dimension(150, 30));
        
+        JLabel amountLabel = new JLabel("Amount:");
+        amountLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        amountLabel.setForeground(TEXT_SECONDARY);
+       
+        filterMinField = new JTextField(6);
+        filterMinField.setToolTipText("Minimum amount (blank for none)");
+        filterMaxField = new JTextField(6);
+        filterMaxField.setToolTipText("Maximum amount (blank for none)");
+       
+        filterCategoryBtn = createStyledButton("Categories: All", TEXT_SECONDARY, false);
+        filterCategoryBtn.addActionListener(e -> chooseFilterCategories());
+       
         JButton filterBtn = createStyledButton("Apply Filter", PRIMARY, false);
-        filterBtn.addActionListener(e -> filterByDateRange());
+        filterBtn.addActionListener(e -> applyFilter());
        
         JButton resetBtn = createStyledButton("Reset", TEXT_SECONDARY, false);
         resetBtn.addActionListener(e -> resetFilter());
@@ -260,6 +373,11 @@ public class ExpenseTracker extends JFrame {
         panel.add(filterFromSpinner);
         panel.add(toLabel);
         panel.add(filterToSpinner);
+        panel.add(amountLabel);
+        panel.add(filterMinField);
+        panel.add(new JLabel("-"));
+        panel.add(filterMaxField);
+        panel.add(filterCategoryBtn);
         panel.add(filterBtn);
         panel.add(resetBtn);
        
@@ -282,28 +400,71 @@ public class ExpenseTracker extends JFrame {
         sectionLabel.setForeground(TEXT_PRIMARY);
         headerPanel.add(sectionLabel, BorderLayout.WEST);
        
+        loadProgress = new JProgressBar(0, 100);
+        loadProgress.setStringPainted(true);
+        loadProgress.setString("Loading expenses...");
+        loadProgress.setForeground(PRIMARY);
+        loadProgress.setBorder(new EmptyBorder(0, 20, 0, 20));
+        loadProgress.setVisible(false);
+        headerPanel.add(loadProgress, BorderLayout.CENTER);
+       
         JPanel btnPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
         btnPanel.setBackground(Color.WHITE);
        
+        JButton importBtn = createStyledButton("Import CSV", PRIMARY, false);
+        importBtn.addActionListener(e -> importStatement());
+       
+        JButton editBtn = createStyledButton("Edit Selected", PRIMARY, false);
+        editBtn.addActionListener(e -> editExpense());
+       
         JButton deleteBtn = createStyledButton("Delete Selected", DANGER, false);
         deleteBtn.addActionListener(e -> deleteExpense());
        
         JButton clearBtn = createStyledButton("Clear All", DANGER, false);
         clearBtn.addActionListener(e -> clearAllExpenses());
        
+        JButton exportBtn = createStyledButton("Export", PRIMARY, false);
+        exportBtn.addActionListener(e -> exportExpenses());
+       
+        btnPanel.add(importBtn);
+        btnPanel.add(exportBtn);
+        btnPanel.add(editBtn);
         btnPanel.add(deleteBtn);
         btnPanel.add(clearBtn);
         headerPanel.add(btnPanel, BorderLayout.EAST);
        
-        panel.add(headerPanel, BorderLayout.NORTH);
-       
-        String[] columns = {"Date", "Amount (INR)", "Category", "Description"};
-        tableModel = new DefaultTableModel(columns, 0) {
+        JPanel searchPanel = new JPanel(new BorderLayout(10, 0));
+        searchPanel.setBackground(Color.WHITE);
+        JLabel searchLabel = new JLabel("Search:");
+        searchLabel.setForeground(TEXT_SECONDARY);
+        searchPanel.add(searchLabel, BorderLayout.WEST);
+        searchField = new JTextField();
+        styleTextField(searchField);
+        searchField.setToolTipText("Words matched against the start of words in the description");
+        searchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
             @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
+            public void insertUpdate(javax.swing.event.DocumentEvent e) {
+                tableModel.setSearch(searchField.getText());
+                refresh.markDirty(CARDS_ROWS);
             }
-        };
+           
+            @Override
+            public void removeUpdate(javax.swing.event.DocumentEvent e) {
+                tableModel.setSearch(searchField.getText());
+                refresh.markDirty(CARDS_ROWS);
+            }
+           
+            @Override
+            public void changedUpdate(javax.swing.event.DocumentEvent e) {
+            }
+        });
+        searchPanel.add(searchField, BorderLayout.CENTER);
+       
+        JPanel topPanel = new JPanel(new BorderLayout(0, 10));
+        topPanel.setBackground(Color.WHITE);
+        topPanel.add(headerPanel, BorderLayout.NORTH);
+        topPanel.add(searchPanel, BorderLayout.SOUTH);
+        panel.add(topPanel, BorderLayout.NORTH);
        
         expenseTable = new JTable(tableModel);
         styleTable(expenseTable);
@@ -334,6 +495,10 @@ public class ExpenseTracker extends JFrame {
         JPanel categoryCard = createStatCard("Top Category", "-", DANGER);
         categoryWiseLabel = (JLabel) ((JPanel) categoryCard.getComponent(1)).getComponent(0);
         panel.add(categoryCard);
+       
+        JPanel burnCard = createStatCard("Daily Burn (30 days)", "INR 0.00", PRIMARY);
+        burnLabel = (JLabel) ((JPanel) burnCard.getComponent(1)).getComponent(0);
+        panel.add(burnCard);
 
          JPanel deatilCard = createStatCard("By", "SE-IT-A 65-70", DANGER);
         categoryWiseLabel = (JLabel) ((JPanel) categoryCard.getComponent(1)).getComponent(0);
@@ -396,8 +561,8 @@ public class ExpenseTracker extends JFrame {
        
         DefaultTableCellRenderer centerRenderer = new DefaultTableCellRenderer();
         centerRenderer.setHorizontalAlignment(JLabel.CENTER);
-        table.getColumnModel().getColumn(0).setCellRenderer(centerRenderer);
-        table.getColumnModel().getColumn(1).setCellRenderer(centerRenderer);
+        table.getColumnModel().getColumn(0).setCellRenderer(new LedgerCellRenderer(LedgerTableModel.DATE));
+        table.getColumnModel().getColumn(1).setCellRenderer(new LedgerCellRenderer(LedgerTableModel.AMOUNT));
         table.getColumnModel().getColumn(2).setCellRenderer(centerRenderer);
     }
    
@@ -431,11 +596,11 @@ public class ExpenseTracker extends JFrame {
        
         if (input != null && !input.trim().isEmpty()) {
             try {
-                double amount = Double.parseDouble(input.replace(",", ""));
+                long amount = Money.parse(input);
                 if (amount >= 0) {
                     monthlyBudget = amount;
                     saveMonthlyBudget();
-                    updateUI();
+                    refresh.markDirty(CARDS_BUDGET);
                     JOptionPane.showMessageDialog(this,
                         String.format("Monthly budget set to %s", formatCurrency(monthlyBudget)),
                         "Success", JOptionPane.INFORMATION_MESSAGE);
@@ -448,79 +613,49 @@ public class ExpenseTracker extends JFrame {
         }
     }
    
-    private String formatCurrency(double amount) {
-        String formatted = String.format("%.2f", Math.abs(amount));
-        String[] parts = formatted.split("\\.");
-        String integerPart = parts[0];
-        String decimalPart = parts[1];
-       
-        StringBuilder result = new StringBuilder();
-        int len = integerPart.length();
-       
-        if (len <= 3) {
-            result.append(integerPart);
-        } else {
-            result.insert(0, integerPart.substring(len - 3));
-            int remaining = len - 3;
-           
-            // Add groups of 2 digits
-            while (remaining > 0) {
-                int start = Math.max(0, remaining - 2);
-                result.insert(0, ",");
-                result.insert(0, integerPart.substring(start, remaining));
-                remaining = start;
-            }
-        }
-       
-        return (amount < 0 ? "-INR " : "INR ") + result + "." + decimalPart;
-    }
-   
-    private String getDateFileName(Date date) {
-        SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
-        return DATA_FOLDER + "/expense_" + sdf.format(date) + ".txt";
+    private String formatCurrency(long paise) {
+        currencyText.setLength(0);
+        return Money.appendInr(currencyText, paise).toString();
     }
    
     private void addExpense() {
         try {
             String amtText = amountField.getText().trim();
-            String desc = descField.getText().trim();
+            String desc = DayFiles.clean(descField.getText());
             String category = (String) categoryCombo.getSelectedItem();
             Date selectedDate = (Date) dateSpinner.getValue();
            
-            if (amtText.isEmpty() || desc.isEmpty() || selectedDate == null) {
+            if (amtText.isEmpty() || desc.isEmpty() || selectedDate == null
+                    || category == null || category.equals(NEW_CATEGORY)) {
                 showError("Please fill all fields!");
                 return;
             }
            
-            double amount = Double.parseDouble(amtText.replace(",", ""));
+            long amount = Money.parse(amtText);
             if (amount <= 0) {
                 showError("Amount must be positive!");
                 return;
             }
+            category = DayFiles.clean(category);
            
-            String date = new SimpleDateFormat("dd-MM-yyyy HH:mm").format(selectedDate);
-           
-            tableModel.addRow(new Object[]{
-                date,
-                String.format("%,.2f", amount),
-                category,
-                desc
-            });
-           
-            saveExpenseToDateFile(selectedDate, date, amount, category, desc);
+            int day = LedgerDates.toEpochDay(selectedDate);
+            int minute = LedgerDates.toMinute(selectedDate);
+            long id = ExpenseIds.next();
+            tableModel.add(id, day, minute, amount, category, desc);
+            reportFailure(journal.add(id, day, minute, amount, category, desc), "Error saving expense: ");
            
             // Auto-update UI
-            updateUI();
+            refresh.markDirty(CARDS_ALL);
            
             amountField.setText("");
             descField.setText("");
-            categoryCombo.setSelectedIndex(0);
+            categoryCombo.setSelectedIndex(categoryCombo.getItemCount() > 1 ? 0 : -1);
             dateSpinner.setValue(new Date());
            
             // Check budget warning
-            double monthlyTotal = getMonthlyTotal();
+            long monthlyTotal = getMonthlyTotal();
             if (monthlyBudget > 0 && monthlyTotal > monthlyBudget) {
-                double exceeded = monthlyTotal - monthlyBudget;
+                long exceeded = monthlyTotal - monthlyBudget;
                 JOptionPane.showMessageDialog(this,
                     String.format("Budget Alert!\nMonthly expenses (%s) exceeded budget (%s)\nOver budget by: %s",
                     formatCurrency(monthlyTotal), formatCurrency(monthlyBudget), formatCurrency(exceeded)),
@@ -536,21 +671,8 @@ public class ExpenseTracker extends JFrame {
         }
     }
    
-    private void saveExpenseToDateFile(Date date, String dateTime, double amount, String category, String desc) {
-        try {
-            String fileName = getDateFileName(date);
-            String line = dateTime + "|" + amount + "|" + category + "|" + desc;
-           
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName, true))) {
-                writer.write(line);
-                writer.newLine();
-            }
-        } catch (Exception ex) {
-            showError("Error saving expense: " + ex.getMessage());
-        }
-    }
-   
-    private void filterByDateRange() {
+    // Narrows the loaded ledger in memory; nothing is re-read from disk
+    private void applyFilter() {
         Date from = (Date) filterFromSpinner.getValue();
         Date to = (Date) filterToSpinner.getValue();
        
@@ -564,33 +686,77 @@ public class ExpenseTracker extends JFrame {
             return;
         }
        
-        tableModel.setRowCount(0);
-        loadExpensesInRange(from, to);
-        updateUI();
+        long minPaise, maxPaise;
+        try {
+            String min = filterMinField.getText().trim();
+            String max = filterMaxField.getText().trim();
+            minPaise = min.isEmpty() ? Long.MIN_VALUE : Money.parse(min);
+            maxPaise = max.isEmpty() ? Long.MAX_VALUE : Money.parse(max);
+        } catch (NumberFormatException ex) {
+            showError("Invalid amount format!");
+            return;
+        }
        
+        tableModel.setQuery(new LedgerQuery()
+            .between(LedgerDates.toEpochDay(from), LedgerDates.toEpochDay(to))
+            .amountBetween(minPaise, maxPaise)
+            .categories(filterCategories == null ? null : store.categories().withSubcategories(filterCategories)));
+        refresh.markDirty(CARDS_ROWS);
         JOptionPane.showMessageDialog(this,
-            tableModel.getRowCount() + " expenses found in date range",
+            tableModel.getRowCount() + " expenses match the filter",
             "Filter Result", JOptionPane.INFORMATION_MESSAGE);
     }
    
+    private void chooseFilterCategories() {
+        Set<String> names = categoryNames();
+       
+        JPanel boxes = new JPanel(new GridLayout(0, 2, 10, 4));
+        List<JCheckBox> checks = new ArrayList<>();
+        for (String name : names) {
+            JCheckBox check = new JCheckBox(name, filterCategories != null && filterCategories.contains(name));
+            checks.add(check);
+            boxes.add(check);
+        }
+        if (JOptionPane.showConfirmDialog(this, boxes, "Filter Categories",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+       
+        Set<String> chosen = new LinkedHashSet<>();
+        for (JCheckBox check : checks) {
+            if (check.isSelected()) chosen.add(check.getText());
+        }
+        filterCategories = chosen.isEmpty() ? null : chosen;
+        filterCategoryBtn.setText(filterCategories == null ? "Categories: All" : "Categories: " + chosen.size());
+    }
+   
     private void resetFilter() {
         filterFromSpinner.setValue(new Date());
         filterToSpinner.setValue(new Date());
-        tableModel.setRowCount(0);
-        loadExpenses();
-        updateUI();
+        filterMinField.setText("");
+        filterMaxField.setText("");
+        filterCategories = null;
+        filterCategoryBtn.setText("Categories: All");
+        tableModel.setQuery(new LedgerQuery());
+        refresh.markDirty(CARDS_ROWS);
     }
    
     private void deleteExpense() {
-        int row = expenseTable.getSelectedRow();
-        if (row >= 0) {
+        if (isLoading()) {
+            showError("Please wait until expenses finish loading!");
+            return;
+        }
+        int selected = expenseTable.getSelectedRow();
+        if (selected >= 0) {
+            int row = tableModel.storeRow(selected);
             int confirm = JOptionPane.showConfirmDialog(this,
                 "Delete this expense?",
                 "Confirm", JOptionPane.YES_NO_OPTION);
             if (confirm == JOptionPane.YES_OPTION) {
-                tableModel.removeRow(row);
-                saveAllExpenses();
-                updateUI();
+                reportFailure(journal.delete(store.id(row), store.day(row), store.minute(row), store.paise(row),
+                    store.category(row), store.description(row)), "Error deleting expense: ");
+                tableModel.remove(selected);
+                refresh.markDirty(CARDS_ALL);
                
                 JOptionPane.showMessageDialog(this,
                     "Expense deleted successfully!",
@@ -601,16 +767,96 @@ public class ExpenseTracker extends JFrame {
         }
     }
    
+    // Changes the selected expense in place; it keeps its id, so the journal
+    // appends the new version instead of rewriting the day file
+    private void editExpense() {
+        if (isLoading()) {
+            showError("Please wait until expenses finish loading!");
+            return;
+        }
+        int selected = expenseTable.getSelectedRow();
+        if (selected < 0) {
+            showError("Please select an expense to edit!");
+            return;
+        }
+        int row = tableModel.storeRow(selected);
+        long id = store.id(row);
+        int oldDay = store.day(row);
+        int oldMinute = store.minute(row);
+        long oldPaise = store.paise(row);
+        String oldCategory = store.category(row);
+        String oldDescription = store.description(row);
+       
+        JSpinner date = new JSpinner(new SpinnerDateModel());
+        date.setEditor(new JSpinner.DateEditor(date, "dd-MM-yyyy HH:mm"));
+        date.setValue(LedgerDates.toDate(oldDay, oldMinute));
+        JTextField amount = new JTextField(Money.appendPlain(new StringBuilder(), oldPaise).toString());
+        JComboBox<String> category = new JComboBox<>();
+        for (String name : categoryNames()) category.addItem(name);
+        category.setEditable(true);
+        category.setSelectedItem(oldCategory);
+        JTextField description = new JTextField(oldDescription, 20);
+       
+        JPanel fields = new JPanel(new GridLayout(0, 1, 0, 8));
+        fields.add(new JLabel("Date:"));
+        fields.add(date);
+        fields.add(new JLabel("Amount (INR):"));
+        fields.add(amount);
+        fields.add(new JLabel("Category:"));
+        fields.add(category);
+        fields.add(new JLabel("Description:"));
+        fields.add(description);
+        if (JOptionPane.showConfirmDialog(this, fields, "Edit Expense",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+       
+        String desc = DayFiles.clean(description.getText());
+        Object chosen = category.getSelectedItem();
+        String cat = chosen == null ? "" : DayFiles.clean(chosen.toString());
+        if (desc.isEmpty() || cat.isEmpty()) {
+            showError("Please fill all fields!");
+            return;
+        }
+        long paise;
+        try {
+            paise = Money.parse(amount.getText().trim());
+        } catch (NumberFormatException ex) {
+            showError("Invalid amount format!");
+            return;
+        }
+        if (paise <= 0) {
+            showError("Amount must be positive!");
+            return;
+        }
+        Date when = (Date) date.getValue();
+        int day = LedgerDates.toEpochDay(when);
+        int minute = LedgerDates.toMinute(when);
+        if (day == oldDay && minute == oldMinute && paise == oldPaise
+                && cat.equals(oldCategory) && desc.equals(oldDescription)) {
+            return;
+        }
+       
+        reportFailure(journal.edit(id, oldDay, oldMinute, oldPaise, oldCategory, oldDescription,
+            day, minute, paise, cat, desc), "Error saving expense: ");
+        tableModel.update(selected, day, minute, paise, cat, desc);
+        refresh.markDirty(CARDS_ALL);
+    }
+   
     private void clearAllExpenses() {
-        if (tableModel.getRowCount() > 0) {
+        if (isLoading()) {
+            showError("Please wait until expenses finish loading!");
+            return;
+        }
+        if (store.size() > 0) {
             int confirm = JOptionPane.showConfirmDialog(this,
                 "Delete all expenses?",
                 "Confirm Clear All", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
            
             if (confirm == JOptionPane.YES_OPTION) {
-                tableModel.setRowCount(0);
-                saveAllExpenses();
-                updateUI();
+                clearRows();
+                reportFailure(journal.clear(), "Error clearing expenses: ");
+                refresh.markDirty(CARDS_ALL);
                
                 JOptionPane.showMessageDialog(this,
                     "All expenses cleared successfully!",
@@ -621,70 +867,50 @@ public class ExpenseTracker extends JFrame {
         }
     }
    
-    private double getMonthlyTotal() {
-        double monthlyTotal = 0;
-        Calendar now = Calendar.getInstance();
-        int currentMonth = now.get(Calendar.MONTH);
-        int currentYear = now.get(Calendar.YEAR);
-       
-        for (int i = 0; i < tableModel.getRowCount(); i++) {
-            String dateStr = tableModel.getValueAt(i, 0).toString().split(" ")[0];
-            String amtStr = tableModel.getValueAt(i, 1).toString().replace(",", "");
-           
-            try {
-                SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
-                Date expenseDate = sdf.parse(dateStr);
-                Calendar expCal = Calendar.getInstance();
-                expCal.setTime(expenseDate);
-               
-                if (expCal.get(Calendar.MONTH) == currentMonth &&
-                    expCal.get(Calendar.YEAR) == currentYear) {
-                    monthlyTotal += Double.parseDouble(amtStr);
-                }
-            } catch (Exception ex) {
-            }
-        }
-        return monthlyTotal;
+    private long getMonthlyTotal() {
+        return store.aggregates().monthTotal(LedgerDates.monthIndex(LedgerDates.today()));
     }
    
-    private void updateUI() {
-        double total = 0;
-        double monthlyTotal = 0;
-        Map<String, Double> categoryMap = new HashMap<>();
-       
-        Calendar now = Calendar.getInstance();
-        int currentMonth = now.get(Calendar.MONTH);
-        int currentYear = now.get(Calendar.YEAR);
-       
-        for (int i = 0; i < tableModel.getRowCount(); i++) {
-            String amtStr = tableModel.getValueAt(i, 1).toString().replace(",", "");
-            String category = tableModel.getValueAt(i, 2).toString();
-            String dateStr = tableModel.getValueAt(i, 0).toString().split(" ")[0];
-           
-            double amount = Double.parseDouble(amtStr);
-            total += amount;
-           
-            categoryMap.put(category, categoryMap.getOrDefault(category, 0.0) + amount);
-           
+    // Runs on the EDT once per frame with the merged dirty flags. Totals over the
+    // whole ledger are kept incrementally and read here; totals over a filtered
+    // view are summed on the refresh thread and dropped if the store changed meanwhile.
+    private Callable<CardValues> prepareCards(int dirty) {
+        int month = LedgerDates.monthIndex(LedgerDates.today());
+        long ledgerMonthly = getMonthlyTotal();
+        int[] view = tableModel.view();
+        if ((dirty & CARDS_ROWS) == 0 && cards != null) {
+            CardValues unchanged = cards;
+            return () -> unchanged;
+        }
+        if (view == null) {
+            CardValues values = CardValues.of(store, store.aggregates(), month, ledgerMonthly);
+            return () -> values;
+        }
+        int version = store.version();
+        return () -> {
             try {
-                SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
-                Date expenseDate = sdf.parse(dateStr);
-                Calendar expCal = Calendar.getInstance();
-                expCal.setTime(expenseDate);
-               
-                if (expCal.get(Calendar.MONTH) == currentMonth &&
-                    expCal.get(Calendar.YEAR) == currentYear) {
-                    monthlyTotal += amount;
-                }
-            } catch (Exception ex) {
+                CardValues values = CardValues.of(store, LedgerAggregates.of(store, view), month, ledgerMonthly);
+                return store.version() == version ? values : null;
+            } catch (RuntimeException ex) {
+                if (store.version() != version) return null;
+                throw ex;
             }
+        };
+    }
+   
+    private void applyCards(int dirty, CardValues values) {
+        cards = values;
+        // Cards follow the rows on show; the budget always tracks the whole ledger
+        if ((dirty & CARDS_ROWS) != 0) {
+            totalLabel.setText(formatCurrency(values.total));
+            monthlyLabel.setText(formatCurrency(values.monthly));
+            categoryWiseLabel.setText(values.topCategory != null ? values.topCategory : "-");
+            burnLabel.setText(formatCurrency(values.burn[1]));
+            burnLabel.setToolTipText("Average per day: last 7 days " + formatCurrency(values.burn[0])
+                + ", 30 days " + formatCurrency(values.burn[1]) + ", 90 days " + formatCurrency(values.burn[2]));
         }
        
-        totalLabel.setText(formatCurrency(total));
-       
-        monthlyLabel.setText(formatCurrency(monthlyTotal));
-       
-        if (monthlyBudget > 0 && monthlyTotal > monthlyBudget) {
+        if (monthlyBudget > 0 && values.monthly > monthlyBudget) {
             monthlyLabel.setForeground(DANGER);
         } else {
             monthlyLabel.setForeground(ACCENT);
@@ -695,23 +921,14 @@ public class ExpenseTracker extends JFrame {
         } else {
             budgetLabel.setText("Not Set");
         }
-       
-        if (!categoryMap.isEmpty()) {
-            String topCategory = categoryMap.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .get().getKey();
-            categoryWiseLabel.setText(topCategory);
-        } else {
-            categoryWiseLabel.setText("-");
-        }
 
         if (monthlyBudget > 0) {
-            double remaining = monthlyBudget - monthlyTotal;
+            long remaining = monthlyBudget - values.ledgerMonthly;
             remainingLabel.setText(formatCurrency(remaining));
 
             if (remaining < 0) {
                 remainingLabel.setForeground(DANGER);
-            } else if (remaining < monthlyBudget * 0.2) {
+            } else if (remaining * 5 < monthlyBudget) {
                 remainingLabel.setForeground(PRIMARY);
             } else {
                 remainingLabel.setForeground(BUDGET_COLOR);
@@ -722,121 +939,423 @@ public class ExpenseTracker extends JFrame {
         }
     }
    
-    private void saveAllExpenses() {
-        Map<String, List<String[]>> expensesByDate = new HashMap<>();
+    /** Values behind the stat cards, computed off the EDT when a view is filtered. */
+    private static final class CardValues {
+        static final int[] BURN_DAYS = {7, 30, 90};
+       
+        final long total;
+        final long monthly;
+        final long ledgerMonthly;
+        final String topCategory;
+        // Average spend per day over each of BURN_DAYS, ending today
+        final long[] burn;
+       
+        CardValues(long total, long monthly, long ledgerMonthly, String topCategory, long[] burn) {
+            this.total = total;
+            this.monthly = monthly;
+            this.ledgerMonthly = ledgerMonthly;
+            this.topCategory = topCategory;
+            this.burn = burn;
+        }
        
-        for (int i = 0; i < tableModel.getRowCount(); i++) {
-            String dateTime = tableModel.getValueAt(i, 0).toString();
-            String amount = tableModel.getValueAt(i, 1).toString().replace(",", "");
-            String category = tableModel.getValueAt(i, 2).toString();
-            String desc = tableModel.getValueAt(i, 3).toString();
-           
-            String dateOnly = dateTime.split(" ")[0];
-           
-            expensesByDate.computeIfAbsent(dateOnly, k -> new ArrayList<>())
-                          .add(new String[]{dateTime, amount, category, desc});
+        static CardValues of(LedgerStore store, LedgerAggregates aggregates, int month, long ledgerMonthly) {
+            int top = aggregates.topCategory();
+            int today = LedgerDates.today();
+            long[] burn = new long[BURN_DAYS.length];
+            for (int i = 0; i < burn.length; i++) burn[i] = aggregates.days().dailyAverage(today, BURN_DAYS[i]);
+            return new CardValues(aggregates.total(), aggregates.monthTotal(month), ledgerMonthly,
+                top >= 0 ? store.categoryName(top) : null, burn);
+        }
+    }
+   
+    private void openJournal() {
+        try {
+            journal = new Journal(new File(DATA_FOLDER), Journal.FsyncPolicy.fromProperty());
+            dayIndex = new DayIndex(new File(DATA_FOLDER));
+            snapshot = new LedgerSnapshot(new File(DATA_FOLDER));
+            journal.setInstallListener(file -> {
+                dayIndex.update(file);
+                snapshot.fold(file);
+            });
+            // Another window, the CLI or another process rewrote months this one had loaded
+            journal.setConflictListener(months -> SwingUtilities.invokeLater(() -> {
+                checkpointable = false;
+                if (!isLoading() && importer == null) loadExpenses();
+            }));
+        } catch (IOException ex) {
+            showError("Error opening expense journal: " + ex.getMessage());
+            System.exit(1);
         }
        
-        File dataFolder = new File(DATA_FOLDER);
-        if (dataFolder.exists()) {
-            File[] files = dataFolder.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.getName().startsWith("expense_")) {
-                        file.delete();
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                refresh.shutdown();
+                checkpointTimer.stop();
+                // The closing compaction may merge rows from another writer into files
+                // it re-stamps; the store never saw those rows, so no checkpoint then
+                AtomicBoolean conflicted = new AtomicBoolean();
+                journal.setConflictListener(months -> conflicted.set(true));
+                try {
+                    journal.close();
+                    dayIndex.close();
+                } catch (IOException ex) {
+                    // Left in the journal and folded in on the next start
+                    checkpointable = false;
+                }
+                if (conflicted.get()) checkpointable = false;
+                if (checkpointable && !isLoading() && importer == null && store.version() != checkpointVersion) {
+                    try {
+                        snapshot.checkpoint(store).write();
+                    } catch (IOException ex) {
+                        // The next start replays the files instead
                     }
                 }
             }
-        }
+        });
        
-        for (Map.Entry<String, List<String[]>> entry : expensesByDate.entrySet()) {
-            String dateStr = entry.getKey();
-            List<String[]> expenses = entry.getValue();
-           
-            try {
-                SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
-                Date date = sdf.parse(dateStr);
-                String fileName = getDateFileName(date);
-               
-                try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
-                    for (String[] expense : expenses) {
-                        String line = expense[0] + "|" + expense[1] + "|" + expense[2] + "|" + expense[3];
-                        writer.write(line);
-                        writer.newLine();
-                    }
+        checkpointTimer = new javax.swing.Timer(CHECKPOINT_MS, e -> checkpoint());
+        checkpointTimer.start();
+    }
+   
+    // Folds the journal into the data files, then writes the store and their stamps off the EDT
+    private void checkpoint() {
+        if (!checkpointable || isLoading() || importer != null || store.version() == checkpointVersion) return;
+        journal.compact().whenComplete((v, ex) -> SwingUtilities.invokeLater(() -> {
+            if (ex != null || !checkpointable || isLoading() || importer != null) return;
+            LedgerSnapshot.Checkpoint checkpoint = snapshot.checkpoint(store);
+            checkpointVersion = store.version();
+            new SwingWorker<Void, Void>() {
+                @Override
+                protected Void doInBackground() throws Exception {
+                    checkpoint.write();
+                    return null;
                 }
-            } catch (Exception ex) {
-                showError("Error saving expenses: " + ex.getMessage());
+            }.execute();
+        }));
+    }
+   
+    private void reportFailure(CompletableFuture<Void> write, String message) {
+        write.whenComplete((v, ex) -> {
+            if (ex != null) {
+                SwingUtilities.invokeLater(() -> {
+                    // The store now has a change the files do not
+                    checkpointable = false;
+                    showError(message + ex.getMessage());
+                });
             }
-        }
+        });
     }
    
     private void loadExpenses() {
-        File dataFolder = new File(DATA_FOLDER);
-        if (!dataFolder.exists()) return;
-       
-        File[] files = dataFolder.listFiles((dir, name) -> name.startsWith("expense_") && name.endsWith(".txt"));
-        if (files == null) return;
-       
-        for (File file : files) {
-            loadExpensesFromFile(file);
+        startLoading(dayIndex::all);
+    }
+   
+    // Parses the files on worker threads and feeds the table in batches
+    private void startLoading(Supplier<List<File>> files) {
+        if (loader != null) {
+            loader.cancel(true);
         }
+        clearRows();
+        checkpointable = false;
+        refresh.markDirty(CARDS_ALL);
+        loadProgress.setValue(0);
+        loadProgress.setString("Loading expenses...");
+        loadProgress.setVisible(true);
+       
+        SwingWorker<Void, RecordBatch> worker = new SwingWorker<Void, RecordBatch>() {
+            private final List<MalformedLine> malformed = new ArrayList<>();
+            private volatile boolean replayed;
+           
+            @Override
+            protected Void doInBackground() throws Exception {
+                long start = System.nanoTime();
+                // Fold pending journal records into the day files before reading them
+                journal.compact().get();
+                journal.resync();
+                // Rows of unchanged months come from the snapshot; only the rest are parsed
+                List<File> replay = new ArrayList<>();
+                RecordBatch restored = snapshot.restore(files.get(), replay);
+                replayed = !replay.isEmpty();
+                for (int from = 0; from < restored.size(); from += LedgerLoader.BATCH_ROWS) {
+                    publish(restored.slice(from, Math.min(restored.size(), from + LedgerLoader.BATCH_ROWS)));
+                }
+                new LedgerLoader().load(replay, new LedgerLoader.Listener() {
+                    @Override
+                    public void batch(RecordBatch batch, int done, int total) {
+                        publish(batch);
+                        setProgress(done * 100 / total);
+                    }
+                   
+                    @Override
+                    public void malformed(MalformedLine line) {
+                        malformed.add(line);
+                    }
+                });
+                LOAD_TIME.recordSince(start);
+                return null;
+            }
+           
+            @Override
+            protected void process(List<RecordBatch> batches) {
+                if (isCancelled()) return;
+                for (RecordBatch batch : batches) {
+                    tableModel.append(batch);
+                }
+                refresh.markDirty(CARDS_ALL);
+            }
+           
+            @Override
+            protected void done() {
+                if (isCancelled()) return;
+                loader = null;
+                loadProgress.setVisible(false);
+                try {
+                    get();
+                    checkpointable = true;
+                    if (!replayed) checkpointVersion = store.version();
+                } catch (InterruptedException | ExecutionException ex) {
+                    // Partly loaded; no checkpoint until a full load succeeds
+                }
+                refresh.markDirty(CARDS_ALL);
+                if (!malformed.isEmpty()) {
+                    showMalformedLines(malformed);
+                }
+            }
+        };
+        worker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                loadProgress.setValue((Integer) e.getNewValue());
+            }
+        });
+        loader = worker;
+        worker.execute();
     }
    
-    private void loadExpensesInRange(Date from, Date to) {
-        File dataFolder = new File(DATA_FOLDER);
-        if (!dataFolder.exists()) return;
-       
-        File[] files = dataFolder.listFiles((dir, name) -> name.startsWith("expense_") && name.endsWith(".txt"));
-        if (files == null) return;
+    // Streams a statement into the journal off the EDT and reloads the table once at the end
+    private void importStatement() {
+        if (isLoading() || importer != null) {
+            showError("Please wait until the current load or import finishes!");
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV statements", "csv", "txt"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File csv = chooser.getSelectedFile();
+       
+        String spec = (String) JOptionPane.showInputDialog(this,
+            "Column mapping (0-based columns, java.time date format):",
+            "Import " + csv.getName(), JOptionPane.QUESTION_MESSAGE, null, null, importMapping);
+        if (spec == null) return;
+        CsvImporter.Mapping mapping;
+        try {
+            mapping = CsvImporter.Mapping.parse(spec);
+        } catch (IllegalArgumentException ex) {
+            showError("Invalid column mapping: " + ex.getMessage());
+            return;
+        }
+        importMapping = spec;
+        // Imported rows reach the files before the store; the reload at the end catches up
+        checkpointable = false;
        
-        SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
+        loadProgress.setValue(0);
+        loadProgress.setString("Importing " + csv.getName() + "...");
+        loadProgress.setVisible(true);
        
-        for (File file : files) {
-            try {
-                String fileName = file.getName();
-                String dateStr = fileName.substring(8, fileName.length() - 4);
-                Date fileDate = sdf.parse(dateStr);
-               
-                if (!fileDate.before(from) && !fileDate.after(to)) {
-                    loadExpensesFromFile(file);
+        SwingWorker<CsvImporter.Result, Void> worker = new SwingWorker<CsvImporter.Result, Void>() {
+            @Override
+            protected CsvImporter.Result doInBackground() throws Exception {
+                return new CsvImporter(Categorizer.defaults()).run(csv, mapping, rows -> {
+                    try {
+                        journal.importBatch(rows).get();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Import interrupted");
+                    } catch (ExecutionException ex) {
+                        throw new IOException(ex.getCause().getMessage(), ex.getCause());
+                    }
+                }, (read, total) -> setProgress((int) (read * 100 / Math.max(1, total))));
+            }
+           
+            @Override
+            protected void done() {
+                importer = null;
+                loadProgress.setVisible(false);
+                try {
+                    CsvImporter.Result result = get();
+                    StringBuilder message = new StringBuilder()
+                        .append("Imported ").append(result.imported).append(" expenses.\n")
+                        .append(result.skipped).append(" line(s) were not expenses and were skipped.");
+                    JOptionPane.showMessageDialog(ExpenseTracker.this, message.toString(),
+                        "Import Complete", JOptionPane.INFORMATION_MESSAGE);
+                    if (!result.malformed.isEmpty()) {
+                        showMalformedLines(result.malformed);
+                    }
+                } catch (InterruptedException | ExecutionException ex) {
+                    Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+                    showError("Error importing statement: " + cause.getMessage());
                 }
-            } catch (Exception ex) {
+                loadExpenses();
             }
-        }
+        };
+        worker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                loadProgress.setValue((Integer) e.getNewValue());
+            }
+        });
+        importer = worker;
+        worker.execute();
     }
    
-    private void loadExpensesFromFile(File file) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
+    // Streams the stored expenses to a CSV or JSONL file without going through the table
+    private void exportExpenses() {
+        Set<String> names = categoryNames();
+        JComboBox<String> categoryChoice = new JComboBox<>();
+        categoryChoice.addItem("All categories");
+        for (String name : names) categoryChoice.addItem(name);
+        JCheckBox rangeOnly = new JCheckBox("Only dates in the filter range");
+       
+        JPanel options = new JPanel(new GridLayout(0, 1, 0, 8));
+        options.add(new JLabel("Category:"));
+        options.add(categoryChoice);
+        options.add(rangeOnly);
+        if (JOptionPane.showConfirmDialog(this, options, "Export Expenses",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+       
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("expenses.csv"));
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV or JSON Lines", "csv", "jsonl"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File out = chooser.getSelectedFile();
+       
+        LedgerExporter.Query query = new LedgerExporter.Query();
+        if (categoryChoice.getSelectedIndex() > 0) {
+            // A category takes in its subcategories, as the table filter does
+            query.categories(store.categories().withSubcategories(
+                Collections.singleton((String) categoryChoice.getSelectedItem())));
+        }
+        boolean ranged = rangeOnly.isSelected();
+        int fromDay = LedgerDates.toEpochDay((Date) filterFromSpinner.getValue());
+        int toDay = LedgerDates.toEpochDay((Date) filterToSpinner.getValue());
+        if (ranged) query.between(fromDay, toDay);
+       
+        new SwingWorker<LedgerExporter.Result, Void>() {
+            @Override
+            protected LedgerExporter.Result doInBackground() throws Exception {
+                journal.compact().get();
+                List<File> files = ranged ? dayIndex.files(fromDay, toDay) : dayIndex.all();
+                return new LedgerExporter().export(files, query, LedgerExporter.Format.forFile(out), out);
+            }
+           
+            @Override
+            protected void done() {
                 try {
-                    String[] parts = line.split("\\|");
-                    if (parts.length == 4) {
-                        tableModel.addRow(new Object[]{
-                            parts[0],
-                            String.format("%,.2f", Double.parseDouble(parts[1])),
-                            parts[2],
-                            parts[3]
-                        });
-                    }
-                } catch (Exception ex) {
-                    // Skip corrupted lines
+                    LedgerExporter.Result result = get();
+                    JOptionPane.showMessageDialog(ExpenseTracker.this,
+                        "Exported " + result.rows + " expenses to " + out.getName(),
+                        "Export Complete", JOptionPane.INFORMATION_MESSAGE);
+                } catch (InterruptedException | ExecutionException ex) {
+                    Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+                    showError("Error exporting expenses: " + cause.getMessage());
                 }
             }
-        } catch (Exception ex) {
-            // Skip files with errors
+        }.execute();
+    }
+   
+    private void showMalformedLines(List<MalformedLine> lines) {
+        StringBuilder message = new StringBuilder();
+        message.append(lines.size()).append(" line(s) could not be read and were skipped:\n");
+        for (int i = 0; i < Math.min(lines.size(), 10); i++) {
+            message.append("\n").append(lines.get(i));
+        }
+        if (lines.size() > 10) {
+            message.append("\n... and ").append(lines.size() - 10).append(" more");
         }
+        JOptionPane.showMessageDialog(this, message.toString(), "Corrupted Data", JOptionPane.WARNING_MESSAGE);
+    }
+   
+    private boolean isLoading() {
+        return loader != null;
+    }
+   
+    private void clearRows() {
+        tableModel.clear();
     }
    
     private void saveMonthlyBudget() {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(BUDGET_FILE))) {
-            writer.write(String.valueOf(monthlyBudget));
+            writer.write(Money.plain(monthlyBudget));
         } catch (Exception ex) {
             showError("Error saving monthly budget: " + ex.getMessage());
         }
     }
    
+    private void loadCategories() {
+        List<MalformedLine> skipped = new ArrayList<>();
+        try {
+            store.categories().load(skipped);
+            if (!skipped.isEmpty()) showMalformedLines(skipped);
+        } catch (IOException ex) {
+            showError("Error reading categories: " + ex.getMessage());
+        }
+    }
+   
+    // Defined categories first, in dictionary order, then any other name the data uses
+    private Set<String> categoryNames() {
+        Set<String> names = new LinkedHashSet<>(store.categories().definedNames());
+        for (int i = 0; i < store.categoryCount(); i++) names.add(store.categoryName(i));
+        return names;
+    }
+   
+    private void fillCategoryCombo(String selected) {
+        fillingCategories = true;
+        try {
+            categoryCombo.removeAllItems();
+            for (String name : store.categories().definedNames()) categoryCombo.addItem(name);
+            categoryCombo.addItem(NEW_CATEGORY);
+            if (selected != null) {
+                categoryCombo.setSelectedItem(selected);
+            } else {
+                categoryCombo.setSelectedIndex(categoryCombo.getItemCount() > 1 ? 0 : -1);
+            }
+        } finally {
+            fillingCategories = false;
+        }
+    }
+   
+    // Adds a user category, optionally under a top-level one, to data/categories.txt
+    private void addCategory() {
+        JTextField name = new JTextField(20);
+        JComboBox<String> parent = new JComboBox<>();
+        parent.addItem("(none)");
+        for (String candidate : store.categories().definedNames()) {
+            if (store.categories().parent(store.findCategoryId(candidate)) < 0) parent.addItem(candidate);
+        }
+       
+        JPanel fields = new JPanel(new GridLayout(0, 1, 0, 8));
+        fields.add(new JLabel("Name:"));
+        fields.add(name);
+        fields.add(new JLabel("Subcategory of:"));
+        fields.add(parent);
+        String added = null;
+        if (JOptionPane.showConfirmDialog(this, fields, "New Category",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) == JOptionPane.OK_OPTION) {
+            try {
+                String chosen = name.getText().trim();
+                store.categories().define(chosen, parent.getSelectedIndex() > 0 ? (String) parent.getSelectedItem() : null);
+                store.categories().save();
+                added = chosen;
+            } catch (IllegalArgumentException ex) {
+                showError(ex.getMessage());
+            } catch (IOException ex) {
+                showError("Error saving categories: " + ex.getMessage());
+            }
+        }
+        fillCategoryCombo(added);
+    }
+   
     private void loadMonthlyBudget() {
         File file = new File(BUDGET_FILE);
         if (!file.exists()) {
@@ -847,18 +1366,164 @@ public class ExpenseTracker extends JFrame {
         try (BufferedReader reader = new BufferedReader(new FileReader(BUDGET_FILE))) {
             String line = reader.readLine();
             if (line != null) {
-                monthlyBudget = Double.parseDouble(line.trim());
+                monthlyBudget = Money.parse(line);
             }
         } catch (Exception ex) {
             monthlyBudget = 0;
         }
     }
    
+    // Month x category, year over year and top descriptions, summed off the EDT by ReportEngine
+    private void showReports() {
+        if (isLoading()) {
+            showError("Please wait until expenses finish loading!");
+            return;
+        }
+        JCheckBox rangeOnly = new JCheckBox("Only dates in the filter range");
+        JSpinner topSpinner = new JSpinner(new SpinnerNumberModel(ReportEngine.DEFAULT_TOP, 1, 100, 1));
+       
+        JPanel options = new JPanel(new GridLayout(0, 1, 0, 8));
+        options.add(rangeOnly);
+        options.add(new JLabel("Top descriptions:"));
+        options.add(topSpinner);
+        if (JOptionPane.showConfirmDialog(this, options, "Reports",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        int fromDay = rangeOnly.isSelected() ? LedgerDates.toEpochDay((Date) filterFromSpinner.getValue()) : Integer.MIN_VALUE;
+        int toDay = rangeOnly.isSelected() ? LedgerDates.toEpochDay((Date) filterToSpinner.getValue()) : Integer.MAX_VALUE;
+        int top = (Integer) topSpinner.getValue();
+       
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<ReportEngine.Report, Void>() {
+            @Override
+            protected ReportEngine.Report doInBackground() {
+                // Rows added while the report runs make it stale; run it again on the new rows
+                for (int attempt = 0; attempt < 3; attempt++) {
+                    int version = store.version();
+                    try {
+                        ReportEngine.Report report = new ReportEngine().run(store, fromDay, toDay, top);
+                        if (store.version() == version) return report;
+                    } catch (RuntimeException ex) {
+                        if (store.version() == version) throw ex;
+                    }
+                }
+                throw new IllegalStateException("the ledger kept changing, try again");
+            }
+           
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    showReport(get());
+                } catch (InterruptedException | ExecutionException ex) {
+                    Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+                    showError("Error building report: " + cause.getMessage());
+                }
+            }
+        }.execute();
+    }
+   
+    private void showReport(ReportEngine.Report report) {
+        // Month x category pivot, newest month first
+        List<String> categories = report.categories;
+        String[] pivotColumns = new String[categories.size() + 2];
+        pivotColumns[0] = "Month";
+        pivotColumns[1] = "Total";
+        for (int c = 0; c < categories.size(); c++) pivotColumns[c + 2] = categories.get(c);
+        Object[][] pivot = new Object[report.months + 1][pivotColumns.length];
+        pivot[0][0] = "All months";
+        pivot[0][1] = formatCurrency(report.total);
+        for (int c = 0; c < categories.size(); c++) pivot[0][c + 2] = formatCurrency(report.categoryTotal(c));
+        for (int m = 0; m < report.months; m++) {
+            int month = report.firstMonth + report.months - 1 - m;
+            Object[] row = pivot[m + 1];
+            row[0] = LedgerDates.formatMonth(month);
+            row[1] = formatCurrency(report.monthTotal(month));
+            for (int c = 0; c < categories.size(); c++) row[c + 2] = formatCurrency(report.cell(month, c));
+        }
+       
+        // Year over year, with the top categories' change alongside the total
+        String[] yearColumns = {"Year", "Total", "Change", "Largest category", "Its change"};
+        List<Object[]> years = new ArrayList<>();
+        for (int year = report.lastYear(); year >= report.firstYear(); year--) {
+            int largest = -1;
+            for (int c = 0; c < categories.size(); c++) {
+                if (largest < 0 || report.yearTotal(year, c) > report.yearTotal(year, largest)) largest = c;
+            }
+            String categoryChange = "-";
+            if (largest >= 0 && report.yearTotal(year - 1, largest) != 0) {
+                long previous = report.yearTotal(year - 1, largest);
+                categoryChange = formatChange((report.yearTotal(year, largest) - previous) * 100.0 / previous);
+            }
+            years.add(new Object[] {
+                String.valueOf(year), formatCurrency(report.yearTotal(year)), formatChange(report.yearOverYear(year)),
+                largest >= 0 ? categories.get(largest) : "-", categoryChange});
+        }
+       
+        String[] topColumns = {"Description", "Total", "Expenses"};
+        Object[][] topRows = new Object[report.top.size()][];
+        for (int i = 0; i < topRows.length; i++) {
+            ReportEngine.DescriptionTotal entry = report.top.get(i);
+            topRows[i] = new Object[] {entry.description, formatCurrency(entry.paise), entry.count};
+        }
+       
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Month x Category", reportTable(pivot, pivotColumns));
+        tabs.addTab("Year over Year", reportTable(years.toArray(new Object[0][]), yearColumns));
+        tabs.addTab("Top Descriptions", reportTable(topRows, topColumns));
+        tabs.setPreferredSize(new Dimension(900, 480));
+        JOptionPane.showMessageDialog(this, tabs,
+            "Reports (" + report.rows + " expenses)", JOptionPane.PLAIN_MESSAGE);
+    }
+   
+    private JScrollPane reportTable(Object[][] rows, String[] columns) {
+        JTable table = new JTable(new DefaultTableModel(rows, columns) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        });
+        styleTable(table);
+        table.setAutoResizeMode(columns.length > 8 ? JTable.AUTO_RESIZE_OFF : JTable.AUTO_RESIZE_ALL_COLUMNS);
+        if (columns.length > 8) {
+            for (int c = 0; c < columns.length; c++) table.getColumnModel().getColumn(c).setPreferredWidth(130);
+        }
+        JScrollPane scroll = new JScrollPane(table);
+        scroll.setBorder(new LineBorder(new Color(229, 231, 235), 1));
+        return scroll;
+    }
+   
+    private static String formatChange(double percent) {
+        return Double.isNaN(percent) ? "-" : String.format("%+.1f%%", percent);
+    }
+   
+    // Counters and latencies from the shared registry, also published over JMX
+    private void showDiagnostics() {
+        StringBuilder text = new StringBuilder();
+        text.append("Rows loaded: ").append(store.size())
+            .append("    Stat card refreshes: ").append(refresh.frames());
+        if (store.offHeap()) text.append("    Off-heap columns: ").append(store.offHeapBytes() >> 20).append(" MB");
+        text.append("\n\n");
+        Metrics.report(text);
+        text.append("\nJMX: ").append(Metrics.OBJECT_NAME);
+        JTextArea area = new JTextArea(text.toString());
+        area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        area.setEditable(false);
+        JScrollPane scroll = new JScrollPane(area);
+        scroll.setPreferredSize(new Dimension(640, 420));
+        JOptionPane.showMessageDialog(this, scroll, "Diagnostics", JOptionPane.INFORMATION_MESSAGE);
+    }
+   
     private void showError(String message) {
         JOptionPane.showMessageDialog(this, message, "Error", JOptionPane.ERROR_MESSAGE);
     }
    
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--serve")) {
+            serve(args);
+            return;
+        }
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
         } catch (Exception ex) {
@@ -867,4 +1532,25 @@ public class ExpenseTracker extends JFrame {
        
         SwingUtilities.invokeLater(() -> new ExpenseTracker());
     }
+   
+    // Headless mode: the HTTP API over the same data folder, until the process is stopped
+    private static void serve(String[] args) {
+        try {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : ExpenseServer.DEFAULT_PORT;
+            ExpenseServer server = ExpenseServer.start(new File(DATA_FOLDER),
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.close();
+                } catch (IOException ex) {
+                    // Left in the journal and folded in on the next start
+                }
+            }));
+            System.out.println("Serving " + DATA_FOLDER + " on http://" + server.address().getHostString()
+                + ":" + server.address().getPort());
+        } catch (IOException | NumberFormatException ex) {
+            System.err.println("Error starting the server: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import ledger.LedgerAggregates;
+import ledger.LedgerDates;
+import ledger.LedgerStore;
+import ledger.Money;
+import ledger.ReportEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** The stat card work behind updateUI(), the Reports view, plus formatCurrency(). */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx6g"})
+public class AggregateBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private LedgerStore store;
+    private final StringBuilder text = new StringBuilder(32);
+    private long amount = 1234567890L;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        store = LedgerFixture.load(LedgerFixture.folder(rows));
+    }
+
+    @Benchmark
+    public void updateUI(Blackhole bh) {
+        LedgerAggregates aggregates = store.aggregates();
+        bh.consume(aggregates.total());
+        bh.consume(aggregates.monthTotal(LedgerDates.monthIndex(LedgerDates.today())));
+        bh.consume(aggregates.topCategory());
+    }
+
+    @Benchmark
+    public void addThenDelete(Blackhole bh) {
+        int row = store.add(LedgerDates.today(), 600, 4200, "Food & Dining", "Lunch");
+        store.remove(row);
+        bh.consume(store.aggregates().topCategory());
+    }
+
+    @Benchmark
+    public ReportEngine.Report report() {
+        return new ReportEngine().run(store, ReportEngine.DEFAULT_TOP);
+    }
+
+    @Benchmark
+    public String formatCurrency() {
+        text.setLength(0);
+        amount += 7;
+        return Money.appendInr(text, amount).toString();
+    }
+}
@@ -0,0 +1,117 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.function.BiFunction;
+import ledger.DayFiles;
+import ledger.LedgerDates;
+import ledger.LedgerLoader;
+import ledger.LedgerStore;
+
+/**
+ * Generates synthetic data folders for the benchmarks: ten years of daily
+ * files ending on the day they are generated, with the rows spread evenly
+ * across the days. Folders are cached under target/bench-data so each size
+ * is written only once; the first day is kept in the folder's .complete
+ * marker, so a cached folder keeps its range as it ages. Benchmarks only
+ * read these folders; one that writes works on a {@link #copy}.
+ */
+public final class LedgerFixture {
+    public static final int DAYS = 3650;
+    private static final String DONE = ".complete";
+
+    static final String[] CATEGORIES = {
+        "Food & Dining", "Transport", "Groceries", "Bills & Utilities",
+        "Entertainment", "Healthcare", "Clothing", "Education",
+        "Rent/EMI", "Mobile/Internet", "Fuel", "Gifts",
+        "Investment", "Other"
+    };
+
+    static final String[] DESCRIPTIONS = {
+        "Lunch", "Railway Ticket", "Printouts and Files", "College Files",
+        "Railway Station - College", "Vegetables", "Electricity bill", "Movie",
+        "Medicines", "Recharge", "Petrol", "Birthday gift", "SIP", "Tea"
+    };
+
+    private LedgerFixture() {
+    }
+
+    /** First day of a generated folder, or of a copy of one. */
+    public static int firstDay(File folder) throws IOException {
+        return Integer.parseInt(Files.readString(new File(folder, DONE).toPath()).trim());
+    }
+
+    /** A data folder in the GUI's layout, expense_dd-MM-yyyy.txt day files. */
+    public static File folder(int rows) throws IOException {
+        return generate(new File("target/bench-data/" + rows), rows, DayFiles::dayFile);
+    }
+
+    /** The same rows in the CLI's layout, dd-MM-yyyy.txt files. */
+    public static File cliFolder(int rows) throws IOException {
+        return generate(new File("target/bench-data/cli-" + rows), rows, LedgerFixture::cliFile);
+    }
+
+    public static File cliFile(File folder, int epochDay) {
+        return new File(folder, LedgerDates.formatDay(epochDay) + ".txt");
+    }
+
+    private static File generate(File folder, int rows, BiFunction<File, Integer, File> fileOfDay) throws IOException {
+        try {
+            firstDay(folder);
+            return folder;
+        } catch (IOException | NumberFormatException ex) {
+            // Not generated yet, cut short, or from before the first day was kept
+        }
+
+        deleteFiles(folder);
+        folder.mkdirs();
+        Random random = new Random(rows);
+        StringBuilder line = new StringBuilder(96);
+        int first = LedgerDates.today() - DAYS + 1;
+        for (int d = 0; d < DAYS; d++) {
+            int perDay = rows / DAYS + (d < rows % DAYS ? 1 : 0);
+            if (perDay == 0) continue;
+            File file = fileOfDay.apply(folder, first + d);
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8))) {
+                for (int i = 0; i < perDay; i++) {
+                    line.setLength(0);
+                    DayFiles.appendLine(line, first + d, random.nextInt(1440), 100 + random.nextInt(500_000),
+                        CATEGORIES[random.nextInt(CATEGORIES.length)],
+                        DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)]);
+                    writer.write(line.toString());
+                    writer.newLine();
+                }
+            }
+        }
+        Files.writeString(new File(folder, DONE).toPath(), Integer.toString(first));
+        return folder;
+    }
+
+    /** A fresh copy of a generated folder under {@code name}, replacing any earlier one. */
+    public static File copy(File source, String name) throws IOException {
+        File target = new File(source.getParentFile(), source.getName() + "-" + name);
+        deleteFiles(target);
+        target.mkdirs();
+        File[] files = source.listFiles(File::isFile);
+        if (files == null) throw new IOException("Missing fixture " + source);
+        for (File file : files) Files.copy(file.toPath(), new File(target, file.getName()).toPath());
+        return target;
+    }
+
+    private static void deleteFiles(File folder) {
+        File[] files = folder.listFiles(File::isFile);
+        if (files == null) return;
+        for (File file : files) file.delete();
+    }
+
+    public static LedgerStore load(File folder) throws InterruptedException {
+        LedgerStore store = new LedgerStore();
+        new LedgerLoader().load(LedgerLoader.listLedgerFiles(folder), (batch, done, total) -> batch.appendTo(store));
+        return store;
+    }
+}
@@ -0,0 +1,73 @@
+package bench;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import ledger.DayIndex;
+import ledger.LedgerLoader;
+import ledger.LedgerStore;
+import ledger.MalformedLine;
+import ledger.RecordBatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Startup load, loadExpensesFromFile and loadExpensesInRange. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx6g"})
+public class LoadBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private File folder;
+    private File oneDay;
+    private int lastDay;
+    private DayIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        folder = LedgerFixture.folder(rows);
+        oneDay = LedgerLoader.listLedgerFiles(folder).get(0);
+        lastDay = LedgerFixture.firstDay(folder) + LedgerFixture.DAYS - 1;
+        index = new DayIndex(folder);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        index.close();
+    }
+
+    @Benchmark
+    public LedgerStore loadExpenses() throws Exception {
+        return LedgerFixture.load(folder);
+    }
+
+    @Benchmark
+    public RecordBatch loadExpensesFromFile() throws Exception {
+        List<MalformedLine> malformed = new ArrayList<>();
+        return LedgerLoader.readDayFile(oneDay, malformed);
+    }
+
+    @Benchmark
+    public LedgerStore loadExpensesInRangeLast90Days() throws Exception {
+        LedgerStore store = new LedgerStore();
+        new LedgerLoader().load(index.files(lastDay - 89, lastDay), lastDay - 89, lastDay,
+            (batch, done, total) -> batch.appendTo(store));
+        return store;
+    }
+}
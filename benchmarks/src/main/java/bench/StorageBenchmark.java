@@ -0,0 +1,84 @@
+package bench;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.concurrent.TimeUnit;
+import ledger.DayFiles;
+import ledger.Journal;
+import ledger.RecordBatch;
+import ledger.Rollup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The write path that replaced saveAllExpenses() (a journalled delete folded
+ * into its day file) and the CLI viewSummary, served from the rollup sidecar
+ * of a CLI folder: as is, and after an add changed one day's file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx6g"})
+public class StorageBenchmark {
+    private static final FilenameFilter CLI_FILES = (dir, name) -> name.endsWith(".txt");
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private File folder;
+    private int lastDay;
+    private Journal journal;
+    private File cliFolder;
+    private final RecordBatch added = new RecordBatch(1);
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        // The journal writes, so it gets its own copy of the folder the other benchmarks read
+        folder = LedgerFixture.copy(LedgerFixture.folder(rows), "storage");
+        lastDay = LedgerFixture.firstDay(folder) + LedgerFixture.DAYS - 1;
+        journal = new Journal(folder, Journal.FsyncPolicy.NEVER);
+
+        cliFolder = LedgerFixture.copy(LedgerFixture.cliFolder(rows), "storage");
+        // The first open builds the sidecar from every file, as the CLI's first summary does
+        Rollup.open(cliFolder, CLI_FILES);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        journal.close();
+    }
+
+    @Benchmark
+    public void saveAfterDelete() throws Exception {
+        journal.add(lastDay, 600, 4200, "Food & Dining", "Benchmark row");
+        journal.delete(lastDay, 600, 4200, "Food & Dining", "Benchmark row");
+        journal.compact().get();
+    }
+
+    @Benchmark
+    public long viewSummary() throws Exception {
+        return Rollup.open(cliFolder, CLI_FILES).total();
+    }
+
+    // The CLI's add followed by its summary, which re-reads the one changed file
+    @Benchmark
+    public long viewSummaryAfterAdd() throws Exception {
+        added.clear();
+        added.add(lastDay, 600, 4200, "Food & Dining", "Benchmark row");
+        DayFiles.append(cliFolder, day -> LedgerFixture.cliFile(cliFolder, day), added);
+        return Rollup.open(cliFolder, CLI_FILES).total();
+    }
+}
@@ -0,0 +1,77 @@
+package ledger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keyword rules that guess a category from a bank or UPI narration such as
+ * "UPI/ZOMATO/1234" or "IRCTC E-TICKET". Descriptions and keywords are
+ * split into words the way {@link DescriptionIndex} splits them, and a
+ * keyword matches whole words only, all of them in a row for a keyword like
+ * "water bill", so "ola" finds "OLA CABS" but not "Coca Cola". The first
+ * rule with a matching keyword wins. Immutable once built, so one instance
+ * can be shared by the import workers.
+ */
+public final class Categorizer {
+    public static final String FALLBACK = "Other";
+
+    // Keyword words, indexed by the first one; rule numbers keep the first-rule-wins order
+    private final Map<String, List<Integer>> byFirstWord = new HashMap<>();
+    private final List<String[]> keywords = new ArrayList<>();
+    private final List<String> categories = new ArrayList<>();
+
+    private Categorizer() {
+    }
+
+    public static Categorizer defaults() {
+        return new Categorizer()
+            .rule("Food & Dining", "zomato", "swiggy", "restaurant", "cafe", "dominos", "mcdonald", "mcdonalds", "canteen")
+            .rule("Transport", "uber", "ola", "rapido", "irctc", "railway", "railways", "metro", "bus", "redbus")
+            .rule("Groceries", "bigbasket", "blinkit", "zepto", "dmart", "grocery", "kirana")
+            .rule("Bills & Utilities", "electricity", "bescom", "water bill", "gas", "bbps")
+            .rule("Entertainment", "netflix", "hotstar", "prime video", "spotify", "bookmyshow", "pvr")
+            .rule("Healthcare", "pharmacy", "apollo", "hospital", "clinic", "medplus", "1mg")
+            .rule("Clothing", "myntra", "ajio", "zara", "h&m", "clothing")
+            .rule("Education", "udemy", "coursera", "college", "school", "fees", "books")
+            .rule("Rent/EMI", "rent", "emi", "loan")
+            .rule("Mobile/Internet", "airtel", "jio", "vodafone", "vi", "recharge", "broadband")
+            .rule("Fuel", "petrol", "diesel", "hpcl", "bpcl", "indian oil", "fuel")
+            .rule("Investment", "sip", "mutual fund", "zerodha", "groww", "nps", "ppf")
+            .rule("Gifts", "gift", "gifts");
+    }
+
+    private Categorizer rule(String category, String... words) {
+        List<String> split = new ArrayList<>();
+        for (String word : words) {
+            DescriptionIndex.tokenize(word, split);
+            byFirstWord.computeIfAbsent(split.get(0), w -> new ArrayList<>()).add(keywords.size());
+            keywords.add(split.toArray(new String[0]));
+            categories.add(category);
+        }
+        return this;
+    }
+
+    public String categorize(String description) {
+        List<String> words = new ArrayList<>();
+        DescriptionIndex.tokenize(description, words);
+        int best = Integer.MAX_VALUE;
+        for (int at = 0; at < words.size(); at++) {
+            List<Integer> candidates = byFirstWord.get(words.get(at));
+            if (candidates == null) continue;
+            for (int rule : candidates) {
+                if (rule < best && matchesAt(keywords.get(rule), words, at)) best = rule;
+            }
+        }
+        return best == Integer.MAX_VALUE ? FALLBACK : categories.get(best);
+    }
+
+    private static boolean matchesAt(String[] keyword, List<String> words, int at) {
+        if (at + keyword.length > words.size()) return false;
+        for (int i = 1; i < keyword.length; i++) {
+            if (!keyword[i].equals(words.get(at + i))) return false;
+        }
+        return true;
+    }
+}
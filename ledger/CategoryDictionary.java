@@ -0,0 +1,209 @@
+package ledger;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Category names mapped to small int ids, which is what {@link LedgerStore}
+ * rows, the query bitmaps and the aggregates carry. Names met in the data
+ * are registered on first use; defined categories, the built-in ones plus
+ * any the user adds, are kept in data/categories.txt:
+ *
+ * <pre>
+ * name              a top-level category
+ * name|parent       a subcategory of a top-level category
+ * </pre>
+ *
+ * Rows and data file lines hold the category's own name, so a subcategory
+ * reads like any other category to the CLI and older versions; only
+ * filters and reports roll it up into its parent.
+ *
+ * <p>Ids are handed out in registration order and only live for the
+ * process. Registering takes a lock and names are read from an array, so a
+ * store on one thread and a load into another store on a second thread can
+ * share a dictionary.
+ */
+public final class CategoryDictionary {
+    public static final String FILE_NAME = "categories.txt";
+    public static final List<String> DEFAULTS = List.of(
+        "Food & Dining", "Transport", "Groceries", "Bills & Utilities",
+        "Entertainment", "Healthcare", "Clothing", "Education",
+        "Rent/EMI", "Mobile/Internet", "Fuel", "Gifts",
+        "Investment", "Other");
+
+    private final File file;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private volatile String[] names = new String[16];
+    private int[] parents = new int[16];
+    private boolean[] defined = new boolean[16];
+    private volatile int size;
+
+    /** A dictionary that lives only in memory. */
+    public CategoryDictionary() {
+        this(null);
+    }
+
+    /** A dictionary kept in {@code file}; call {@link #load} before use. */
+    public CategoryDictionary(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the file, defining every category in it; names already known
+     * keep their ids. Without a file the built-in categories are defined.
+     * A line that names an invalid category, or a parent it cannot have,
+     * is added to {@code skipped} and the rest of the file still loads.
+     */
+    public synchronized void load(List<MalformedLine> skipped) throws IOException {
+        if (file == null || !file.exists()) {
+            for (String name : DEFAULTS) define(name, null);
+            return;
+        }
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        int line = 0;
+        for (int start = 0, end; start < bytes.length; start = end + 1) {
+            end = start;
+            while (end < bytes.length && bytes[end] != '\n') end++;
+            line++;
+            String text = new String(bytes, start, end - start, StandardCharsets.UTF_8).trim();
+            if (text.isEmpty() || text.startsWith("#")) continue;
+            int bar = text.indexOf('|');
+            try {
+                if (bar < 0) {
+                    define(text, null);
+                } else {
+                    String parent = text.substring(bar + 1).trim();
+                    define(text.substring(0, bar).trim(), parent.isEmpty() ? null : parent);
+                }
+            } catch (IllegalArgumentException ex) {
+                skipped.add(new MalformedLine(file, start, line, ex.getMessage()));
+            }
+        }
+    }
+
+    /** Writes the defined categories, parents before their subcategories, replacing the file atomically. */
+    public synchronized void save() throws IOException {
+        if (file == null) return;
+        File temp = File.createTempFile(FILE_NAME + ".", ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(temp, StandardCharsets.UTF_8))) {
+                writer.write("# Expense categories: \"name\", or \"name|parent\" for a subcategory");
+                writer.newLine();
+                for (String name : definedNames()) {
+                    int parent = parents[ids.get(name)];
+                    writer.write(parent < 0 ? name : name + "|" + names[parent]);
+                    writer.newLine();
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Defines a category, or moves an existing one under {@code parent},
+     * and returns its id. The parent, when given, is defined too.
+     *
+     * @throws IllegalArgumentException if the name is blank or holds '|',
+     *         or the parent is itself a subcategory or the category has
+     *         subcategories of its own
+     */
+    public synchronized int define(String name, String parent) {
+        if (name.isBlank() || name.indexOf('|') >= 0 || name.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Invalid category name: " + name);
+        }
+        int parentId = -1;
+        if (parent != null) {
+            parentId = define(parent, null);
+            if (parents[parentId] >= 0) throw new IllegalArgumentException(parent + " is itself a subcategory");
+        }
+        int id = intern(name);
+        if (parentId >= 0) {
+            if (parentId == id) throw new IllegalArgumentException(name + " cannot be its own parent");
+            for (int i = 0; i < size; i++) {
+                if (parents[i] == id) throw new IllegalArgumentException(name + " has subcategories of its own");
+            }
+        }
+        // A bare name in the file keeps the parent set by an earlier line
+        if (parent != null || !defined[id]) parents[id] = parentId;
+        defined[id] = true;
+        return id;
+    }
+
+    /** Returns the id for a name, registering it (undefined, top level) if it is new. */
+    public synchronized int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) return id;
+        int next = size;
+        if (next == parents.length) {
+            int capacity = next * 2;
+            parents = Arrays.copyOf(parents, capacity);
+            defined = Arrays.copyOf(defined, capacity);
+            names = Arrays.copyOf(names, capacity);
+        }
+        names[next] = name;
+        parents[next] = -1;
+        ids.put(name, next);
+        size = next + 1;
+        return next;
+    }
+
+    /** Id of a name, or -1 if it was never registered. */
+    public synchronized int find(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    /** Id of the parent category, or -1 for a top-level one. */
+    public synchronized int parent(int id) {
+        return parents[id];
+    }
+
+    /** The top-level category {@code id} rolls up into, itself when it has no parent. */
+    public synchronized int root(int id) {
+        return parents[id] < 0 ? id : parents[id];
+    }
+
+    /** Defined category names, each top-level one followed by its subcategories. */
+    public synchronized List<String> definedNames() {
+        List<String> result = new ArrayList<>();
+        for (int id = 0; id < size; id++) {
+            if (!defined[id] || parents[id] >= 0) continue;
+            result.add(names[id]);
+            for (int child = 0; child < size; child++) {
+                if (defined[child] && parents[child] == id) result.add(names[child]);
+            }
+        }
+        return result;
+    }
+
+    /** {@code categories} plus the subcategories of every one of them, e.g. for a filter. */
+    public synchronized Set<String> withSubcategories(Set<String> categories) {
+        Set<String> result = new LinkedHashSet<>(categories);
+        for (int id = 0; id < size; id++) {
+            if (parents[id] >= 0 && categories.contains(names[parents[id]])) result.add(names[id]);
+        }
+        return result;
+    }
+}
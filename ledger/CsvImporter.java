@@ -0,0 +1,397 @@
+package ledger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Streams a bank or UPI statement CSV into the ledger. The file is read in
+ * blocks of whole lines; each block is decoded, split, parsed and categorized
+ * on a fork/join worker while the next one is read, and at most a few blocks
+ * are in flight, so memory stays flat whatever the size of the statement.
+ * Parsed rows are handed to a {@link Sink} in file order, roughly
+ * {@link #FLUSH_ROWS} at a time, which lets the sink write each touched day
+ * once per flush instead of once per row.
+ *
+ * <p>Quoted fields may contain the delimiter and doubled quotes, but not
+ * line breaks.
+ */
+public class CsvImporter {
+    public static final int FLUSH_ROWS = 50_000;
+    private static final int BLOCK_BYTES = 256 * 1024;
+    private static final int MAX_REPORTED = 100;
+    private static final Metrics.Histogram IMPORT_TIME = Metrics.histogram("import");
+    private static final Metrics.Counter ROWS_IMPORTED = Metrics.counter("import.rows");
+    private static final Metrics.Counter ROWS_SKIPPED = Metrics.counter("import.skipped");
+    private static final Metrics.Counter BYTES_READ = Metrics.counter("bytes.read");
+    private static final Metrics.Counter MALFORMED = Metrics.counter("lines.malformed");
+
+    /** Receives parsed rows on the thread that called {@link #run}. */
+    public interface Sink {
+        void write(RecordBatch batch) throws IOException;
+    }
+
+    /** Optional progress callback, called on the importing thread after every flush. */
+    public interface Progress {
+        void update(long bytesRead, long bytesTotal);
+    }
+
+    /**
+     * Which columns of the statement hold what. Written and parsed as a spec
+     * such as {@code date=0;format=dd/MM/yyyy;amount=4;description=1}, with
+     * optional {@code category} (column, -1 to categorize by keyword),
+     * {@code header}, {@code delimiter} and {@code negate} (debits are
+     * negative numbers in the amount column).
+     */
+    public static final class Mapping {
+        public static final String DEFAULT_SPEC =
+            "date=0;format=dd-MM-yyyy;amount=1;description=2;category=-1;header=true;delimiter=,";
+
+        final int dateColumn;
+        final String dateFormat;
+        final int amountColumn;
+        final int descriptionColumn;
+        final int categoryColumn;
+        final boolean header;
+        final char delimiter;
+        final boolean negate;
+
+        private Mapping(int dateColumn, String dateFormat, int amountColumn, int descriptionColumn,
+                        int categoryColumn, boolean header, char delimiter, boolean negate) {
+            this.dateColumn = dateColumn;
+            this.dateFormat = dateFormat;
+            this.amountColumn = amountColumn;
+            this.descriptionColumn = descriptionColumn;
+            this.categoryColumn = categoryColumn;
+            this.header = header;
+            this.delimiter = delimiter;
+            this.negate = negate;
+        }
+
+        public static Mapping parse(String spec) {
+            int date = 0, amount = 1, description = 2, category = -1;
+            String format = "dd-MM-yyyy";
+            boolean header = true, negate = false;
+            char delimiter = ',';
+            for (String part : spec.split(";")) {
+                if (part.isBlank()) continue;
+                int eq = part.indexOf('=');
+                if (eq < 0) throw new IllegalArgumentException("Expected key=value: " + part);
+                String key = part.substring(0, eq).trim().toLowerCase(Locale.ROOT);
+                String value = part.substring(eq + 1);
+                switch (key) {
+                    case "date" -> date = column(value);
+                    case "format" -> format = value.trim();
+                    case "amount" -> amount = column(value);
+                    case "description" -> description = column(value);
+                    case "category" -> category = Integer.parseInt(value.trim());
+                    case "header" -> header = Boolean.parseBoolean(value.trim());
+                    case "negate" -> negate = Boolean.parseBoolean(value.trim());
+                    case "delimiter" -> {
+                        if (value.equals("\\t")) value = "\t";
+                        if (value.length() != 1) throw new IllegalArgumentException("Delimiter must be one character");
+                        delimiter = value.charAt(0);
+                    }
+                    default -> throw new IllegalArgumentException("Unknown mapping key: " + key);
+                }
+            }
+            DateTimeFormatter.ofPattern(format);
+            return new Mapping(date, format, amount, description, category, header, delimiter, negate);
+        }
+
+        private static int column(String value) {
+            int column = Integer.parseInt(value.trim());
+            if (column < 0) throw new IllegalArgumentException("Column must be 0 or more: " + value);
+            return column;
+        }
+
+        @Override
+        public String toString() {
+            return "date=" + dateColumn + ";format=" + dateFormat + ";amount=" + amountColumn
+                + ";description=" + descriptionColumn + ";category=" + categoryColumn
+                + ";header=" + header + ";delimiter=" + (delimiter == '\t' ? "\\t" : String.valueOf(delimiter))
+                + ";negate=" + negate;
+        }
+    }
+
+    /** Counts of what happened to the lines of a statement. */
+    public static final class Result {
+        /** Rows handed to the sink. */
+        public long imported;
+        /** Lines that were valid but not expenses: blank, credits or zero amounts. */
+        public long skipped;
+        /** Lines that did not parse; only the first few are kept in {@link #malformed}. */
+        public long malformedCount;
+        public final List<MalformedLine> malformed = new ArrayList<>();
+    }
+
+    private static final class Block {
+        final byte[] bytes;
+        final int length;
+        final boolean first;
+
+        Block(byte[] bytes, int length, boolean first) {
+            this.bytes = bytes;
+            this.length = length;
+            this.first = first;
+        }
+    }
+
+    private static final class Parsed {
+        final RecordBatch batch = new RecordBatch(1024);
+        final List<MalformedLine> malformed = new ArrayList<>();
+        long malformedCount;
+        long skipped;
+        int lines;
+        int length;
+    }
+
+    private final ForkJoinPool pool;
+    private final Categorizer categorizer;
+
+    public CsvImporter(Categorizer categorizer) {
+        this(ForkJoinPool.commonPool(), categorizer);
+    }
+
+    public CsvImporter(ForkJoinPool pool, Categorizer categorizer) {
+        this.pool = pool;
+        this.categorizer = categorizer;
+    }
+
+    /**
+     * Imports {@code csv}, passing the rows to {@code sink}. Interrupting the
+     * calling thread stops the import after the current flush; rows already
+     * written stay written.
+     */
+    public Result run(File csv, Mapping mapping, Sink sink, Progress progress)
+            throws IOException, InterruptedException {
+        DateTimeFormatter dates = DateTimeFormatter.ofPattern(mapping.dateFormat, Locale.ENGLISH);
+        int window = Math.max(2, pool.getParallelism() * 2);
+        ArrayDeque<Future<Parsed>> inFlight = new ArrayDeque<>();
+        Result result = new Result();
+        RecordBatch pending = new RecordBatch(FLUSH_ROWS);
+        long total = csv.length();
+        long consumed = 0;
+        int lineBase = 0;
+        long start = System.nanoTime();
+
+        try (InputStream in = new FileInputStream(csv)) {
+            byte[] buffer = new byte[BLOCK_BYTES];
+            int filled = 0;
+            boolean first = true;
+            boolean eof = false;
+            while (!eof || !inFlight.isEmpty()) {
+                while (!eof && inFlight.size() < window) {
+                    int n = in.read(buffer, filled, buffer.length - filled);
+                    if (n < 0) {
+                        eof = true;
+                        if (filled > 0) inFlight.add(submit(new Block(Arrays.copyOf(buffer, filled), filled, first), csv, mapping, dates));
+                        filled = 0;
+                        break;
+                    }
+                    filled += n;
+                    int cut = lastNewline(buffer, filled);
+                    if (cut < 0) {
+                        // A line longer than the buffer: grow and keep reading
+                        if (filled == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                        continue;
+                    }
+                    inFlight.add(submit(new Block(Arrays.copyOf(buffer, cut + 1), cut + 1, first), csv, mapping, dates));
+                    first = false;
+                    System.arraycopy(buffer, cut + 1, buffer, 0, filled - cut - 1);
+                    filled -= cut + 1;
+                }
+                if (inFlight.isEmpty()) break;
+
+                Parsed parsed;
+                try {
+                    parsed = inFlight.poll().get();
+                } catch (ExecutionException ex) {
+                    throw new IOException("Import failed: " + ex.getCause().getMessage(), ex.getCause());
+                }
+                for (MalformedLine line : parsed.malformed) {
+                    if (result.malformed.size() < MAX_REPORTED) {
+                        result.malformed.add(new MalformedLine(csv, consumed + line.offset, lineBase + line.line, line.reason));
+                    }
+                }
+                result.malformedCount += parsed.malformedCount;
+                result.skipped += parsed.skipped;
+                lineBase += parsed.lines;
+                consumed += parsed.length;
+                pending.addAll(parsed.batch);
+
+                if (pending.size() >= FLUSH_ROWS) {
+                    result.imported += flush(pending, sink);
+                    if (progress != null) progress.update(consumed, total);
+                    if (Thread.interrupted()) throw new InterruptedException();
+                }
+            }
+            result.imported += flush(pending, sink);
+            if (progress != null) progress.update(consumed, total);
+        } finally {
+            for (Future<Parsed> future : inFlight) {
+                future.cancel(true);
+            }
+            IMPORT_TIME.recordSince(start);
+            ROWS_IMPORTED.add(result.imported);
+            ROWS_SKIPPED.add(result.skipped);
+            BYTES_READ.add(consumed);
+            MALFORMED.add(result.malformedCount);
+        }
+        return result;
+    }
+
+    private static int flush(RecordBatch pending, Sink sink) throws IOException {
+        int rows = pending.size();
+        if (rows > 0) sink.write(pending);
+        pending.clear();
+        return rows;
+    }
+
+    private static int lastNewline(byte[] buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == '\n') return i;
+        }
+        return -1;
+    }
+
+    private Future<Parsed> submit(Block block, File csv, Mapping mapping, DateTimeFormatter dates) {
+        return pool.submit(() -> parseBlock(block, csv, mapping, dates));
+    }
+
+    // Runs on a worker; offsets and line numbers are relative to the block
+    private Parsed parseBlock(Block block, File csv, Mapping mapping, DateTimeFormatter dates) {
+        Parsed parsed = new Parsed();
+        parsed.length = block.length;
+        List<String> fields = new ArrayList<>();
+        byte[] bytes = block.bytes;
+        int start = 0;
+        if (block.first && block.length >= 3
+                && (bytes[0] & 0xFF) == 0xEF && (bytes[1] & 0xFF) == 0xBB && (bytes[2] & 0xFF) == 0xBF) {
+            start = 3;
+        }
+        boolean skipHeader = block.first && mapping.header;
+        while (start < block.length) {
+            int end = start;
+            while (end < block.length && bytes[end] != '\n') end++;
+            int stop = end > start && bytes[end - 1] == '\r' ? end - 1 : end;
+            parsed.lines++;
+            String line = new String(bytes, start, stop - start, StandardCharsets.UTF_8);
+            if (skipHeader) {
+                skipHeader = false;
+            } else if (line.isBlank()) {
+                parsed.skipped++;
+            } else {
+                String reason = parseLine(line, mapping, dates, fields, parsed);
+                if (reason != null) {
+                    parsed.malformedCount++;
+                    if (parsed.malformed.size() < MAX_REPORTED) {
+                        parsed.malformed.add(new MalformedLine(csv, start, parsed.lines, reason));
+                    }
+                }
+            }
+            start = end + 1;
+        }
+        return parsed;
+    }
+
+    // Adds the row to parsed.batch, or returns why the line was rejected
+    private String parseLine(String line, Mapping mapping, DateTimeFormatter dates,
+                             List<String> fields, Parsed parsed) {
+        split(line, mapping.delimiter, fields);
+        int needed = Math.max(mapping.dateColumn, Math.max(mapping.amountColumn,
+            Math.max(mapping.descriptionColumn, mapping.categoryColumn)));
+        if (fields.size() <= needed) return "expected " + (needed + 1) + " columns, found " + fields.size();
+
+        String amountText = fields.get(mapping.amountColumn).trim();
+        if (amountText.isEmpty()) {
+            // Withdrawal/deposit statements leave the other column empty
+            parsed.skipped++;
+            return null;
+        }
+        long paise;
+        try {
+            paise = Money.parse(stripCurrency(amountText));
+        } catch (NumberFormatException ex) {
+            return "bad amount \"" + amountText + "\"";
+        }
+        if (mapping.negate) paise = -paise;
+        if (paise <= 0) {
+            parsed.skipped++;
+            return null;
+        }
+
+        int day;
+        int minute = 0;
+        String dateText = fields.get(mapping.dateColumn).trim();
+        try {
+            TemporalAccessor parsedDate = dates.parse(dateText);
+            day = (int) LocalDate.from(parsedDate).toEpochDay();
+            if (parsedDate.isSupported(ChronoField.MINUTE_OF_DAY)) {
+                minute = parsedDate.get(ChronoField.MINUTE_OF_DAY);
+            }
+        } catch (RuntimeException ex) {
+            return "bad date \"" + dateText + "\"";
+        }
+
+        String description = DayFiles.clean(fields.get(mapping.descriptionColumn));
+        if (description.isEmpty()) description = "Imported";
+        String category = mapping.categoryColumn >= 0 ? DayFiles.clean(fields.get(mapping.categoryColumn)) : "";
+        if (category.isEmpty()) category = categorizer.categorize(description);
+        parsed.batch.add(day, minute, paise, category, description);
+        return null;
+    }
+
+    // Keeps digits, sign, point and commas so "₹1,200.00" or "INR 50" parse
+    private static String stripCurrency(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c >= '0' && c <= '9') || c == '.' || c == ',' || c == '-' || c == '+') sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    static void split(String line, char delimiter, List<String> fields) {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+    }
+}
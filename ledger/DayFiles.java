@@ -0,0 +1,228 @@
+package ledger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Naming and line format of the per-day text files,
+ * data/expense_dd-MM-yyyy.txt holding "dd-MM-yyyy HH:mm|amount|category|description"
+ * with an optional trailing "|#id".
+ *
+ * <p>Deletes and edits are appended rather than rewritten: a "-#id" tombstone
+ * kills every earlier record with that id, and an edit is a tombstone followed
+ * by the new version under the same id. {@link #read} resolves them, so every
+ * reader sees only live rows; the journal rewrites a file once its
+ * {@link Contents#deadRatio() dead ratio} gets too high.
+ */
+public final class DayFiles {
+    public static final String PREFIX = "expense_";
+    public static final String SUFFIX = ".txt";
+
+    private static final ThreadLocal<RecordParser> PARSER = ThreadLocal.withInitial(RecordParser::new);
+
+    private DayFiles() {
+    }
+
+    public static File dayFile(File folder, int epochDay) {
+        return new File(folder, PREFIX + LedgerDates.formatDay(epochDay) + SUFFIX);
+    }
+
+    public static boolean isDayFile(String name) {
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+
+    /** Epoch day encoded in a day file name, or -1 if the name does not decode. */
+    public static int dayOf(String name) {
+        if (!isDayFile(name) || name.length() != PREFIX.length() + 10 + SUFFIX.length()) return -1;
+        try {
+            return LedgerDates.parseDay(name, PREFIX.length());
+        } catch (RuntimeException ex) {
+            return -1;
+        }
+    }
+
+    /** Lists the day files in a data folder. */
+    public static List<File> list(File folder) {
+        File[] files = folder.listFiles((dir, name) -> isDayFile(name));
+        return files == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(files));
+    }
+
+    /**
+     * A category or description made safe for a record line: '|' separates
+     * the fields and a line break ends the record, so they become '/' and a
+     * space. Also trims the value.
+     */
+    public static String clean(String field) {
+        return field.replace('|', '/').replace('\r', ' ').replace('\n', ' ').trim();
+    }
+
+    /** Appends one record in the day file line format, without the line break. */
+    public static StringBuilder appendLine(StringBuilder sb, int epochDay, int minute, long paise,
+                                           String category, String description) {
+        LedgerDates.appendDateTime(sb, epochDay, minute).append('|');
+        return Money.appendPlain(sb, paise)
+            .append('|').append(category)
+            .append('|').append(description);
+    }
+
+    /** Like {@link #appendLine(StringBuilder, int, int, long, String, String)} with a trailing id, unless it is 0. */
+    public static StringBuilder appendLine(StringBuilder sb, long id, int epochDay, int minute, long paise,
+                                           String category, String description) {
+        appendLine(sb, epochDay, minute, paise, category, description);
+        return id == 0 ? sb : ExpenseIds.append(sb.append('|'), id);
+    }
+
+    /** Appends a tombstone line for {@code id}, without the line break. */
+    public static StringBuilder appendTombstone(StringBuilder sb, long id) {
+        return ExpenseIds.append(sb.append('-'), id);
+    }
+
+    /**
+     * Appends rows to their day files, the write path of writers without a
+     * {@link Journal} such as the CLI, whose files are named differently, so
+     * {@code fileOfDay} names them. Rows without an id are given one in
+     * place, so a later tombstone can name them. Each day's lines go out in
+     * one write under the month's {@link StorageLocks} lock, and the month's
+     * version is bumped, so a journal with rows of that month sees the
+     * change as a conflict. Returns the number of bytes written.
+     */
+    public static long append(File folder, IntFunction<File> fileOfDay, RecordBatch rows) throws IOException {
+        rows.assignIds();
+        Integer[] order = new Integer[rows.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingInt(rows::day));
+
+        StorageLocks locks = StorageLocks.of(folder);
+        StringBuilder text = new StringBuilder(64 * 1024);
+        long written = 0;
+        int i = 0;
+        while (i < order.length) {
+            int day = rows.day(order[i]);
+            text.setLength(0);
+            for (; i < order.length && rows.day(order[i]) == day; i++) {
+                int row = order[i];
+                appendLine(text, rows.id(row), day, rows.minute(row), rows.paise(row), rows.category(row),
+                    rows.description(row)).append('\n');
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+            int month = LedgerDates.monthIndex(day);
+            try (StorageLocks.Held held = locks.lock(month);
+                 FileChannel out = FileChannel.open(fileOfDay.apply(day).toPath(),
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (bytes.hasRemaining()) out.write(bytes);
+                held.bump(month);
+            }
+            written += bytes.capacity();
+        }
+        return written;
+    }
+
+    /**
+     * Decodes one record line, keeping its id, into {@code batch}. Returns
+     * false, leaving the batch untouched, when the line is not a valid record.
+     */
+    public static boolean parseLine(String line, RecordBatch batch) {
+        int before = batch.size();
+        return PARSER.get().parseLine(line, new RecordParser.Handler() {
+            @Override
+            public void record(int epochDay, int minute, long paise, String category, String description) {
+                batch.add(epochDay, minute, paise, category, description);
+            }
+
+            @Override
+            public void record(long id, int epochDay, int minute, long paise, String category, String description) {
+                batch.add(id, epochDay, minute, paise, category, description);
+            }
+        }) && batch.size() > before;
+    }
+
+    /** The live rows of a day file and how much of it is dead. */
+    static final class Contents {
+        final RecordBatch live;
+        /** Record lines, live or dead. */
+        final int records;
+        final int tombstones;
+
+        Contents(RecordBatch live, int records, int tombstones) {
+            this.live = live;
+            this.records = records;
+            this.tombstones = tombstones;
+        }
+
+        /** Share of the file's lines that are dead records or tombstones. */
+        double deadRatio() {
+            int lines = records + tombstones;
+            return lines == 0 ? 0 : (double) (records - live.size() + tombstones) / lines;
+        }
+    }
+
+    /**
+     * Parses a day file and resolves its tombstones. Rows come back with
+     * their ids, derived from their position where the line has none;
+     * lines that do not decode go to {@code problems}.
+     */
+    static Contents read(File file, RecordParser parser, RecordParser.Handler problems) throws IOException {
+        RecordBatch rows = new RecordBatch();
+        Map<Long, Integer> killed = new HashMap<>();
+        int[] tombstones = {0};
+        try (InputStream in = new FileInputStream(file)) {
+            parser.parse(in, new RecordParser.Handler() {
+                @Override
+                public void record(int epochDay, int minute, long paise, String category, String description) {
+                    record(0, epochDay, minute, paise, category, description);
+                }
+
+                @Override
+                public void record(long id, int epochDay, int minute, long paise, String category, String description) {
+                    rows.add(id != 0 ? id : ExpenseIds.derived(epochDay, rows.size()), epochDay, minute, paise,
+                        category, description);
+                }
+
+                @Override
+                public void tombstone(long id) {
+                    tombstones[0]++;
+                    // Everything read so far with this id is dead
+                    killed.put(id, rows.size());
+                }
+
+                @Override
+                public void malformed(long offset, int line, String reason) {
+                    problems.malformed(offset, line, reason);
+                }
+            });
+        }
+        int records = rows.size();
+        if (!killed.isEmpty()) {
+            rows.retain(i -> {
+                Integer before = killed.get(rows.id(i));
+                return before == null || i >= before;
+            });
+        }
+        return new Contents(rows, records, tombstones[0]);
+    }
+
+    /**
+     * Passes the live rows of a day file to {@code handler}, with their ids,
+     * after the whole file is read. For streaming readers such as the export
+     * and the CLI, which would otherwise see rows a later tombstone kills.
+     */
+    public static void scan(File file, RecordParser parser, RecordParser.Handler handler) throws IOException {
+        RecordBatch live = read(file, parser, handler).live;
+        for (int i = 0; i < live.size(); i++) {
+            handler.record(live.id(i), live.day(i), live.minute(i), live.paise(i), live.category(i), live.description(i));
+        }
+    }
+}
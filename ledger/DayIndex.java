@@ -0,0 +1,108 @@
+package ledger;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Sorted index of the files in a data folder. Day files are keyed by their
+ * epoch day and month segments by the epoch day of the 1st, so a date range
+ * resolves to the files it needs with two subMap lookups instead of listing
+ * and parsing every file name.
+ *
+ * <p>The folder is scanned once, then kept current by a WatchService thread
+ * and by {@link #update(File)} for writes made in this process.
+ */
+public class DayIndex implements Closeable {
+    private final File folder;
+    private final NavigableMap<Integer, File> days = new ConcurrentSkipListMap<>();
+    private final NavigableMap<Integer, File> months = new ConcurrentSkipListMap<>();
+    private final WatchService watcher;
+    private final Thread watchThread;
+
+    public DayIndex(File folder) throws IOException {
+        this.folder = folder;
+        rescan();
+        watcher = FileSystems.getDefault().newWatchService();
+        folder.toPath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watchThread = new Thread(this::watch, "expense-day-index");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    /** Every indexed file, day files first, each group in date order. */
+    public List<File> all() {
+        List<File> files = new ArrayList<>(days.values());
+        files.addAll(months.values());
+        return files;
+    }
+
+    /** Day files and segments that may hold rows dated within [fromDay, toDay]. */
+    public List<File> files(int fromDay, int toDay) {
+        List<File> files = new ArrayList<>();
+        if (fromDay > toDay) return files;
+        files.addAll(days.subMap(fromDay, true, toDay, true).values());
+        int firstMonthDay = LedgerDates.monthStart(fromDay);
+        files.addAll(months.subMap(firstMonthDay, true, toDay, true).values());
+        return files;
+    }
+
+    /** Re-reads the state of one file in the folder after it was written or deleted. */
+    public void update(File file) {
+        String name = file.getName();
+        int day = DayFiles.dayOf(name);
+        int month = MonthSegment.monthOf(name);
+        if (day >= 0) {
+            if (file.exists()) days.put(day, file);
+            else days.remove(day);
+        } else if (month >= 0) {
+            int key = LedgerDates.firstDayOfMonth(month);
+            if (file.exists()) months.put(key, file);
+            else months.remove(key);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+        watchThread.interrupt();
+    }
+
+    private void rescan() {
+        days.clear();
+        months.clear();
+        for (File file : LedgerLoader.listLedgerFiles(folder)) {
+            update(file);
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        rescan();
+                    } else {
+                        update(new File(folder, ((Path) event.context()).toString()));
+                    }
+                }
+                if (!key.reset()) return;
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            // Index closed
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package ledger;
+
+import java.util.Arrays;
+
+/**
+ * Spend per epoch day kept as Fenwick trees, one over every row and one per
+ * category, so the total between any two days is the difference of two
+ * prefix sums, O(log days) whatever the number of rows. Adds and removes
+ * cost the same.
+ *
+ * <p>The trees cover a window of days starting at the first day seen and
+ * double to take in days outside it. Growing turns each tree back into its
+ * per-day values and rebuilds it in the new window, both in linear time, so
+ * no second copy of the daily totals is kept.
+ */
+public class DayTotals {
+    private static final int INITIAL_DAYS = 64;
+
+    private int firstDay;
+    private int capacity;
+    // 1-based; slot 0 is unused
+    private long[] tree = new long[0];
+    private long[][] categoryTrees = new long[0][];
+
+    public void add(int epochDay, long paise, int categoryId) {
+        ensureDay(epochDay);
+        int i = epochDay - firstDay + 1;
+        update(tree, i, paise);
+        update(categoryTree(categoryId), i, paise);
+    }
+
+    public void remove(int epochDay, long paise, int categoryId) {
+        add(epochDay, -paise, categoryId);
+    }
+
+    public void clear() {
+        capacity = 0;
+        tree = new long[0];
+        categoryTrees = new long[0][];
+    }
+
+    /** Spend dated within [fromDay, toDay]. */
+    public long sum(int fromDay, int toDay) {
+        return range(tree, fromDay, toDay);
+    }
+
+    /** Spend in one category dated within [fromDay, toDay]. */
+    public long sum(int fromDay, int toDay, int categoryId) {
+        long[] categoryTree = categoryId < categoryTrees.length ? categoryTrees[categoryId] : null;
+        return categoryTree == null ? 0 : range(categoryTree, fromDay, toDay);
+    }
+
+    /** Average spend per day over the {@code days} days ending with {@code toDay}. */
+    public long dailyAverage(int toDay, int days) {
+        return sum(toDay - days + 1, toDay) / days;
+    }
+
+    private long range(long[] t, int fromDay, int toDay) {
+        if (capacity == 0) return 0;
+        int from = Math.max(fromDay, firstDay) - firstDay + 1;
+        int to = Math.min(toDay, firstDay + capacity - 1) - firstDay + 1;
+        return from > to ? 0 : prefix(t, to) - prefix(t, from - 1);
+    }
+
+    private long[] categoryTree(int categoryId) {
+        if (categoryId >= categoryTrees.length) {
+            categoryTrees = Arrays.copyOf(categoryTrees, Math.max(categoryId + 1, categoryTrees.length * 2));
+        }
+        if (categoryTrees[categoryId] == null) categoryTrees[categoryId] = new long[capacity + 1];
+        return categoryTrees[categoryId];
+    }
+
+    private void ensureDay(int epochDay) {
+        if (capacity == 0) {
+            capacity = INITIAL_DAYS;
+            firstDay = epochDay;
+            tree = new long[capacity + 1];
+            return;
+        }
+        int shift = 0;
+        int grown = capacity;
+        if (epochDay < firstDay) {
+            shift = Math.max(firstDay - epochDay, capacity);
+            grown = capacity + shift;
+        } else if (epochDay - firstDay >= capacity) {
+            grown = Math.max(epochDay - firstDay + 1, capacity * 2);
+        } else {
+            return;
+        }
+        tree = regrow(tree, shift, grown);
+        for (int id = 0; id < categoryTrees.length; id++) {
+            if (categoryTrees[id] != null) categoryTrees[id] = regrow(categoryTrees[id], shift, grown);
+        }
+        firstDay -= shift;
+        capacity = grown;
+    }
+
+    // Unwinds t into per-day values, moves them shift days later in a window
+    // of the given number of days and builds the tree again
+    private long[] regrow(long[] t, int shift, int days) {
+        for (int i = capacity; i >= 1; i--) {
+            int parent = i + (i & -i);
+            if (parent <= capacity) t[parent] -= t[i];
+        }
+        long[] grown = new long[days + 1];
+        System.arraycopy(t, 1, grown, 1 + shift, capacity);
+        for (int i = 1; i <= days; i++) {
+            int parent = i + (i & -i);
+            if (parent <= days) grown[parent] += grown[i];
+        }
+        return grown;
+    }
+
+    private static void update(long[] t, int i, long delta) {
+        for (; i < t.length; i += i & -i) t[i] += delta;
+    }
+
+    private static long prefix(long[] t, int i) {
+        long sum = 0;
+        for (; i > 0; i -= i & -i) sum += t[i];
+        return sum;
+    }
+}
@@ -0,0 +1,255 @@
+package ledger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Inverted index over the description column of a {@link LedgerStore}.
+ *
+ * <p>Descriptions are already pooled by the store, so the index works on
+ * description ids: each distinct description is tokenized once, when it is
+ * first seen, and its id is posted under every token and under each token
+ * prefix of up to {@link #PREFIX_LENGTH} characters. Longer prefixes resolve
+ * through a sorted range of the token dictionary. A second level maps each
+ * description id to the rows that use it, appended as rows arrive.
+ *
+ * <p>Every query word is matched as a prefix, so "rail tic" finds "Railway
+ * Ticket". Removing a row shifts the row numbers after it, so the row lists
+ * are rebuilt from the store on the next search after a removal; the token
+ * postings never change once written.
+ */
+public class DescriptionIndex {
+    public static final int PREFIX_LENGTH = 3;
+    private static final int SORT_LIMIT = 1024;
+    private static final Metrics.Histogram SEARCH_TIME = Metrics.histogram("search");
+
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            // A description posts the same key twice when tokens repeat ("bus bus")
+            if (size > 0 && ids[size - 1] == id) return;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+    }
+
+    private static final Postings EMPTY = new Postings();
+
+    private final LedgerStore store;
+    private final TreeMap<String, Postings> tokens = new TreeMap<>();
+    private final Map<String, Postings> prefixes = new HashMap<>();
+    private final List<String> scratch = new ArrayList<>();
+    private int indexedDescriptions;
+
+    private int[][] rows = new int[64][];
+    private int[] rowCounts = new int[64];
+    private boolean stale;
+    private long[] bits = new long[0];
+
+    DescriptionIndex(LedgerStore store) {
+        this.store = store;
+    }
+
+    /** Called by the store for every appended row. */
+    void add(int row, int descriptionId, String description) {
+        if (descriptionId == indexedDescriptions) {
+            indexDescription(descriptionId, description);
+        }
+        if (!stale) addRow(row, descriptionId);
+    }
+
+    /** Called by the store when a row was removed and the rows after it shifted. */
+    void rowsShifted() {
+        stale = true;
+    }
+
+    /** Called by the store when a row was edited in place to this description. */
+    void rowChanged(int descriptionId, String description) {
+        if (descriptionId == indexedDescriptions) {
+            indexDescription(descriptionId, description);
+        }
+        stale = true;
+    }
+
+    /** Called by the store when every row was removed. */
+    void clearRows() {
+        Arrays.fill(rowCounts, 0);
+        stale = false;
+    }
+
+    /**
+     * Rows whose description contains a word starting with each word of
+     * {@code query}, in ascending row order, or null when the query has no
+     * words and therefore matches everything.
+     */
+    public int[] search(String query) {
+        List<String> words = new ArrayList<>();
+        tokenize(query, words);
+        if (words.isEmpty()) return null;
+        long start = System.nanoTime();
+        try {
+            return searchWords(words);
+        } finally {
+            SEARCH_TIME.recordSince(start);
+        }
+    }
+
+    private int[] searchWords(List<String> words) {
+        if (stale) rebuildRows();
+
+        // Intersect starting from the rarest word so the candidate list only shrinks
+        Postings[] lists = new Postings[words.size()];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = descriptionsWithPrefix(words.get(i));
+            if (lists[i].size == 0) return new int[0];
+        }
+        Arrays.sort(lists, (x, y) -> Integer.compare(x.size, y.size));
+        int[] matches = lists[0].ids;
+        int count = lists[0].size;
+        for (int i = 1; i < lists.length && count > 0; i++) {
+            int[] next = new int[count];
+            count = intersect(matches, count, lists[i].ids, lists[i].size, next);
+            matches = next;
+        }
+        if (count < matches.length) matches = Arrays.copyOf(matches, count);
+        else if (matches == lists[0].ids) matches = matches.clone();
+
+        int total = 0;
+        for (int id : matches) total += rowCounts[id];
+        int[] result = new int[total];
+        if (matches.length == 1) {
+            System.arraycopy(rows[matches[0]], 0, result, 0, total);
+        } else if (total < SORT_LIMIT) {
+            int at = 0;
+            for (int id : matches) {
+                System.arraycopy(rows[id], 0, result, at, rowCounts[id]);
+                at += rowCounts[id];
+            }
+            Arrays.sort(result);
+        } else {
+            mergeThroughBitmap(matches, result);
+        }
+        return result;
+    }
+
+    // Sets one bit per matching row and reads them back in order, which beats
+    // sorting once the result runs to thousands of rows
+    private void mergeThroughBitmap(int[] matches, int[] result) {
+        int words = (store.size() + 63) >>> 6;
+        if (bits.length < words) bits = new long[words];
+        for (int id : matches) {
+            int[] list = rows[id];
+            for (int i = 0; i < rowCounts[id]; i++) {
+                bits[list[i] >>> 6] |= 1L << list[i];
+            }
+        }
+        int at = 0;
+        for (int w = 0; w < words; w++) {
+            long word = bits[w];
+            if (word == 0) continue;
+            bits[w] = 0;
+            while (word != 0) {
+                result[at++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+    }
+
+    private Postings descriptionsWithPrefix(String word) {
+        if (word.length() <= PREFIX_LENGTH) {
+            Postings postings = prefixes.get(word);
+            return postings == null ? EMPTY : postings;
+        }
+        Map<String, Postings> range = tokens.subMap(word, true, word + Character.MAX_VALUE, false);
+        if (range.size() <= 1) {
+            return range.isEmpty() ? EMPTY : range.values().iterator().next();
+        }
+        BitSet union = new BitSet(indexedDescriptions);
+        for (Postings postings : range.values()) {
+            for (int i = 0; i < postings.size; i++) union.set(postings.ids[i]);
+        }
+        Postings merged = new Postings();
+        merged.ids = union.stream().toArray();
+        merged.size = merged.ids.length;
+        return merged;
+    }
+
+    // Sorted intersection that gallops through b when it is much longer than a
+    private static int intersect(int[] a, int na, int[] b, int nb, int[] out) {
+        int n = 0;
+        int j = 0;
+        boolean gallop = nb > na * 8;
+        for (int i = 0; i < na && j < nb; i++) {
+            int want = a[i];
+            if (gallop) {
+                int step = 1;
+                while (j + step < nb && b[j + step] < want) step <<= 1;
+                int found = Arrays.binarySearch(b, j, Math.min(j + step + 1, nb), want);
+                j = found >= 0 ? found : -found - 1;
+            } else {
+                while (j < nb && b[j] < want) j++;
+            }
+            if (j < nb && b[j] == want) out[n++] = want;
+        }
+        return n;
+    }
+
+    private void indexDescription(int descriptionId, String description) {
+        tokenize(description, scratch);
+        for (String token : scratch) {
+            tokens.computeIfAbsent(token, k -> new Postings()).add(descriptionId);
+            for (int length = 1; length <= Math.min(PREFIX_LENGTH, token.length()); length++) {
+                prefixes.computeIfAbsent(token.substring(0, length), k -> new Postings()).add(descriptionId);
+            }
+        }
+        indexedDescriptions++;
+    }
+
+    private void addRow(int row, int descriptionId) {
+        if (descriptionId >= rows.length) {
+            int capacity = Math.max(descriptionId + 1, rows.length * 2);
+            rows = Arrays.copyOf(rows, capacity);
+            rowCounts = Arrays.copyOf(rowCounts, capacity);
+        }
+        int[] list = rows[descriptionId];
+        int count = rowCounts[descriptionId];
+        if (list == null) {
+            list = rows[descriptionId] = new int[2];
+        } else if (count == list.length) {
+            list = rows[descriptionId] = Arrays.copyOf(list, count * 2);
+        }
+        list[count] = row;
+        rowCounts[descriptionId] = count + 1;
+    }
+
+    private void rebuildRows() {
+        Arrays.fill(rowCounts, 0);
+        for (int row = 0; row < store.size(); row++) {
+            addRow(row, store.descriptionId(row));
+        }
+        stale = false;
+    }
+
+    /** Splits into lower-case runs of letters and digits. */
+    static void tokenize(String text, List<String> out) {
+        out.clear();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                out.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+    }
+}
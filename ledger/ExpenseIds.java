@@ -0,0 +1,53 @@
+package ledger;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stable 64-bit expense ids. A new expense gets the time in milliseconds
+ * shifted past 20 low bits, which start at a random point per process so
+ * two processes adding in the same millisecond do not collide.
+ *
+ * <p>Rows written before ids existed carry none in their files. They get an
+ * id derived from their day and their position among the records of the
+ * file, which stays put because records are only ever appended; a file that
+ * is rewritten stores every id explicitly. Derived ids have bit 62 set, which
+ * generated ids do not reach before the year 2100.
+ */
+public final class ExpenseIds {
+    private static final long DERIVED = 1L << 62;
+    private static final long LOW_BITS = 20;
+    private static final long START = ThreadLocalRandom.current().nextLong(1L << (LOW_BITS - 1));
+    private static final AtomicLong LAST = new AtomicLong();
+
+    private ExpenseIds() {
+    }
+
+    /** A fresh id, increasing within the process. */
+    public static long next() {
+        long now = (System.currentTimeMillis() << LOW_BITS) | START;
+        return LAST.updateAndGet(last -> Math.max(last + 1, now));
+    }
+
+    /** The id of the {@code ordinal}-th record of a file when the line carries none. */
+    public static long derived(int epochDay, int ordinal) {
+        return DERIVED | ((epochDay & 0xFFFFFFFFL) << 24) | (ordinal & 0xFFFFFF);
+    }
+
+    /** Appends the "#hex" form used in the data files and the journal. */
+    public static StringBuilder append(StringBuilder sb, long id) {
+        return sb.append('#').append(Long.toHexString(id));
+    }
+
+    /** Reads the "#hex" form, or returns 0 when {@code text} is not one. */
+    public static long parse(CharSequence text) {
+        if (text.length() < 2 || text.length() > 17 || text.charAt(0) != '#') return 0;
+        long id = 0;
+        for (int i = 1; i < text.length(); i++) {
+            int digit = Character.digit(text.charAt(i), 16);
+            if (digit < 0) return 0;
+            id = id << 4 | digit;
+        }
+        return id;
+    }
+}
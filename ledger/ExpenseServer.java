@@ -0,0 +1,574 @@
+package ledger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Headless HTTP API over the same data folder, journal and snapshot as the
+ * GUI, for scripts and other tools:
+ *
+ * <pre>
+ * POST /expenses         one expense as a JSON object
+ * POST /expenses/batch   JSON Lines, or text/plain in the day file format
+ * GET  /expenses         matching expenses as JSON Lines
+ * GET  /summary          count, total, months and categories of the matches
+ * GET  /metrics          the {@link Metrics} report
+ * </pre>
+ *
+ * Records use the JSON Lines export shape, so an export can be posted back
+ * as a batch. GET requests filter with from and to (dd-MM-yyyy), category
+ * (repeated or comma separated), q (description words), min and max
+ * (amounts); /expenses also takes limit.
+ *
+ * <p>A request is answered once its rows are in the journal, whose group
+ * commit batches concurrent posts into one write. Requests run on virtual
+ * threads where the JDK has them and on a small pool otherwise; the store
+ * itself is guarded by one lock, since queries are a few bitmap operations.
+ */
+public final class ExpenseServer implements Closeable {
+    public static final int DEFAULT_PORT = 8080;
+    public static final int MAX_BATCH_ROWS = 1_000_000;
+    private static final int DEFAULT_LIMIT = 1000;
+    private static final int MAX_REPORTED = 20;
+    private static final Metrics.Histogram REQUEST_TIME = Metrics.histogram("http.request");
+    private static final Metrics.Counter ROWS_INGESTED = Metrics.counter("http.rows");
+    private static final Metrics.Counter REJECTED = Metrics.counter("http.rejected");
+
+    private final File folder;
+    private final Journal journal;
+    private final LedgerSnapshot snapshot;
+    // Shared by every store this server loads, so category ids stay put across reloads
+    private final CategoryDictionary categories;
+    private final Categorizer categorizer = Categorizer.defaults();
+    private final ExecutorService requests = newRequestExecutor();
+    private final ExecutorService reloader = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "expense-http-reload");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean reloadPending = new AtomicBoolean();
+    // Ingestion holds the read side from journal write to store append; a reload takes the write side
+    private final ReentrantReadWriteLock gate = new ReentrantReadWriteLock();
+    private final ReentrantLock storeLock = new ReentrantLock();
+    private LedgerStore store;
+    private boolean checkpointable;
+    private HttpServer server;
+
+    private ExpenseServer(File folder) throws IOException {
+        this.folder = folder;
+        journal = new Journal(folder, Journal.FsyncPolicy.fromProperty());
+        snapshot = new LedgerSnapshot(folder);
+        categories = new CategoryDictionary(new File(folder, CategoryDictionary.FILE_NAME));
+        journal.setInstallListener(snapshot::fold);
+        // Another process rewrote months this server has loaded
+        journal.setConflictListener(months -> {
+            if (reloadPending.compareAndSet(false, true)) reloader.execute(this::reload);
+        });
+    }
+
+    /** Loads the ledger and starts serving it on {@code address}. */
+    public static ExpenseServer start(File folder, InetSocketAddress address) throws IOException {
+        ExpenseServer expenseServer = new ExpenseServer(folder);
+        try {
+            expenseServer.store = expenseServer.load();
+            expenseServer.checkpointable = true;
+            HttpServer server = HttpServer.create(address, 0);
+            server.createContext("/expenses", expenseServer.handler(expenseServer::expenses));
+            server.createContext("/expenses/batch", expenseServer.handler(expenseServer::batch));
+            server.createContext("/summary", expenseServer.handler(expenseServer::summary));
+            server.createContext("/metrics", expenseServer.handler(expenseServer::metrics));
+            server.setExecutor(expenseServer.requests);
+            server.start();
+            expenseServer.server = server;
+            return expenseServer;
+        } catch (IOException | RuntimeException ex) {
+            expenseServer.close();
+            throw ex;
+        }
+    }
+
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    /** Stops serving, folds the journal into the data files and writes a snapshot. */
+    @Override
+    public void close() throws IOException {
+        if (server != null) server.stop(0);
+        requests.shutdown();
+        reloader.shutdownNow();
+        journal.close();
+        storeLock.lock();
+        try {
+            if (checkpointable && store != null) snapshot.checkpoint(store).write();
+        } finally {
+            storeLock.unlock();
+        }
+    }
+
+    /**
+     * Virtual threads when running on JDK 21 or later. The build targets 17,
+     * so the factory is looked up rather than called.
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            int threads = Math.max(8, Runtime.getRuntime().availableProcessors() * 4);
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "expense-http");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private interface Endpoint {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    private static final class BadRequest extends Exception {
+        final int status;
+
+        BadRequest(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private HttpHandler handler(Endpoint endpoint) {
+        return exchange -> {
+            long start = System.nanoTime();
+            try {
+                endpoint.handle(exchange);
+            } catch (IOException | RuntimeException ex) {
+                send(exchange, 500, error(ex.getMessage()));
+            } finally {
+                exchange.close();
+                REQUEST_TIME.recordSince(start);
+            }
+        };
+    }
+
+    private void expenses(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestURI().getPath().equals("/expenses")) {
+            send(exchange, 404, error("Not found"));
+            return;
+        }
+        String method = exchange.getRequestMethod();
+        if (method.equals("GET")) {
+            list(exchange);
+            return;
+        }
+        if (!method.equals("POST")) {
+            send(exchange, 405, error("Use GET or POST"));
+            return;
+        }
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        RecordBatch rows = new RecordBatch(1);
+        String problem;
+        try {
+            problem = addJson(body.trim(), rows);
+        } catch (IllegalArgumentException ex) {
+            problem = ex.getMessage();
+        }
+        if (problem != null) {
+            REJECTED.increment();
+            send(exchange, 400, error(problem));
+            return;
+        }
+        ingest(rows);
+        send(exchange, 201, "{\"added\":1}");
+    }
+
+    private void batch(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            send(exchange, 405, error("Use POST"));
+            return;
+        }
+        String type = exchange.getRequestHeaders().getFirst("Content-Type");
+        boolean lines = type != null && type.toLowerCase(Locale.ROOT).startsWith("text/plain");
+        RecordBatch rows = new RecordBatch(1024);
+        List<String> problems = new ArrayList<>();
+        int[] rejected = {0};
+        try (InputStream in = exchange.getRequestBody()) {
+            if (lines) readLines(in, rows, problems, rejected);
+            else readJsonLines(in, rows, problems, rejected);
+        } catch (BadRequest ex) {
+            REJECTED.add(rejected[0]);
+            send(exchange, ex.status, error(ex.getMessage()));
+            return;
+        }
+        REJECTED.add(rejected[0]);
+        ingest(rows);
+
+        StringBuilder response = new StringBuilder(256).append("{\"added\":").append(rows.size())
+            .append(",\"rejected\":").append(rejected[0]).append(",\"errors\":[");
+        for (int i = 0; i < problems.size(); i++) {
+            if (i > 0) response.append(',');
+            Json.appendString(response, problems.get(i));
+        }
+        send(exchange, rejected[0] == 0 ? 201 : 207, response.append("]}").toString());
+    }
+
+    private void readJsonLines(InputStream in, RecordBatch rows, List<String> problems, int[] rejected)
+            throws IOException, BadRequest {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+        String line;
+        int number = 0;
+        while ((line = reader.readLine()) != null) {
+            number++;
+            if (line.isBlank()) continue;
+            String problem;
+            try {
+                problem = addJson(line, rows);
+            } catch (IllegalArgumentException ex) {
+                problem = ex.getMessage();
+            }
+            if (problem != null) reject(problems, rejected, number, problem);
+            if (rows.size() > MAX_BATCH_ROWS) throw new BadRequest(413, "More than " + MAX_BATCH_ROWS + " rows");
+        }
+    }
+
+    private void readLines(InputStream in, RecordBatch rows, List<String> problems, int[] rejected)
+            throws IOException, BadRequest {
+        boolean[] tooLarge = {false};
+        new RecordParser().parse(in, new RecordParser.Handler() {
+            @Override
+            public void record(int epochDay, int minute, long paise, String category, String description) {
+                if (tooLarge[0]) return;
+                String problem = add(epochDay, minute, paise, category, description, rows);
+                if (problem != null) reject(problems, rejected, -1, problem);
+                tooLarge[0] = rows.size() > MAX_BATCH_ROWS;
+            }
+
+            @Override
+            public void tombstone(long id) {
+                reject(problems, rejected, -1, "tombstone lines are not accepted");
+            }
+
+            @Override
+            public void malformed(long offset, int line, String reason) {
+                reject(problems, rejected, line, reason);
+            }
+        });
+        if (tooLarge[0]) throw new BadRequest(413, "More than " + MAX_BATCH_ROWS + " rows");
+    }
+
+    private static void reject(List<String> problems, int[] rejected, int line, String reason) {
+        rejected[0]++;
+        if (problems.size() < MAX_REPORTED) problems.add(line < 0 ? reason : "line " + line + ": " + reason);
+    }
+
+    // Adds one JSON record to rows, or returns why it was rejected
+    private String addJson(String text, RecordBatch rows) {
+        Map<String, String> fields = Json.parseObject(text);
+        String amount = fields.get("amount");
+        if (amount == null) return "amount is required";
+        String date = fields.get("date");
+        int day;
+        int minute;
+        if (date == null) {
+            Date now = new Date();
+            day = LedgerDates.toEpochDay(now);
+            minute = LedgerDates.toMinute(now);
+        } else {
+            try {
+                day = LedgerDates.parseDay(date, 0);
+                minute = LedgerDates.parseMinute(date, 0);
+            } catch (RuntimeException ex) {
+                return "date must be dd-MM-yyyy or dd-MM-yyyy HH:mm";
+            }
+        }
+        long paise;
+        try {
+            paise = Money.parse(amount);
+        } catch (NumberFormatException ex) {
+            return ex.getMessage();
+        }
+        String category = fields.get("category");
+        return add(day, minute, paise, category == null ? "" : category, fields.getOrDefault("description", ""), rows);
+    }
+
+    // Applies the GUI's rules to one expense and adds it to rows, or returns why it was rejected
+    private String add(int day, int minute, long paise, String category, String description, RecordBatch rows) {
+        description = DayFiles.clean(description);
+        category = DayFiles.clean(category);
+        if (paise <= 0) return "amount must be positive";
+        if (description.isEmpty()) return "description is required";
+        if (category.isEmpty()) category = categorizer.categorize(description);
+        rows.add(day, minute, paise, category, description);
+        return null;
+    }
+
+    private void ingest(RecordBatch rows) throws IOException {
+        if (rows.size() == 0) return;
+        gate.readLock().lock();
+        try {
+            try {
+                journal.addAll(rows).get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while writing the journal");
+            } catch (ExecutionException ex) {
+                throw new IOException("Error writing the journal: " + ex.getCause().getMessage(), ex.getCause());
+            }
+            storeLock.lock();
+            try {
+                rows.appendTo(store);
+            } finally {
+                storeLock.unlock();
+            }
+            ROWS_INGESTED.add(rows.size());
+        } finally {
+            gate.readLock().unlock();
+        }
+    }
+
+    private void list(HttpExchange exchange) throws IOException {
+        Map<String, List<String>> params = params(exchange);
+        LedgerQuery query;
+        int limit;
+        try {
+            query = query(params);
+            limit = params.containsKey("limit") ? Integer.parseInt(first(params, "limit")) : DEFAULT_LIMIT;
+        } catch (IllegalArgumentException ex) {
+            send(exchange, 400, error(ex.getMessage()));
+            return;
+        }
+        StringBuilder out = new StringBuilder(4096);
+        int matches;
+        storeLock.lock();
+        try {
+            int[] rows = store.queryEngine().select(query);
+            matches = rows == null ? store.size() : rows.length;
+            for (int i = 0; i < Math.min(matches, Math.max(0, limit)); i++) {
+                int row = rows == null ? i : rows[i];
+                Json.appendRecord(out, store.day(row), store.minute(row), store.paise(row),
+                    store.category(row), store.description(row)).append('\n');
+            }
+        } finally {
+            storeLock.unlock();
+        }
+        exchange.getResponseHeaders().set("X-Total-Count", Integer.toString(matches));
+        send(exchange, 200, "application/x-ndjson", out.toString());
+    }
+
+    private void summary(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            send(exchange, 405, error("Use GET"));
+            return;
+        }
+        LedgerQuery query;
+        try {
+            query = query(params(exchange));
+        } catch (IllegalArgumentException ex) {
+            send(exchange, 400, error(ex.getMessage()));
+            return;
+        }
+        StringBuilder out = new StringBuilder(1024);
+        storeLock.lock();
+        try {
+            int[] rows = store.queryEngine().select(query);
+            int count = rows == null ? store.size() : rows.length;
+            long total = 0;
+            TreeMap<Integer, long[]> months = new TreeMap<>();
+            long[][] categories = new long[store.categoryCount()][2];
+            for (int i = 0; i < count; i++) {
+                int row = rows == null ? i : rows[i];
+                long paise = store.paise(row);
+                total += paise;
+                long[] month = months.computeIfAbsent(LedgerDates.monthIndex(store.day(row)), k -> new long[2]);
+                month[0] += paise;
+                month[1]++;
+                categories[store.categoryId(row)][0] += paise;
+                categories[store.categoryId(row)][1]++;
+            }
+            out.append("{\"count\":").append(count).append(",\"total\":");
+            Money.appendPlain(out, total).append(",\"months\":{");
+            String separator = "";
+            for (Map.Entry<Integer, long[]> month : months.entrySet()) {
+                out.append(separator);
+                Json.appendString(out, LedgerDates.formatMonth(month.getKey())).append(':');
+                appendTotal(out, month.getValue());
+                separator = ",";
+            }
+            out.append("},\"categories\":{");
+            separator = "";
+            for (int id = 0; id < categories.length; id++) {
+                if (categories[id][1] == 0) continue;
+                out.append(separator);
+                Json.appendString(out, store.categoryName(id)).append(':');
+                appendTotal(out, categories[id]);
+                separator = ",";
+            }
+            out.append("}}");
+        } finally {
+            storeLock.unlock();
+        }
+        send(exchange, 200, out.toString());
+    }
+
+    private static void appendTotal(StringBuilder out, long[] total) {
+        Money.appendPlain(out.append("{\"total\":"), total[0]).append(",\"count\":").append(total[1]).append('}');
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        send(exchange, 200, "text/plain; charset=utf-8", Metrics.report());
+    }
+
+    private LedgerQuery query(Map<String, List<String>> params) {
+        LedgerQuery query = new LedgerQuery();
+        String from = first(params, "from");
+        String to = first(params, "to");
+        if (from != null || to != null) {
+            query.between(from == null ? Integer.MIN_VALUE : day(from),
+                to == null ? Integer.MAX_VALUE : day(to));
+        }
+        String min = first(params, "min");
+        String max = first(params, "max");
+        if (min != null || max != null) {
+            query.amountBetween(min == null ? Long.MIN_VALUE : Money.parse(min),
+                max == null ? Long.MAX_VALUE : Money.parse(max));
+        }
+        if (params.containsKey("category")) {
+            Set<String> names = new HashSet<>();
+            for (String value : params.get("category")) {
+                for (String category : value.split(",")) {
+                    if (!category.isBlank()) names.add(category.trim());
+                }
+            }
+            // A category takes in its subcategories, as the GUI's filter does
+            query.categories(categories.withSubcategories(names));
+        }
+        return query.text(first(params, "q"));
+    }
+
+    // parseDay reads past the end of a short value, so any failure there is a bad date
+    private static int day(String value) {
+        try {
+            return LedgerDates.parseDay(value, 0);
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("from and to must be dd-MM-yyyy");
+        }
+    }
+
+    private static Map<String, List<String>> params(HttpExchange exchange) {
+        Map<String, List<String>> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+        }
+        return params;
+    }
+
+    private static String first(Map<String, List<String>> params, String name) {
+        List<String> values = params.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    private static String error(String message) {
+        return Json.appendString(new StringBuilder("{\"error\":"), message == null ? "Internal error" : message)
+            .append('}').toString();
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        send(exchange, status, "application/json; charset=utf-8", json);
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // Reads the ledger the way the GUI does: snapshot first, then only the changed months
+    private LedgerStore load() throws IOException {
+        LedgerStore loaded = new LedgerStore(categories);
+        try {
+            // Lines the dictionary skips are left for the GUI to report
+            categories.load(new ArrayList<>());
+            journal.compact().get();
+            journal.resync();
+            List<File> replay = new ArrayList<>();
+            snapshot.restore(LedgerLoader.listLedgerFiles(folder), replay).appendTo(loaded);
+            new LedgerLoader().load(replay, new LedgerLoader.Listener() {
+                @Override
+                public void batch(RecordBatch batch, int done, int total) {
+                    batch.appendTo(loaded);
+                }
+
+                @Override
+                public void malformed(MalformedLine line) {
+                    // Counted by the loader; the GUI is where they get reported
+                }
+            });
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading expenses");
+        } catch (ExecutionException ex) {
+            throw new IOException("Error compacting the journal: " + ex.getCause().getMessage(), ex.getCause());
+        }
+        return loaded;
+    }
+
+    private void reload() {
+        reloadPending.set(false);
+        gate.writeLock().lock();
+        try {
+            LedgerStore loaded = load();
+            storeLock.lock();
+            try {
+                store = loaded;
+                checkpointable = true;
+            } finally {
+                storeLock.unlock();
+            }
+        } catch (IOException ex) {
+            // Keeps serving the rows it has; the next conflict retries
+            storeLock.lock();
+            try {
+                checkpointable = false;
+            } finally {
+                storeLock.unlock();
+            }
+        } finally {
+            gate.writeLock().unlock();
+        }
+    }
+
+}
@@ -0,0 +1,959 @@
+package ledger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Append-only log of add, delete, edit and clear records sitting next to the
+ * day files. Mutations are queued and written by a single thread that drains
+ * everything pending into one write (group commit), then forces the channel
+ * according to the {@link FsyncPolicy}. Once the log grows past
+ * {@link #COMPACT_BYTES}, or on {@link #compact()} and {@link #close()}, the
+ * records are folded into the per-day files on the same thread.
+ *
+ * <p>Records carry their {@link ExpenseIds id}. Folding into a day file
+ * appends the new records and a tombstone per deleted one instead of
+ * rewriting it; only once {@link #DEAD_RATIO} of its lines would be dead is
+ * the file rewritten with just its live rows.
+ *
+ * <p>Days of a month that already has a {@link MonthSegment}, or every day
+ * when running with -Dexpense.storage=binary, are folded into the segment
+ * instead; any text day file of that month is merged into it and removed.
+ *
+ * <p>Every process keeps its own log, journal-&lt;pid&gt;.log, and compacts it
+ * while holding the {@link StorageLocks} of the months it touches. Targets
+ * are re-read under the lock, so records from the GUI, the CLI and other
+ * processes are merged rather than overwritten. If a month's version moved
+ * since this journal last saw it, somebody else rewrote it and the conflict
+ * listener is told which months to reload.
+ *
+ * <p>Compaction writes the new files as *.tmp and lists them, with each
+ * month's old and new version, in a marker beside the log before renaming
+ * anything, so a crash part way through is finished on the next open instead
+ * of replaying the log twice. A log whose process is no longer running is
+ * folded in by the next journal to open the folder.
+ */
+public class Journal implements Closeable {
+    public static final String LOG_PREFIX = "journal";
+    public static final String LOG_SUFFIX = ".log";
+    public static final String MARKER_SUFFIX = ".compact";
+    public static final long COMPACT_BYTES = 256 * 1024;
+    public static final double DEAD_RATIO = 0.25;
+    private static final int MAX_GROUP = 4096;
+    private static final long FORCE_INTERVAL_MS = 1000;
+    private static final long CLOSE_TIMEOUT_MS = 30_000;
+    private static final String CLEAR_ALL = "*";
+    private static final Metrics.Histogram COMMIT_TIME = Metrics.histogram("journal.commit");
+    private static final Metrics.Histogram COMPACT_TIME = Metrics.histogram("journal.compact");
+    private static final Metrics.Counter RECORDS = Metrics.counter("journal.records");
+    private static final Metrics.Counter BYTES_WRITTEN = Metrics.counter("bytes.written");
+    private static final Metrics.Counter FILES_WRITTEN = Metrics.counter("files.written");
+    private static final Metrics.Counter CONFLICTS = Metrics.counter("storage.conflicts");
+    private static final Metrics.Counter TOMBSTONES = Metrics.counter("journal.tombstones");
+    private static final Metrics.Counter REWRITES = Metrics.counter("journal.rewrites");
+    private static final RecordParser.Handler SKIP_MALFORMED = (day, minute, paise, category, description) -> { };
+    private static final Set<String> OPEN_LOGS = ConcurrentHashMap.newKeySet();
+
+    public enum FsyncPolicy {
+        /** Force the log to disk after every group commit. */
+        ALWAYS,
+        /** Force at most once per second. */
+        INTERVAL,
+        /** Leave flushing to the operating system. */
+        NEVER;
+
+        /** Reads the policy from -Dexpense.fsync, defaulting to INTERVAL. */
+        public static FsyncPolicy fromProperty() {
+            try {
+                return valueOf(System.getProperty("expense.fsync", "INTERVAL").toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ex) {
+                return INTERVAL;
+            }
+        }
+    }
+
+    private enum Kind { RECORD, IMPORT, COMPACT, CONVERT, STOP }
+
+    private static final class Entry {
+        final Kind kind;
+        final String line;
+        final RecordBatch rows;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Entry(Kind kind, String line) {
+            this(kind, line, null);
+        }
+
+        Entry(Kind kind, String line, RecordBatch rows) {
+            this.kind = kind;
+            this.line = line;
+            this.rows = rows;
+        }
+    }
+
+    private final File folder;
+    private final File file;
+    private final FsyncPolicy policy;
+    private final FileChannel channel;
+    private final StorageLocks locks;
+    private final RecordParser parser = new RecordParser();
+    private final Map<Integer, Long> seen = new ConcurrentHashMap<>();
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile Consumer<File> installListener = file -> { };
+    private volatile Consumer<Set<Integer>> conflictListener = months -> { };
+    private long lastForce;
+    private volatile boolean closed;
+    // Set by the writer thread on its way out; guarded by the queue
+    private boolean stopped;
+
+    public Journal(File folder, FsyncPolicy policy) throws IOException {
+        this.folder = folder;
+        this.policy = policy;
+        folder.mkdirs();
+        locks = StorageLocks.of(folder);
+        locks.claimProcess();
+        this.file = claimLog(folder);
+        try {
+            recover(file);
+            foldOrphans();
+            resync();
+            channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException | RuntimeException ex) {
+            OPEN_LOGS.remove(file.getAbsolutePath());
+            throw ex;
+        }
+        writer = new Thread(this::run, "expense-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Adds a row under a fresh id. */
+    public CompletableFuture<Void> add(int epochDay, int minute, long paise, String category, String description) {
+        return add(ExpenseIds.next(), epochDay, minute, paise, category, description);
+    }
+
+    public CompletableFuture<Void> add(long id, int epochDay, int minute, long paise, String category,
+                                       String description) {
+        return submit(new Entry(Kind.RECORD, line('A', id, epochDay, minute, paise, category, description)));
+    }
+
+    /** Deletes the first row with these values, for callers that do not know its id. */
+    public CompletableFuture<Void> delete(int epochDay, int minute, long paise, String category, String description) {
+        return delete(0, epochDay, minute, paise, category, description);
+    }
+
+    /** Deletes the row with {@code id}; the values say which day file holds it. */
+    public CompletableFuture<Void> delete(long id, int epochDay, int minute, long paise, String category,
+                                          String description) {
+        return submit(new Entry(Kind.RECORD, line('D', id, epochDay, minute, paise, category, description)));
+    }
+
+    /**
+     * Replaces the row with {@code id}, keeping the id, as one record entry:
+     * a delete of its old values followed by an add of the new ones.
+     */
+    public CompletableFuture<Void> edit(long id, int oldDay, int oldMinute, long oldPaise, String oldCategory,
+                                        String oldDescription, int epochDay, int minute, long paise,
+                                        String category, String description) {
+        return submit(new Entry(Kind.RECORD, line('D', id, oldDay, oldMinute, oldPaise, oldCategory, oldDescription)
+            + "\n" + line('A', id, epochDay, minute, paise, category, description)));
+    }
+
+    /**
+     * Logs many rows as one record entry. Unlike {@link #importBatch} they
+     * are left in the log and group-committed with everything else pending,
+     * which suits a steady stream of small batches. Rows without an id are
+     * given one in place.
+     */
+    public CompletableFuture<Void> addAll(RecordBatch rows) {
+        if (rows.size() == 0) return CompletableFuture.completedFuture(null);
+        rows.assignIds();
+        StringBuilder sb = new StringBuilder(rows.size() * 72);
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) sb.append('\n');
+            DayFiles.appendLine(sb.append("A|"), rows.id(i), rows.day(i), rows.minute(i), rows.paise(i),
+                rows.category(i), rows.description(i));
+        }
+        return submit(new Entry(Kind.RECORD, sb.toString()));
+    }
+
+    /**
+     * Adds many rows at once: they are logged in a single write and folded
+     * straight into their day files or segments, so each day touched by the
+     * batch is rewritten once. The rows are copied before this returns.
+     */
+    public CompletableFuture<Void> importBatch(RecordBatch rows) {
+        RecordBatch copy = new RecordBatch(Math.max(1, rows.size()));
+        copy.addAll(rows);
+        copy.assignIds();
+        return submit(new Entry(Kind.IMPORT, null, copy));
+    }
+
+    /** Records that every expense was removed. */
+    public CompletableFuture<Void> clear() {
+        return submit(new Entry(Kind.RECORD, "C"));
+    }
+
+    /** Called on the writer thread with every data file a compaction replaced or deleted. */
+    public void setInstallListener(Consumer<File> listener) {
+        installListener = listener;
+    }
+
+    /**
+     * Called on the writer thread with the months another writer rewrote
+     * since this journal last saw them. Their files were merged, not lost,
+     * but rows read from them earlier are stale.
+     */
+    public void setConflictListener(Consumer<Set<Integer>> listener) {
+        conflictListener = listener;
+    }
+
+    /**
+     * Takes the current month versions as seen, e.g. right before reading the
+     * data files. Only rewrites after this count as conflicts.
+     */
+    public void resync() throws IOException {
+        Map<Integer, Long> versions = locks.versions();
+        seen.clear();
+        seen.putAll(versions);
+    }
+
+    /** Folds the log into the day files once everything queued so far is written. */
+    public CompletableFuture<Void> compact() {
+        return submit(new Entry(Kind.COMPACT, null));
+    }
+
+    /**
+     * Compacts and then folds every text day file into its month segment,
+     * leaving the folder entirely in the binary format.
+     */
+    public CompletableFuture<Void> convertToSegments() {
+        return submit(new Entry(Kind.CONVERT, null));
+    }
+
+    /**
+     * Compacts, then stops the writer thread and closes the log. Waits at
+     * most half a minute in all; whatever was not folded by then stays in
+     * the log for the next open.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        CompletableFuture<Void> compacted = compact();
+        CompletableFuture<Void> stop = submit(new Entry(Kind.STOP, null));
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_TIMEOUT_MS);
+        try {
+            try {
+                compacted.get(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException ex) {
+                // The records are still in the log
+            }
+            stop.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            writer.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        } catch (ExecutionException | TimeoutException ex) {
+            writer.interrupt();
+        } catch (InterruptedException ex) {
+            writer.interrupt();
+            Thread.currentThread().interrupt();
+        } finally {
+            closed = true;
+            channel.close();
+            // Fully compacted, so there is nothing for anyone to fold in later
+            if (file.length() == 0) file.delete();
+            OPEN_LOGS.remove(file.getAbsolutePath());
+        }
+    }
+
+    // This process's log; a second journal on the same folder in one JVM gets a suffix
+    private static File claimLog(File folder) {
+        String base = LOG_PREFIX + "-" + ProcessHandle.current().pid();
+        for (int n = 0; ; n++) {
+            File log = new File(folder, base + (n == 0 ? "" : "-" + n) + LOG_SUFFIX);
+            if (OPEN_LOGS.add(log.getAbsolutePath())) return log;
+        }
+    }
+
+    /**
+     * Folds in the logs of processes that are no longer running. A log is
+     * only touched while its owner's liveness region is claimed, so two
+     * processes never fold the same one.
+     */
+    private void foldOrphans() throws IOException {
+        File[] logs = folder.listFiles((dir, name) -> name.startsWith(LOG_PREFIX) && name.endsWith(LOG_SUFFIX));
+        if (logs == null) return;
+        for (File log : logs) {
+            if (OPEN_LOGS.contains(log.getAbsolutePath())) continue;
+            long pid = pidOf(log.getName());
+            if (pid < 0) continue;
+            FileLock claim = locks.claimDeadProcess(pid);
+            if (claim == null) continue;
+            try {
+                recover(log);
+                if (log.exists() && log.length() > 0) compactLog(log, false, false);
+                Files.deleteIfExists(log.toPath());
+            } finally {
+                claim.release();
+            }
+        }
+    }
+
+    // journal-<pid>.log or journal-<pid>-<n>.log, or -1 for any other name
+    private static long pidOf(String name) {
+        String core = name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length());
+        if (core.isEmpty() || core.charAt(0) != '-') return -1;
+        int dash = core.indexOf('-', 1);
+        try {
+            return Long.parseLong(dash < 0 ? core.substring(1) : core.substring(1, dash));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    private static String line(char type, long id, int epochDay, int minute, long paise, String category,
+                               String description) {
+        StringBuilder sb = new StringBuilder(80).append(type).append('|');
+        return DayFiles.appendLine(sb, id, epochDay, minute, paise, category, description).toString();
+    }
+
+    private CompletableFuture<Void> submit(Entry entry) {
+        synchronized (queue) {
+            if (closed || stopped) {
+                entry.done.completeExceptionally(new IOException("Journal is closed"));
+            } else {
+                queue.add(entry);
+            }
+        }
+        return entry.done;
+    }
+
+    // A failure fails only the entries it concerns; the thread keeps
+    // serving the queue until it is stopped
+    private void run() {
+        List<Entry> group = new ArrayList<>();
+        List<Entry> pending = new ArrayList<>();
+        StringBuilder text = new StringBuilder(4096);
+        while (true) {
+            try {
+                group.add(queue.take());
+            } catch (InterruptedException ex) {
+                abandon(group);
+                return;
+            }
+            queue.drainTo(group, MAX_GROUP - 1);
+
+            for (Entry entry : group) {
+                if (entry.kind == Kind.RECORD) {
+                    text.append(entry.line).append('\n');
+                    pending.add(entry);
+                    continue;
+                }
+                commit(pending, text);
+                if (entry.kind == Kind.STOP) {
+                    entry.done.complete(null);
+                    abandon(group);
+                    return;
+                }
+                try {
+                    if (entry.kind == Kind.IMPORT) {
+                        for (int i = 0; i < entry.rows.size(); i++) {
+                            DayFiles.appendLine(text.append("A|"), entry.rows.id(i), entry.rows.day(i),
+                                entry.rows.minute(i), entry.rows.paise(i), entry.rows.category(i),
+                                entry.rows.description(i)).append('\n');
+                        }
+                        write(text);
+                    }
+                    compactNow(entry.kind == Kind.CONVERT);
+                    entry.done.complete(null);
+                } catch (IOException | RuntimeException ex) {
+                    text.setLength(0);
+                    entry.done.completeExceptionally(ex);
+                }
+            }
+            commit(pending, text);
+            group.clear();
+
+            try {
+                if (channel.size() > COMPACT_BYTES) compactNow(false);
+            } catch (IOException | RuntimeException ex) {
+                // Retried after the next commit
+            }
+        }
+    }
+
+    // Fails whatever is still queued once the writer stops
+    private void abandon(List<Entry> group) {
+        IOException closing = new IOException("Journal is closed");
+        synchronized (queue) {
+            stopped = true;
+            queue.drainTo(group);
+        }
+        for (Entry entry : group) entry.done.completeExceptionally(closing);
+        group.clear();
+    }
+
+    private void commit(List<Entry> entries, StringBuilder text) {
+        if (entries.isEmpty()) return;
+        long start = System.nanoTime();
+        try {
+            write(text);
+            long now = System.currentTimeMillis();
+            if (policy == FsyncPolicy.ALWAYS
+                || (policy == FsyncPolicy.INTERVAL && now - lastForce >= FORCE_INTERVAL_MS)) {
+                channel.force(false);
+                lastForce = now;
+            }
+            COMMIT_TIME.recordSince(start);
+            RECORDS.add(entries.size());
+            for (Entry entry : entries) entry.done.complete(null);
+        } catch (IOException | RuntimeException ex) {
+            for (Entry entry : entries) entry.done.completeExceptionally(ex);
+        }
+        entries.clear();
+        text.setLength(0);
+    }
+
+    private void write(StringBuilder text) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+        text.setLength(0);
+        BYTES_WRITTEN.add(buffer.remaining());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void compactNow(boolean convert) throws IOException {
+        if (channel.size() == 0 && !convert) return;
+        channel.force(false);
+        compactLog(file, convert, true);
+    }
+
+    /**
+     * Folds {@code log} into the data files while holding the locks of every
+     * month it touches. Each target is re-read under the lock, so records are
+     * merged into whatever another writer left there; see {@link #foldDay} for
+     * how a day file takes them. {@code ours} is false
+     * for a log left behind by a dead process, whose months nobody here saw.
+     */
+    private void compactLog(File log, boolean convert, boolean ours) throws IOException {
+        long start = System.nanoTime();
+        boolean clearAll = false;
+        Map<Integer, List<String>> opsByDay = new TreeMap<>();
+        RecordBatch decoded = new RecordBatch(1);
+        try (BufferedReader reader = new BufferedReader(new FileReader(log, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // A torn last line left by a crash fails to decode and is dropped
+                if (line.equals("C")) {
+                    clearAll = true;
+                    opsByDay.clear();
+                } else if (line.length() > 2 && line.charAt(1) == '|') {
+                    decoded.clear();
+                    if (DayFiles.parseLine(line.substring(2), decoded)) {
+                        opsByDay.computeIfAbsent(decoded.day(0), k -> new ArrayList<>()).add(line);
+                    }
+                }
+            }
+        }
+
+        Set<Integer> months = new TreeSet<>();
+        for (int day : opsByDay.keySet()) months.add(LedgerDates.monthIndex(day));
+        if (convert || clearAll) {
+            for (File data : LedgerLoader.listLedgerFiles(folder)) {
+                int month = LedgerLoader.monthOf(data.getName());
+                if (month >= 0 && (clearAll || DayFiles.isDayFile(data.getName()))) months.add(month);
+            }
+        }
+
+        Set<Integer> conflicts = new TreeSet<>();
+        RuntimeException listenerFailure;
+        try (StorageLocks.Held held = clearAll ? locks.lockAll() : locks.lock(months)) {
+            Plan plan = new Plan();
+            plan.clearAll = clearAll;
+            for (int month : months) {
+                long before = held.version(month);
+                if (ours && before != seen.getOrDefault(month, 0L)) conflicts.add(month);
+                plan.versions.put(month, new long[] {before, StorageLocks.nextVersion(before)});
+            }
+
+            Map<Integer, List<String>> opsBySegment = new TreeMap<>();
+            if (convert && !clearAll) {
+                for (File day : DayFiles.list(folder)) {
+                    int d = DayFiles.dayOf(day.getName());
+                    if (d >= 0) opsBySegment.computeIfAbsent(LedgerDates.monthIndex(d), k -> new ArrayList<>());
+                }
+            }
+            for (Map.Entry<Integer, List<String>> entry : opsByDay.entrySet()) {
+                int month = LedgerDates.monthIndex(entry.getKey());
+                if (convert || binaryStorage() || MonthSegment.segmentFile(folder, month).exists()) {
+                    opsBySegment.computeIfAbsent(month, k -> new ArrayList<>()).addAll(entry.getValue());
+                    continue;
+                }
+                File target = DayFiles.dayFile(folder, entry.getKey());
+                if (clearAll) {
+                    List<String> lines = new ArrayList<>();
+                    apply(lines, entry.getValue());
+                    writeLines(tempFile(target.getName(), log), lines);
+                    plan.names.add(target.getName());
+                } else {
+                    foldDay(target, entry.getValue(), log, plan);
+                }
+            }
+
+            for (Map.Entry<Integer, List<String>> entry : opsBySegment.entrySet()) {
+                int month = entry.getKey();
+                File target = MonthSegment.segmentFile(folder, month);
+                List<String> lines = new ArrayList<>();
+                if (!clearAll) {
+                    if (target.exists()) toLines(MonthSegment.read(target), lines);
+                    for (File day : DayFiles.list(folder)) {
+                        int d = DayFiles.dayOf(day.getName());
+                        if (d >= 0 && LedgerDates.monthIndex(d) == month) {
+                            toLines(DayFiles.read(day, parser, SKIP_MALFORMED).live, lines);
+                            writeLines(tempFile(day.getName(), log), new ArrayList<>());
+                            plan.names.add(day.getName());
+                        }
+                    }
+                }
+                apply(lines, entry.getValue());
+                File temp = tempFile(target.getName(), log);
+                if (lines.isEmpty()) {
+                    writeLines(temp, lines);
+                } else {
+                    RecordBatch rows = new RecordBatch(lines.size());
+                    for (String line : lines) DayFiles.parseLine(line, rows);
+                    MonthSegment.write(temp, rows);
+                }
+                plan.names.add(target.getName());
+            }
+
+            File marker = markerFile(log);
+            File markerTemp = new File(folder, marker.getName() + ".tmp");
+            writeLines(markerTemp, plan.lines());
+            Files.move(markerTemp.toPath(), marker.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            install(plan, log, held, months);
+            listenerFailure = plan.listenerFailure;
+            try (FileChannel out = FileChannel.open(log.toPath(), StandardOpenOption.WRITE)) {
+                out.truncate(0);
+                out.force(true);
+            }
+            Files.delete(marker.toPath());
+            if (ours) {
+                for (Map.Entry<Integer, long[]> version : plan.versions.entrySet()) {
+                    seen.put(version.getKey(), version.getValue()[1]);
+                }
+            }
+            COMPACT_TIME.recordSince(start);
+            FILES_WRITTEN.add(plan.names.size() + plan.appends.size());
+        }
+        if (!conflicts.isEmpty()) {
+            CONFLICTS.add(conflicts.size());
+            conflictListener.accept(conflicts);
+        }
+        if (listenerFailure != null) throw listenerFailure;
+    }
+
+    /**
+     * Plans folding {@code ops} into one day file. New records and a "-#id"
+     * tombstone for each deleted row are staged as a temp file to append; an
+     * add and a delete of the same id within the log cancel out. When the
+     * file would end up at least {@link #DEAD_RATIO} dead, it is rewritten
+     * from its live rows instead, keeping any line that does not decode.
+     */
+    private void foldDay(File target, List<String> ops, File log, Plan plan) throws IOException {
+        DayFiles.Contents contents = target.exists()
+            ? DayFiles.read(target, parser, SKIP_MALFORMED) : new DayFiles.Contents(new RecordBatch(1), 0, 0);
+        RecordBatch live = contents.live;
+        Set<Long> killed = new HashSet<>();
+        List<String> appended = new ArrayList<>();
+        RecordBatch decoded = new RecordBatch(1);
+        for (String op : ops) {
+            String line = op.substring(2);
+            if (op.charAt(0) == 'A') {
+                appended.add(line);
+                continue;
+            }
+            decoded.clear();
+            if (!DayFiles.parseLine(line, decoded)) continue;
+            long id = decoded.id(0);
+            int pending = id != 0 ? indexOfId(appended, id) : indexOfRecord(appended, line);
+            if (pending >= 0) {
+                appended.remove(pending);
+                continue;
+            }
+            int row = indexOfLive(live, killed, decoded);
+            if (row >= 0) {
+                killed.add(live.id(row));
+                appended.add(DayFiles.appendTombstone(new StringBuilder(24), live.id(row)).toString());
+            }
+        }
+        if (appended.isEmpty()) return;
+
+        int tombstones = killed.size();
+        int added = appended.size() - tombstones;
+        int records = contents.records + added;
+        int lineCount = records + contents.tombstones + tombstones;
+        int dead = lineCount - (live.size() - tombstones + added);
+        File temp = tempFile(target.getName(), log);
+        if (dead >= DEAD_RATIO * lineCount) {
+            List<String> lines = new ArrayList<>();
+            for (String line : readLines(target)) {
+                decoded.clear();
+                if (!line.isBlank() && !line.startsWith("-#") && !DayFiles.parseLine(line, decoded)) lines.add(line);
+            }
+            StringBuilder sb = new StringBuilder(80);
+            for (int i = 0; i < live.size(); i++) {
+                if (killed.contains(live.id(i))) continue;
+                sb.setLength(0);
+                lines.add(DayFiles.appendLine(sb, live.id(i), live.day(i), live.minute(i), live.paise(i),
+                    live.category(i), live.description(i)).toString());
+            }
+            for (String line : appended) {
+                if (!line.startsWith("-#")) lines.add(line);
+            }
+            writeLines(temp, lines);
+            plan.names.add(target.getName());
+            REWRITES.increment();
+        } else {
+            long before = target.length();
+            if (before > 0 && !endsWithNewline(target)) appended.add(0, "");
+            writeLines(temp, appended);
+            plan.appends.put(target.getName(), new long[] {before, before + temp.length()});
+        }
+        TOMBSTONES.add(tombstones);
+    }
+
+    /**
+     * A compaction as written to its marker before anything is installed:
+     * <pre>
+     * *                       (when the folder is cleared first)
+     * M|month|before|after    for every month the compaction rewrites
+     * F|name                  for every file it replaces or deletes
+     * P|name|before|after     for every day file it appends to, with its length before and after
+     * </pre>
+     */
+    private static final class Plan {
+        boolean clearAll;
+        final Map<Integer, long[]> versions = new TreeMap<>();
+        final Set<String> names = new LinkedHashSet<>();
+        final Map<String, long[]> appends = new TreeMap<>();
+        // Thrown by the install listener; rethrown once the compaction is complete
+        RuntimeException listenerFailure;
+
+        List<String> lines() {
+            List<String> lines = new ArrayList<>();
+            if (clearAll) lines.add(CLEAR_ALL);
+            for (Map.Entry<Integer, long[]> entry : versions.entrySet()) {
+                lines.add("M|" + entry.getKey() + "|" + entry.getValue()[0] + "|" + entry.getValue()[1]);
+            }
+            for (String name : names) lines.add("F|" + name);
+            for (Map.Entry<String, long[]> entry : appends.entrySet()) {
+                lines.add("P|" + entry.getKey() + "|" + entry.getValue()[0] + "|" + entry.getValue()[1]);
+            }
+            return lines;
+        }
+
+        static Plan parse(List<String> lines) {
+            Plan plan = new Plan();
+            for (String line : lines) {
+                if (line.equals(CLEAR_ALL)) {
+                    plan.clearAll = true;
+                } else if (line.startsWith("M|")) {
+                    String[] fields = line.split("\\|");
+                    plan.versions.put(Integer.parseInt(fields[1]),
+                        new long[] {Long.parseLong(fields[2]), Long.parseLong(fields[3])});
+                } else if (line.startsWith("F|")) {
+                    plan.names.add(line.substring(2));
+                } else if (line.startsWith("P|")) {
+                    String[] fields = line.split("\\|");
+                    plan.appends.put(fields[1], new long[] {Long.parseLong(fields[2]), Long.parseLong(fields[3])});
+                }
+            }
+            return plan;
+        }
+    }
+
+    /**
+     * Finishes a compaction of {@code log} interrupted by a crash. A month
+     * still at the version the marker started from, or already at the one
+     * it moves to, is installed from its temp files. A month at any other
+     * version was rewritten by another writer since the crash: if its temp
+     * files are still there they are stale, so they are dropped and the
+     * month's records stay in the log to be merged again.
+     */
+    private void recover(File log) throws IOException {
+        File marker = markerFile(log);
+        if (marker.exists()) {
+            Plan plan = Plan.parse(readLines(marker));
+            Set<Integer> months = new TreeSet<>(plan.versions.keySet());
+            for (String name : plan.names) months.add(LedgerLoader.monthOf(name));
+            for (String name : plan.appends.keySet()) months.add(LedgerLoader.monthOf(name));
+            months.remove(-1);
+            Set<Integer> retry = new TreeSet<>();
+            try (StorageLocks.Held held = plan.clearAll ? locks.lockAll() : locks.lock(months)) {
+                Set<Integer> install = new TreeSet<>();
+                for (int month : months) {
+                    long[] version = plan.versions.get(month);
+                    long now = held.version(month);
+                    if (version == null || now == version[0] || now == version[1]) {
+                        install.add(month);
+                    } else if (dropTemps(plan, log, month)) {
+                        retry.add(month);
+                    }
+                }
+                install(plan, log, held, install);
+                keepRecords(log, retry);
+            }
+            Files.delete(marker.toPath());
+        }
+        String suffix = "." + log.getName() + ".tmp";
+        File[] temps = folder.listFiles((dir, name) -> name.endsWith(suffix) || name.equals(marker.getName() + ".tmp"));
+        if (temps != null) {
+            for (File temp : temps) temp.delete();
+        }
+    }
+
+    // Deletes the temp files a plan left for one month; true if there were any
+    private boolean dropTemps(Plan plan, File log, int month) throws IOException {
+        boolean any = false;
+        for (String name : plan.names) {
+            if (LedgerLoader.monthOf(name) == month) any |= Files.deleteIfExists(tempFile(name, log).toPath());
+        }
+        for (String name : plan.appends.keySet()) {
+            if (LedgerLoader.monthOf(name) == month) any |= Files.deleteIfExists(tempFile(name, log).toPath());
+        }
+        return any;
+    }
+
+    // Cuts the log down to the records, after the last clear, of the given months
+    private static void keepRecords(File log, Set<Integer> months) throws IOException {
+        List<String> kept = new ArrayList<>();
+        RecordBatch decoded = new RecordBatch(1);
+        if (!months.isEmpty()) {
+            for (String line : readLines(log)) {
+                if (line.equals("C")) {
+                    kept.clear();
+                } else if (line.length() > 2 && line.charAt(1) == '|') {
+                    decoded.clear();
+                    if (DayFiles.parseLine(line.substring(2), decoded) && months.contains(LedgerDates.monthIndex(decoded.day(0)))) {
+                        kept.add(line);
+                    }
+                }
+            }
+        }
+        writeLines(log, kept);
+    }
+
+    // Moves each month to its new version, then renames its temp files over
+    // the targets (an empty temp file deletes the target) and appends the
+    // staged tails
+    private void install(Plan plan, File log, StorageLocks.Held held, Set<Integer> months) throws IOException {
+        for (int month : months) {
+            long[] version = plan.versions.get(month);
+            if (version != null) held.set(month, version[1]);
+        }
+        if (plan.clearAll) {
+            for (File data : LedgerLoader.listLedgerFiles(folder)) {
+                if (months.contains(LedgerLoader.monthOf(data.getName())) && !plan.names.contains(data.getName())) {
+                    Files.deleteIfExists(data.toPath());
+                    installed(data, plan);
+                }
+            }
+        }
+        for (String name : plan.names) {
+            if (!months.contains(LedgerLoader.monthOf(name))) continue;
+            File temp = tempFile(name, log);
+            File target = new File(folder, name);
+            if (!temp.exists()) continue;
+            if (temp.length() == 0) {
+                Files.delete(temp.toPath());
+                Files.deleteIfExists(target.toPath());
+            } else {
+                Files.move(temp.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            installed(target, plan);
+        }
+        for (Map.Entry<String, long[]> append : plan.appends.entrySet()) {
+            String name = append.getKey();
+            if (!months.contains(LedgerLoader.monthOf(name))) continue;
+            File temp = tempFile(name, log);
+            File target = new File(folder, name);
+            if (!temp.exists()) continue;
+            appendFile(temp, target, append.getValue()[0], append.getValue()[1]);
+            Files.delete(temp.toPath());
+            installed(target, plan);
+        }
+    }
+
+    // A failing listener must not stop the install half way, which would
+    // leave the log to be folded a second time
+    private void installed(File target, Plan plan) {
+        try {
+            installListener.accept(target);
+        } catch (RuntimeException ex) {
+            if (plan.listenerFailure == null) plan.listenerFailure = ex;
+        }
+    }
+
+    // Appends temp to target unless a crash right after the append already
+    // left it there; a torn earlier append is cut back first
+    private static void appendFile(File temp, File target, long before, long after) throws IOException {
+        try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileChannel in = FileChannel.open(temp.toPath(), StandardOpenOption.READ)) {
+            long size = out.size();
+            if (size == after) return;
+            if (size > before) out.truncate(before);
+            out.position(out.size());
+            long length = in.size();
+            for (long done = 0; done < length; ) {
+                done += in.transferTo(done, length - done, out);
+            }
+            out.force(true);
+        }
+    }
+
+    private static boolean endsWithNewline(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(in.length() - 1);
+            return in.read() == '\n';
+        }
+    }
+
+    // Temp files carry the log's name so compactions from different processes never share one
+    private File tempFile(String name, File log) {
+        return new File(folder, name + "." + log.getName() + ".tmp");
+    }
+
+    private File markerFile(File log) {
+        String name = log.getName();
+        return new File(folder, name.substring(0, name.length() - LOG_SUFFIX.length()) + MARKER_SUFFIX);
+    }
+
+    private static boolean binaryStorage() {
+        return "binary".equalsIgnoreCase(System.getProperty("expense.storage"));
+    }
+
+    // Applies ops to whole lines, for files that are rewritten anyway
+    private static void apply(List<String> lines, List<String> ops) {
+        RecordBatch decoded = new RecordBatch(1);
+        for (String op : ops) {
+            String line = op.substring(2);
+            if (op.charAt(0) == 'A') {
+                lines.add(line);
+            } else {
+                decoded.clear();
+                if (!DayFiles.parseLine(line, decoded)) continue;
+                int match = decoded.id(0) != 0 ? indexOfId(lines, decoded.id(0)) : indexOfRecord(lines, line);
+                if (match >= 0) lines.remove(match);
+            }
+        }
+    }
+
+    private static void toLines(RecordBatch rows, List<String> lines) {
+        StringBuilder sb = new StringBuilder(80);
+        for (int i = 0; i < rows.size(); i++) {
+            sb.setLength(0);
+            lines.add(DayFiles.appendLine(sb, rows.id(i), rows.day(i), rows.minute(i), rows.paise(i),
+                rows.category(i), rows.description(i)).toString());
+        }
+    }
+
+    // Last line ending in "|#id", so a later add of the same id wins over an earlier one
+    private static int indexOfId(List<String> lines, long id) {
+        String suffix = ExpenseIds.append(new StringBuilder("|"), id).toString();
+        for (int i = lines.size() - 1; i >= 0; i--) {
+            if (lines.get(i).endsWith(suffix)) return i;
+        }
+        return -1;
+    }
+
+    // The live row a delete refers to: by id, or by values for a delete without one
+    private static int indexOfLive(RecordBatch live, Set<Long> killed, RecordBatch wanted) {
+        long id = wanted.id(0);
+        for (int i = 0; i < live.size(); i++) {
+            if (killed.contains(live.id(i))) continue;
+            if (id != 0 ? live.id(i) == id
+                    : live.day(i) == wanted.day(0)
+                        && live.minute(i) == wanted.minute(0)
+                        && live.paise(i) == wanted.paise(0)
+                        && live.category(i).equals(wanted.category(0))
+                        && live.description(i).equals(wanted.description(0))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOfRecord(List<String> lines, String record) {
+        RecordBatch wanted = new RecordBatch(1);
+        if (!DayFiles.parseLine(record, wanted)) return -1;
+        for (int i = 0; i < lines.size(); i++) {
+            RecordBatch candidate = new RecordBatch(1);
+            if (DayFiles.parseLine(lines.get(i), candidate)
+                    && candidate.day(0) == wanted.day(0)
+                    && candidate.minute(0) == wanted.minute(0)
+                    && candidate.paise(0) == wanted.paise(0)
+                    && candidate.category(0).equals(wanted.category(0))
+                    && candidate.description(0).equals(wanted.description(0))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (!file.exists()) return lines;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) lines.add(line);
+        }
+        return lines;
+    }
+
+    private static void writeLines(File file, List<String> lines) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8))) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            out.force(true);
+        }
+    }
+}
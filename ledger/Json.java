@@ -0,0 +1,155 @@
+package ledger;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The JSON shape of an expense, shared by the JSON Lines export and the
+ * HTTP API:
+ *
+ * <pre>
+ * {"date":"dd-MM-yyyy HH:mm","amount":123.45,"category":"Food","description":"Lunch"}
+ * </pre>
+ *
+ * Only flat objects are read, which is all a record ever is, so there is no
+ * general-purpose parser behind this.
+ */
+final class Json {
+    private Json() {
+    }
+
+    /** Appends one record as a JSON object, without a line break. */
+    static StringBuilder appendRecord(StringBuilder sb, int epochDay, int minute, long paise,
+                                      String category, String description) {
+        sb.append("{\"date\":\"");
+        LedgerDates.appendDateTime(sb, epochDay, minute).append("\",\"amount\":");
+        Money.appendPlain(sb, paise).append(",\"category\":");
+        appendString(sb, category).append(",\"description\":");
+        return appendString(sb, description).append('}');
+    }
+
+    static StringBuilder appendString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append("\\u00");
+                        sb.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"');
+    }
+
+    /**
+     * Reads a flat object into field name to value, numbers and literals
+     * kept as their text and null left out.
+     *
+     * @throws IllegalArgumentException if {@code text} is not one flat object
+     */
+    static Map<String, String> parseObject(CharSequence text) {
+        Reader in = new Reader(text);
+        Map<String, String> fields = new HashMap<>();
+        in.expect('{');
+        if (!in.consume('}')) {
+            do {
+                String name = in.string();
+                in.expect(':');
+                String value = in.value();
+                if (value != null) fields.put(name, value);
+            } while (in.consume(','));
+            in.expect('}');
+        }
+        in.skipSpace();
+        if (in.pos != text.length()) throw in.error("Unexpected text after object");
+        return fields;
+    }
+
+    private static final class Reader {
+        private final CharSequence text;
+        private int pos;
+
+        Reader(CharSequence text) {
+            this.text = text;
+        }
+
+        void skipSpace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+        }
+
+        boolean consume(char c) {
+            skipSpace();
+            if (pos < text.length() && text.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(char c) {
+            if (!consume(c)) throw error("Expected '" + c + "'");
+        }
+
+        String value() {
+            skipSpace();
+            if (pos >= text.length()) throw error("Expected a value");
+            char c = text.charAt(pos);
+            if (c == '"') return string();
+            if (c == '{' || c == '[') throw error("Nested values are not supported");
+            int start = pos;
+            while (pos < text.length() && ",}] \t\r\n".indexOf(text.charAt(pos)) < 0) pos++;
+            String literal = text.subSequence(start, pos).toString();
+            if (literal.isEmpty()) throw error("Expected a value");
+            return literal.equals("null") ? null : literal;
+        }
+
+        String string() {
+            skipSpace();
+            if (pos >= text.length() || text.charAt(pos) != '"') throw error("Expected a string");
+            pos++;
+            StringBuilder sb = new StringBuilder();
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (pos >= text.length()) break;
+                char escape = text.charAt(pos++);
+                switch (escape) {
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        if (pos + 4 > text.length()) throw error("Bad \\u escape");
+                        try {
+                            sb.append((char) Integer.parseInt(text.subSequence(pos, pos + 4).toString(), 16));
+                        } catch (NumberFormatException ex) {
+                            throw error("Bad \\u escape");
+                        }
+                        pos += 4;
+                    }
+                    default -> sb.append(escape);
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at column " + (pos + 1));
+        }
+    }
+}
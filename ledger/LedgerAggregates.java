@@ -0,0 +1,185 @@
+package ledger;
+
+import java.util.Arrays;
+
+/**
+ * Running totals for the stat cards. Every insert and delete adjusts the
+ * grand total, the month bucket and the category bucket in place, and the
+ * top category is tracked with an indexed max-heap keyed by category total,
+ * so reading any card never walks the ledger. Totals over arbitrary day
+ * ranges come from {@link #days()}.
+ */
+public class LedgerAggregates {
+    private long total;
+    private int count;
+
+    private long[] monthTotals = new long[0];
+    private int firstMonth;
+
+    private long[] categoryTotals = new long[16];
+    private int[] categoryCounts = new int[16];
+    private int[] heap = new int[16];
+    private int[] heapPos = filled(16);
+    private int heapSize;
+
+    private final DayTotals days = new DayTotals();
+
+    /** Totals over a subset of the store's rows, e.g. the result of a query. */
+    public static LedgerAggregates of(LedgerStore store, int[] rows) {
+        LedgerAggregates aggregates = new LedgerAggregates();
+        for (int row : rows) {
+            aggregates.add(store.day(row), store.paise(row), store.categoryId(row));
+        }
+        return aggregates;
+    }
+
+    public void add(int epochDay, long paise, int categoryId) {
+        apply(epochDay, paise, categoryId, 1);
+    }
+
+    public void remove(int epochDay, long paise, int categoryId) {
+        apply(epochDay, -paise, categoryId, -1);
+    }
+
+    public void clear() {
+        total = 0;
+        count = 0;
+        monthTotals = new long[0];
+        Arrays.fill(categoryTotals, 0);
+        Arrays.fill(categoryCounts, 0);
+        Arrays.fill(heapPos, -1);
+        heapSize = 0;
+        days.clear();
+    }
+
+    public long total() {
+        return total;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    /** Total for a month as returned by {@link LedgerDates#monthIndex(int)}. */
+    public long monthTotal(int monthIndex) {
+        int i = monthIndex - firstMonth;
+        return i >= 0 && i < monthTotals.length ? monthTotals[i] : 0;
+    }
+
+    public long categoryTotal(int categoryId) {
+        return categoryId < categoryTotals.length ? categoryTotals[categoryId] : 0;
+    }
+
+    public int categoryCount(int categoryId) {
+        return categoryId < categoryCounts.length ? categoryCounts[categoryId] : 0;
+    }
+
+    /** Prefix sums by day, overall and per category, over the same rows. */
+    public DayTotals days() {
+        return days;
+    }
+
+    /** Id of the category with the largest total, or -1 when nothing is recorded. */
+    public int topCategory() {
+        return heapSize > 0 ? heap[0] : -1;
+    }
+
+    private void apply(int epochDay, long delta, int categoryId, int countDelta) {
+        total += delta;
+        count += countDelta;
+        int month = LedgerDates.monthIndex(epochDay);
+        ensureMonth(month);
+        monthTotals[month - firstMonth] += delta;
+
+        ensureCategory(categoryId);
+        categoryTotals[categoryId] += delta;
+        categoryCounts[categoryId] += countDelta;
+        updateHeap(categoryId);
+        days.add(epochDay, delta, categoryId);
+    }
+
+    private void ensureMonth(int month) {
+        if (monthTotals.length == 0) {
+            monthTotals = new long[12];
+            firstMonth = month;
+        } else if (month < firstMonth) {
+            int shift = Math.max(firstMonth - month, monthTotals.length);
+            long[] grown = new long[monthTotals.length + shift];
+            System.arraycopy(monthTotals, 0, grown, shift, monthTotals.length);
+            monthTotals = grown;
+            firstMonth -= shift;
+        } else if (month - firstMonth >= monthTotals.length) {
+            monthTotals = Arrays.copyOf(monthTotals, Math.max(month - firstMonth + 1, monthTotals.length * 2));
+        }
+    }
+
+    private void ensureCategory(int categoryId) {
+        if (categoryId < categoryTotals.length) return;
+        int capacity = Math.max(categoryId + 1, categoryTotals.length * 2);
+        int old = categoryTotals.length;
+        categoryTotals = Arrays.copyOf(categoryTotals, capacity);
+        categoryCounts = Arrays.copyOf(categoryCounts, capacity);
+        heap = Arrays.copyOf(heap, capacity);
+        heapPos = Arrays.copyOf(heapPos, capacity);
+        Arrays.fill(heapPos, old, capacity, -1);
+    }
+
+    private void updateHeap(int id) {
+        int pos = heapPos[id];
+        if (categoryCounts[id] == 0) {
+            if (pos >= 0) removeAt(pos);
+        } else if (pos < 0) {
+            heap[heapSize] = id;
+            heapPos[id] = heapSize;
+            siftUp(heapSize++);
+        } else {
+            siftDown(siftUp(pos));
+        }
+    }
+
+    private void removeAt(int pos) {
+        int removed = heap[pos];
+        heapPos[removed] = -1;
+        heapSize--;
+        if (pos == heapSize) return;
+        heap[pos] = heap[heapSize];
+        heapPos[heap[pos]] = pos;
+        siftDown(siftUp(pos));
+    }
+
+    private int siftUp(int pos) {
+        while (pos > 0) {
+            int parent = (pos - 1) / 2;
+            if (categoryTotals[heap[parent]] >= categoryTotals[heap[pos]]) break;
+            swap(pos, parent);
+            pos = parent;
+        }
+        return pos;
+    }
+
+    private void siftDown(int pos) {
+        while (true) {
+            int left = 2 * pos + 1;
+            if (left >= heapSize) return;
+            int child = left + 1 < heapSize && categoryTotals[heap[left + 1]] > categoryTotals[heap[left]]
+                ? left + 1 : left;
+            if (categoryTotals[heap[pos]] >= categoryTotals[heap[child]]) return;
+            swap(pos, child);
+            pos = child;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int t = heap[a];
+        heap[a] = heap[b];
+        heap[b] = t;
+        heapPos[heap[a]] = a;
+        heapPos[heap[b]] = b;
+    }
+
+    private static int[] filled(int n) {
+        int[] a = new int[n];
+        Arrays.fill(a, -1);
+        return a;
+    }
+}
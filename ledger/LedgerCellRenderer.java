@@ -0,0 +1,34 @@
+package ledger;
+
+import javax.swing.JLabel;
+import javax.swing.table.DefaultTableCellRenderer;
+
+/**
+ * Formats the raw date and amount values of {@link LedgerTableModel} at paint
+ * time, so only visible cells are ever turned into text.
+ */
+public class LedgerCellRenderer extends DefaultTableCellRenderer {
+    private final int column;
+    private final StringBuilder text = new StringBuilder(24);
+
+    public LedgerCellRenderer(int column) {
+        this.column = column;
+        setHorizontalAlignment(JLabel.CENTER);
+    }
+
+    @Override
+    protected void setValue(Object value) {
+        if (!(value instanceof Long)) {
+            super.setValue(value);
+            return;
+        }
+        long raw = (Long) value;
+        text.setLength(0);
+        if (column == LedgerTableModel.DATE) {
+            LedgerDates.appendDateTime(text, (int) Math.floorDiv(raw, 1440L), (int) Math.floorMod(raw, 1440L));
+            setText(text.toString());
+        } else {
+            setText(Money.appendGrouped(text, raw).toString());
+        }
+    }
+}
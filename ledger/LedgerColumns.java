@@ -0,0 +1,260 @@
+package ledger;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The fixed-width columns behind a {@link LedgerStore}: id, day, minute,
+ * paise, category id and description id per row. The store, and through it
+ * the table model and the aggregates, only ever reads and writes rows
+ * through this interface, so where the columns live is a choice made once
+ * per process with -Dexpense.columns:
+ *
+ * <pre>
+ * heap      primitive arrays (default)
+ * offheap   one direct buffer per column, 30 bytes a row outside the heap
+ * </pre>
+ *
+ * Off the heap a ledger of any size is a handful of objects to the garbage
+ * collector instead of six arrays that grow with it and are copied on every
+ * resize. Growing still copies, into new buffers; the old ones are freed
+ * when collected, so a reader on another thread still holding them stays
+ * safe.
+ */
+interface LedgerColumns {
+    /** Columns of the kind chosen by -Dexpense.columns. */
+    static LedgerColumns create(int capacity) {
+        return offHeapByDefault() ? new OffHeap(capacity) : new Heap(capacity);
+    }
+
+    static boolean offHeapByDefault() {
+        return "offheap".equals(System.getProperty("expense.columns", "heap").toLowerCase(Locale.ROOT));
+    }
+
+    int capacity();
+
+    /** Makes room for at least {@code capacity} rows, keeping the first {@code size}. */
+    void grow(int capacity, int size);
+
+    long id(int row);
+
+    int day(int row);
+
+    int minute(int row);
+
+    long paise(int row);
+
+    int category(int row);
+
+    int description(int row);
+
+    void set(int row, long id, int epochDay, int minute, long paise, int category, int description);
+
+    /** Moves rows (row, size) up by one, overwriting {@code row}. */
+    void removeRow(int row, int size);
+
+    /** Bytes held outside the heap, 0 for heap columns. */
+    long offHeapBytes();
+
+    final class Heap implements LedgerColumns {
+        private long[] ids;
+        private int[] days;
+        private short[] minutes;
+        private long[] amounts;
+        private int[] categories;
+        private int[] descriptions;
+
+        Heap(int capacity) {
+            ids = new long[capacity];
+            days = new int[capacity];
+            minutes = new short[capacity];
+            amounts = new long[capacity];
+            categories = new int[capacity];
+            descriptions = new int[capacity];
+        }
+
+        @Override
+        public int capacity() {
+            return days.length;
+        }
+
+        @Override
+        public void grow(int capacity, int size) {
+            ids = Arrays.copyOf(ids, capacity);
+            days = Arrays.copyOf(days, capacity);
+            minutes = Arrays.copyOf(minutes, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+            categories = Arrays.copyOf(categories, capacity);
+            descriptions = Arrays.copyOf(descriptions, capacity);
+        }
+
+        @Override
+        public long id(int row) {
+            return ids[row];
+        }
+
+        @Override
+        public int day(int row) {
+            return days[row];
+        }
+
+        @Override
+        public int minute(int row) {
+            return minutes[row];
+        }
+
+        @Override
+        public long paise(int row) {
+            return amounts[row];
+        }
+
+        @Override
+        public int category(int row) {
+            return categories[row];
+        }
+
+        @Override
+        public int description(int row) {
+            return descriptions[row];
+        }
+
+        @Override
+        public void set(int row, long id, int epochDay, int minute, long paise, int category, int description) {
+            ids[row] = id;
+            days[row] = epochDay;
+            minutes[row] = (short) minute;
+            amounts[row] = paise;
+            categories[row] = category;
+            descriptions[row] = description;
+        }
+
+        @Override
+        public void removeRow(int row, int size) {
+            int tail = size - row - 1;
+            System.arraycopy(ids, row + 1, ids, row, tail);
+            System.arraycopy(days, row + 1, days, row, tail);
+            System.arraycopy(minutes, row + 1, minutes, row, tail);
+            System.arraycopy(amounts, row + 1, amounts, row, tail);
+            System.arraycopy(categories, row + 1, categories, row, tail);
+            System.arraycopy(descriptions, row + 1, descriptions, row, tail);
+        }
+
+        @Override
+        public long offHeapBytes() {
+            return 0;
+        }
+    }
+
+    final class OffHeap implements LedgerColumns {
+        private static final int ROW_BYTES = 8 + 4 + 2 + 8 + 4 + 4;
+
+        private int capacity;
+        private ByteBuffer ids;
+        private ByteBuffer days;
+        private ByteBuffer minutes;
+        private ByteBuffer amounts;
+        private ByteBuffer categories;
+        private ByteBuffer descriptions;
+
+        OffHeap(int capacity) {
+            this.capacity = capacity;
+            ids = allocate(capacity, 8);
+            days = allocate(capacity, 4);
+            minutes = allocate(capacity, 2);
+            amounts = allocate(capacity, 8);
+            categories = allocate(capacity, 4);
+            descriptions = allocate(capacity, 4);
+        }
+
+        @Override
+        public int capacity() {
+            return capacity;
+        }
+
+        @Override
+        public void grow(int capacity, int size) {
+            ids = copy(ids, capacity, size, 8);
+            days = copy(days, capacity, size, 4);
+            minutes = copy(minutes, capacity, size, 2);
+            amounts = copy(amounts, capacity, size, 8);
+            categories = copy(categories, capacity, size, 4);
+            descriptions = copy(descriptions, capacity, size, 4);
+            this.capacity = capacity;
+        }
+
+        @Override
+        public long id(int row) {
+            return ids.getLong(row << 3);
+        }
+
+        @Override
+        public int day(int row) {
+            return days.getInt(row << 2);
+        }
+
+        @Override
+        public int minute(int row) {
+            return minutes.getShort(row << 1);
+        }
+
+        @Override
+        public long paise(int row) {
+            return amounts.getLong(row << 3);
+        }
+
+        @Override
+        public int category(int row) {
+            return categories.getInt(row << 2);
+        }
+
+        @Override
+        public int description(int row) {
+            return descriptions.getInt(row << 2);
+        }
+
+        @Override
+        public void set(int row, long id, int epochDay, int minute, long paise, int category, int description) {
+            ids.putLong(row << 3, id);
+            days.putInt(row << 2, epochDay);
+            minutes.putShort(row << 1, (short) minute);
+            amounts.putLong(row << 3, paise);
+            categories.putInt(row << 2, category);
+            descriptions.putInt(row << 2, description);
+        }
+
+        @Override
+        public void removeRow(int row, int size) {
+            int tail = size - row - 1;
+            shift(ids, row, tail, 8);
+            shift(days, row, tail, 4);
+            shift(minutes, row, tail, 2);
+            shift(amounts, row, tail, 8);
+            shift(categories, row, tail, 4);
+            shift(descriptions, row, tail, 4);
+        }
+
+        @Override
+        public long offHeapBytes() {
+            return (long) capacity * ROW_BYTES;
+        }
+
+        private static ByteBuffer allocate(int rows, int width) {
+            if ((long) rows * width > Integer.MAX_VALUE) throw new IllegalStateException("Too many rows: " + rows);
+            return ByteBuffer.allocateDirect(rows * width).order(ByteOrder.nativeOrder());
+        }
+
+        private static ByteBuffer copy(ByteBuffer from, int rows, int size, int width) {
+            ByteBuffer to = allocate(rows, width);
+            to.put(0, from, 0, size * width);
+            return to;
+        }
+
+        // Copies towards the lower address, which a forward copy does safely
+        // even though source and target overlap
+        private static void shift(ByteBuffer column, int row, int rows, int width) {
+            if (rows > 0) column.put(row * width, column.duplicate(), (row + 1) * width, rows * width);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package ledger;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Conversions between the "dd-MM-yyyy HH:mm" strings used in the data files
+ * and the epoch-day / minute-of-day ints kept by {@link LedgerStore}.
+ */
+public final class LedgerDates {
+    private LedgerDates() {
+    }
+
+    /** Parses the "dd-MM-yyyy" prefix of {@code s} starting at {@code off} into an epoch day. */
+    public static int parseDay(CharSequence s, int off) {
+        int d = digits(s, off, 2);
+        int m = digits(s, off + 3, 2);
+        int y = digits(s, off + 6, 4);
+        if (s.charAt(off + 2) != '-' || s.charAt(off + 5) != '-') {
+            throw new IllegalArgumentException("Invalid date: " + s);
+        }
+        int day = epochDay(y, m, d);
+        if (day == Integer.MIN_VALUE) throw new IllegalArgumentException("Invalid date: " + s);
+        return day;
+    }
+
+    /**
+     * Epoch day of a calendar date using the days-from-civil algorithm, or
+     * {@code Integer.MIN_VALUE} when the month or day is out of range.
+     */
+    public static int epochDay(int year, int month, int day) {
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) return Integer.MIN_VALUE;
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yoe = y - era * 400;
+        int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /** Parses the "HH:mm" that follows the date in a "dd-MM-yyyy HH:mm" field, or 0 if absent. */
+    public static int parseMinute(CharSequence s, int off) {
+        if (s.length() < off + 16 || s.charAt(off + 10) != ' ') return 0;
+        int h = digits(s, off + 11, 2);
+        int m = digits(s, off + 14, 2);
+        if (h > 23 || m > 59) throw new IllegalArgumentException("Invalid time: " + s);
+        return h * 60 + m;
+    }
+
+    public static int toEpochDay(Date date) {
+        return (int) date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    public static int toMinute(Date date) {
+        LocalTime t = date.toInstant().atZone(ZoneId.systemDefault()).toLocalTime();
+        return t.getHour() * 60 + t.getMinute();
+    }
+
+    /** The {@link Date} for an epoch day and minute of day, in the default time zone. */
+    public static Date toDate(int epochDay, int minute) {
+        return Date.from(LocalDate.ofEpochDay(epochDay).atTime(minute / 60, minute % 60)
+            .atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    public static int today() {
+        return (int) LocalDate.now().toEpochDay();
+    }
+
+    /**
+     * Months since January 0000 for an epoch day, computed with the civil-from-days
+     * algorithm so that per-row aggregation does not allocate a LocalDate.
+     */
+    public static int monthIndex(int epochDay) {
+        int z = epochDay + 719468;
+        int era = (z >= 0 ? z : z - 146096) / 146097;
+        int doe = z - era * 146097;
+        int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        int mp = (5 * doy + 2) / 153;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 12 + month - 1;
+    }
+
+    /** Epoch day of the first day of a month given as a {@link #monthIndex(int)}. */
+    public static int firstDayOfMonth(int monthIndex) {
+        return (int) LocalDate.of(Math.floorDiv(monthIndex, 12), Math.floorMod(monthIndex, 12) + 1, 1).toEpochDay();
+    }
+
+    /** Formats a {@link #monthIndex(int)} as "yyyy-MM". */
+    public static String formatMonth(int monthIndex) {
+        StringBuilder sb = new StringBuilder(7).append(Math.floorDiv(monthIndex, 12)).append('-');
+        return pad2(sb, Math.floorMod(monthIndex, 12) + 1).toString();
+    }
+
+    /** Parses "yyyy-MM" starting at {@code off} into a {@link #monthIndex(int)}. */
+    public static int parseMonth(CharSequence s, int off) {
+        int y = digits(s, off, 4);
+        int m = digits(s, off + 5, 2);
+        if (s.charAt(off + 4) != '-' || m < 1 || m > 12) throw new IllegalArgumentException("Invalid month: " + s);
+        return y * 12 + m - 1;
+    }
+
+    /** Epoch day of the first day of the month containing {@code epochDay}. */
+    public static int monthStart(int epochDay) {
+        return (int) LocalDate.ofEpochDay(epochDay).withDayOfMonth(1).toEpochDay();
+    }
+
+    /** Epoch day of the first day of the month after the one containing {@code epochDay}. */
+    public static int nextMonthStart(int epochDay) {
+        return (int) LocalDate.ofEpochDay(epochDay).withDayOfMonth(1).plusMonths(1).toEpochDay();
+    }
+
+    /** Appends "dd-MM-yyyy" for the given epoch day. */
+    public static StringBuilder appendDay(StringBuilder sb, int epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        pad2(sb, date.getDayOfMonth()).append('-');
+        pad2(sb, date.getMonthValue()).append('-');
+        return sb.append(date.getYear());
+    }
+
+    /** Appends "dd-MM-yyyy HH:mm" for the given epoch day and minute of day. */
+    public static StringBuilder appendDateTime(StringBuilder sb, int epochDay, int minute) {
+        appendDay(sb, epochDay).append(' ');
+        pad2(sb, minute / 60).append(':');
+        return pad2(sb, minute % 60);
+    }
+
+    public static String formatDay(int epochDay) {
+        return appendDay(new StringBuilder(10), epochDay).toString();
+    }
+
+    public static String formatDateTime(int epochDay, int minute) {
+        return appendDateTime(new StringBuilder(16), epochDay, minute).toString();
+    }
+
+    private static StringBuilder pad2(StringBuilder sb, int v) {
+        return sb.append((char) ('0' + v / 10)).append((char) ('0' + v % 10));
+    }
+
+    private static int digits(CharSequence s, int off, int n) {
+        int v = 0;
+        for (int i = off; i < off + n; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') throw new IllegalArgumentException("Invalid date: " + s);
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+}
@@ -0,0 +1,183 @@
+package ledger;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Writes expenses from the storage files straight to a CSV or JSON Lines
+ * file. Records are streamed one at a time from the day files and mapped
+ * segments into a 1 MB buffered writer, so the heap holds one line and one
+ * read buffer no matter how large the ledger is.
+ *
+ * <p>The date range and categories of a {@link Query} are pushed down:
+ * files are expected to be pre-selected by date (see
+ * {@link DayIndex#files(int, int)}), segments skip rows outside the range
+ * and segments without a wanted category are not walked at all.
+ */
+public class LedgerExporter {
+    private static final int BUFFER_CHARS = 1 << 20;
+    private static final Metrics.Histogram EXPORT_TIME = Metrics.histogram("export");
+    private static final Metrics.Counter ROWS_EXPORTED = Metrics.counter("export.rows");
+    private static final Metrics.Counter BYTES_WRITTEN = Metrics.counter("bytes.written");
+    private static final Metrics.Counter MALFORMED = Metrics.counter("lines.malformed");
+
+    public enum Format {
+        CSV, JSONL;
+
+        /** JSONL for a .jsonl or .json file name, CSV otherwise. */
+        public static Format forFile(File file) {
+            String name = file.getName().toLowerCase(Locale.ROOT);
+            return name.endsWith(".jsonl") || name.endsWith(".json") ? JSONL : CSV;
+        }
+    }
+
+    /** Which rows to export; everything by default. */
+    public static final class Query {
+        int fromDay = Integer.MIN_VALUE;
+        int toDay = Integer.MAX_VALUE;
+        Set<String> categories;
+
+        public Query between(int fromDay, int toDay) {
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            return this;
+        }
+
+        /** Keeps only these categories, or every category for null. */
+        public Query categories(Set<String> categories) {
+            this.categories = categories;
+            return this;
+        }
+    }
+
+    /** What an export wrote. */
+    public static final class Result {
+        public long rows;
+        public int files;
+        public long skippedLines;
+    }
+
+    private final RecordParser parser = new RecordParser();
+    private final StringBuilder line = new StringBuilder(256);
+
+    /**
+     * Exports the matching rows of {@code files} to {@code out}, in date
+     * order of the files. Interrupting the calling thread stops between files.
+     */
+    public Result export(List<File> files, Query query, Format format, File out)
+            throws IOException, InterruptedException {
+        List<File> ordered = new ArrayList<>(files);
+        ordered.sort(Comparator.comparingInt(LedgerExporter::firstDay).thenComparing(File::getName));
+        Result result = new Result();
+        long start = System.nanoTime();
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(Files.newOutputStream(out.toPath()), StandardCharsets.UTF_8), BUFFER_CHARS)) {
+            if (format == Format.CSV) writer.write("date,amount,category,description\n");
+            RecordParser.Handler handler = new RecordParser.Handler() {
+                @Override
+                public void record(int epochDay, int minute, long paise, String category, String description) {
+                    if (epochDay < query.fromDay || epochDay > query.toDay) return;
+                    if (query.categories != null && !query.categories.contains(category)) return;
+                    line.setLength(0);
+                    if (format == Format.CSV) appendCsv(epochDay, minute, paise, category, description);
+                    else appendJson(epochDay, minute, paise, category, description);
+                    try {
+                        writer.append(line);
+                    } catch (IOException ex) {
+                        throw new ExportFailure(ex);
+                    }
+                    result.rows++;
+                }
+
+                @Override
+                public void malformed(long offset, int lineNumber, String reason) {
+                    result.skippedLines++;
+                }
+            };
+
+            for (File file : ordered) {
+                if (Thread.interrupted()) throw new InterruptedException();
+                if (MonthSegment.isSegmentFile(file.getName())) {
+                    MonthSegment.scan(file, query.fromDay, query.toDay, query.categories, handler);
+                } else {
+                    DayFiles.scan(file, parser, handler);
+                }
+                result.files++;
+            }
+        } catch (ExportFailure ex) {
+            throw ex.getCause();
+        } finally {
+            EXPORT_TIME.recordSince(start);
+            ROWS_EXPORTED.add(result.rows);
+            MALFORMED.add(result.skippedLines);
+        }
+        BYTES_WRITTEN.add(out.length());
+        return result;
+    }
+
+    // Sort key for a storage file: its day, the 1st of its month, or last if unknown
+    private static int firstDay(File file) {
+        String name = file.getName();
+        int day = DayFiles.dayOf(name);
+        if (day >= 0) return day;
+        int month = MonthSegment.monthOf(name);
+        if (month >= 0) return LedgerDates.firstDayOfMonth(month);
+        try {
+            // CLI files are named dd-MM-yyyy.txt
+            return LedgerDates.parseDay(name, 0);
+        } catch (RuntimeException ex) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    private void appendCsv(int epochDay, int minute, long paise, String category, String description) {
+        LedgerDates.appendDateTime(line, epochDay, minute).append(',');
+        Money.appendPlain(line, paise).append(',');
+        appendCsvField(category).append(',');
+        appendCsvField(description).append('\n');
+    }
+
+    private StringBuilder appendCsvField(String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) return line.append(value);
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') line.append('"');
+            line.append(c);
+        }
+        return line.append('"');
+    }
+
+    private void appendJson(int epochDay, int minute, long paise, String category, String description) {
+        Json.appendRecord(line, epochDay, minute, paise, category, description).append('\n');
+    }
+
+    // Carries a write failure out of the record callback
+    private static final class ExportFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ExportFailure(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
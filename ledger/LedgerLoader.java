@@ -0,0 +1,152 @@
+package ledger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the daily expense files and monthly segments on a fork/join pool. Each
+ * file is parsed on a
+ * worker thread and the rows are regrouped into batches of roughly
+ * {@link #BATCH_ROWS} so the caller can hand them to the UI a block at a time.
+ */
+public class LedgerLoader {
+    public static final int BATCH_ROWS = 4096;
+
+    /** Receives batches on the thread that called {@link #load}, in completion order. */
+    public interface Listener {
+        void batch(RecordBatch batch, int filesDone, int filesTotal);
+
+        /** Lines that were skipped because they did not decode. */
+        default void malformed(MalformedLine line) {
+        }
+    }
+
+    private static final class Parsed {
+        final RecordBatch batch;
+        final List<MalformedLine> malformed;
+
+        Parsed(RecordBatch batch, List<MalformedLine> malformed) {
+            this.batch = batch;
+            this.malformed = malformed;
+        }
+    }
+
+    private static final ThreadLocal<RecordParser> PARSER = ThreadLocal.withInitial(RecordParser::new);
+    private static final Metrics.Histogram FILE_TIME = Metrics.histogram("load.file");
+    private static final Metrics.Counter FILES_READ = Metrics.counter("files.read");
+    private static final Metrics.Counter FILES_FAILED = Metrics.counter("files.failed");
+    private static final Metrics.Counter ROWS_READ = Metrics.counter("rows.read");
+    private static final Metrics.Counter BYTES_READ = Metrics.counter("bytes.read");
+    private static final Metrics.Counter MALFORMED = Metrics.counter("lines.malformed");
+
+    private final ForkJoinPool pool;
+
+    public LedgerLoader() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public LedgerLoader(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /** Lists every day file and month segment in a data folder. */
+    public static List<File> listLedgerFiles(File folder) {
+        List<File> files = DayFiles.list(folder);
+        files.addAll(MonthSegment.list(folder));
+        return files;
+    }
+
+    /** Month a storage file belongs to: a day file by its day, a segment by its name; -1 for anything else. */
+    static int monthOf(String name) {
+        int day = DayFiles.dayOf(name);
+        return day >= 0 ? LedgerDates.monthIndex(day) : MonthSegment.monthOf(name);
+    }
+
+    /** Reads one day file or segment, keeping only rows with a day in [fromDay, toDay]. */
+    public static RecordBatch readFile(File file, int fromDay, int toDay, List<MalformedLine> malformed)
+            throws IOException {
+        long start = System.nanoTime();
+        int before = malformed.size();
+        RecordBatch batch;
+        try {
+            // A day file holds a single day, so the range was already applied to its name
+            batch = MonthSegment.isSegmentFile(file.getName())
+                ? MonthSegment.read(file, fromDay, toDay) : readDayFile(file, malformed);
+        } catch (IOException | RuntimeException ex) {
+            FILES_FAILED.increment();
+            throw ex;
+        }
+        FILE_TIME.recordSince(start);
+        FILES_READ.increment();
+        ROWS_READ.add(batch.size());
+        BYTES_READ.add(file.length());
+        MALFORMED.add(malformed.size() - before);
+        return batch;
+    }
+
+    /** Parses one daily file into its live rows, adding the lines that do not decode to {@code malformed}. */
+    public static RecordBatch readDayFile(File file, List<MalformedLine> malformed) throws IOException {
+        return DayFiles.read(file, PARSER.get(), new RecordParser.Handler() {
+            @Override
+            public void record(int epochDay, int minute, long paise, String category, String description) {
+                // Rows are collected by DayFiles.read
+            }
+
+            @Override
+            public void malformed(long offset, int line, String reason) {
+                malformed.add(new MalformedLine(file, offset, line, reason));
+            }
+        }).live;
+    }
+
+    /**
+     * Parses {@code files} in parallel and passes the rows to {@code listener}.
+     * Unreadable files are skipped and counted under "files.failed". Interrupting the calling thread cancels the
+     * files that have not been read yet.
+     */
+    public void load(List<File> files, Listener listener) throws InterruptedException {
+        load(files, Integer.MIN_VALUE, Integer.MAX_VALUE, listener);
+    }
+
+    /** Like {@link #load(List, Listener)} but drops segment rows outside [fromDay, toDay]. */
+    public void load(List<File> files, int fromDay, int toDay, Listener listener) throws InterruptedException {
+        CompletionService<Parsed> completion = new ExecutorCompletionService<>(pool);
+        List<Future<Parsed>> futures = new ArrayList<>(files.size());
+        for (File file : files) {
+            futures.add(completion.submit(() -> {
+                List<MalformedLine> malformed = new ArrayList<>();
+                return new Parsed(readFile(file, fromDay, toDay, malformed), malformed);
+            }));
+        }
+
+        RecordBatch pending = new RecordBatch(BATCH_ROWS);
+        try {
+            for (int done = 1; done <= files.size(); done++) {
+                try {
+                    Parsed parsed = completion.take().get();
+                    pending.addAll(parsed.batch);
+                    for (MalformedLine line : parsed.malformed) listener.malformed(line);
+                } catch (ExecutionException ex) {
+                    // Skipped; readFile already counted it
+                }
+                if (pending.size() >= BATCH_ROWS || done == files.size()) {
+                    listener.batch(pending, done, files.size());
+                    pending = new RecordBatch(BATCH_ROWS);
+                }
+            }
+        } finally {
+            for (Future<Parsed> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+}
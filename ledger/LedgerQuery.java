@@ -0,0 +1,59 @@
+package ledger;
+
+import java.util.Set;
+
+/**
+ * A filter over the loaded ledger: any combination of categories, an amount
+ * range, a date range and description words. Unset dimensions match
+ * everything, so a new query selects every row.
+ */
+public final class LedgerQuery {
+    Set<String> categories;
+    long minPaise = Long.MIN_VALUE;
+    long maxPaise = Long.MAX_VALUE;
+    int fromDay = Integer.MIN_VALUE;
+    int toDay = Integer.MAX_VALUE;
+    String text = "";
+
+    /** Keeps rows in any of these categories, or every category for null. */
+    public LedgerQuery categories(Set<String> categories) {
+        this.categories = categories;
+        return this;
+    }
+
+    /** Keeps rows with an amount in [minPaise, maxPaise]. */
+    public LedgerQuery amountBetween(long minPaise, long maxPaise) {
+        this.minPaise = minPaise;
+        this.maxPaise = maxPaise;
+        return this;
+    }
+
+    /** Keeps rows dated within [fromDay, toDay]. */
+    public LedgerQuery between(int fromDay, int toDay) {
+        this.fromDay = fromDay;
+        this.toDay = toDay;
+        return this;
+    }
+
+    /** Keeps rows whose description has a word starting with each word of {@code text}. */
+    public LedgerQuery text(String text) {
+        this.text = text == null ? "" : text;
+        return this;
+    }
+
+    public String text() {
+        return text;
+    }
+
+    /** True when the query matches every row. */
+    public boolean isEmpty() {
+        return categories == null && minPaise == Long.MIN_VALUE && maxPaise == Long.MAX_VALUE
+            && fromDay == Integer.MIN_VALUE && toDay == Integer.MAX_VALUE && text.isBlank();
+    }
+
+    /** The same filter with different description words. */
+    public LedgerQuery withText(String text) {
+        LedgerQuery copy = new LedgerQuery().categories(categories).amountBetween(minPaise, maxPaise).between(fromDay, toDay);
+        return copy.text(text);
+    }
+}
@@ -0,0 +1,262 @@
+package ledger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Checkpoint of the decoded ledger, data/ledger.snapshot, so a cold start is
+ * one bulk read instead of a parse of every file.
+ *
+ * <pre>
+ * header   magic "EXSN", version, file count, category count,
+ *          description count, row count                          (6 x int)
+ * files    name length short, UTF-8 name, length long, modified long
+ * strings  length int, UTF-8 bytes; categories then descriptions
+ * rows     day int, minute short, paise long, category int, description int, id long
+ * trailer  CRC32 of everything before it                          (long)
+ * </pre>
+ *
+ * The file list is the high-water mark: the length and modification time of
+ * every data file whose contents the rows already include. On restore, a
+ * month whose files all still match keeps its rows from the snapshot; a month
+ * with a new, changed or deleted file drops them and has its files replayed.
+ *
+ * <p>Stamps are taken when a load starts and refreshed by {@link #fold} as
+ * the journal installs files, so they only ever describe writes the store
+ * has already seen. Anything else touching the folder shows up as a changed
+ * stamp and costs a replay of that month, never a stale row.
+ */
+public class LedgerSnapshot {
+    public static final String FILE_NAME = "ledger.snapshot";
+
+    private static final int MAGIC = 0x4558534E;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int RECORD_BYTES = 30;
+    private static final Metrics.Histogram RESTORE_TIME = Metrics.histogram("snapshot.restore");
+    private static final Metrics.Histogram WRITE_TIME = Metrics.histogram("snapshot.write");
+    private static final Metrics.Counter ROWS_RESTORED = Metrics.counter("snapshot.rows");
+    private static final Metrics.Counter FILES_REPLAYED = Metrics.counter("snapshot.replayed");
+
+    private final File folder;
+    private final Map<String, long[]> stamps = new ConcurrentHashMap<>();
+
+    public LedgerSnapshot(File folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Reads the snapshot and returns the rows of every month whose files are
+     * unchanged, adding the files that still need parsing to {@code replay}.
+     * Without a usable snapshot every file is replayed. Either way the
+     * current stamps of {@code files} become the high-water mark, so call
+     * this before reading any of them.
+     */
+    public RecordBatch restore(List<File> files, List<File> replay) {
+        long start = System.nanoTime();
+        stamps.clear();
+        for (File file : files) stamps.put(file.getName(), stamp(file));
+
+        RecordBatch rows = new RecordBatch(1);
+        Set<Integer> dirtyMonths = new HashSet<>();
+        try {
+            rows = read(dirtyMonths);
+        } catch (IOException | RuntimeException ex) {
+            // Missing, torn or from another version: replay everything
+            dirtyMonths = null;
+        }
+        for (File file : files) {
+            if (dirtyMonths == null || dirtyMonths.contains(LedgerLoader.monthOf(file.getName()))) replay.add(file);
+        }
+        RESTORE_TIME.recordSince(start);
+        ROWS_RESTORED.add(rows.size());
+        FILES_REPLAYED.add(replay.size());
+        return rows;
+    }
+
+    /** Re-stamps a data file after the journal wrote or deleted it. */
+    public void fold(File file) {
+        if (file.exists()) stamps.put(file.getName(), stamp(file));
+        else stamps.remove(file.getName());
+    }
+
+    /**
+     * Copies the store and the current stamps. Call on the thread that owns
+     * the store; the returned checkpoint can be written from any thread.
+     */
+    public Checkpoint checkpoint(LedgerStore store) {
+        return new Checkpoint(store, new HashMap<>(stamps));
+    }
+
+    /** A frozen copy of the store waiting to be written. */
+    public final class Checkpoint {
+        private final Map<String, long[]> files;
+        private final List<byte[]> strings = new ArrayList<>();
+        private final int categoryCount;
+        private final int[] days;
+        private final short[] minutes;
+        private final long[] amounts;
+        private final int[] categories;
+        private final int[] descriptions;
+        private final long[] ids;
+
+        private Checkpoint(LedgerStore store, Map<String, long[]> files) {
+            this.files = files;
+            int size = store.size();
+            categoryCount = store.categoryCount();
+            for (int id = 0; id < categoryCount; id++) {
+                strings.add(store.categoryName(id).getBytes(StandardCharsets.UTF_8));
+            }
+            days = new int[size];
+            minutes = new short[size];
+            amounts = new long[size];
+            categories = new int[size];
+            descriptions = new int[size];
+            ids = new long[size];
+            // Only descriptions still in use, renumbered in order of first use
+            int[] renumbered = new int[0];
+            int used = 0;
+            for (int row = 0; row < size; row++) {
+                days[row] = store.day(row);
+                minutes[row] = (short) store.minute(row);
+                amounts[row] = store.paise(row);
+                categories[row] = store.categoryId(row);
+                ids[row] = store.id(row);
+                int id = store.descriptionId(row);
+                if (id >= renumbered.length) {
+                    int old = renumbered.length;
+                    renumbered = Arrays.copyOf(renumbered, Math.max(id + 1, old * 2));
+                    Arrays.fill(renumbered, old, renumbered.length, -1);
+                }
+                if (renumbered[id] < 0) {
+                    renumbered[id] = used++;
+                    strings.add(store.description(row).getBytes(StandardCharsets.UTF_8));
+                }
+                descriptions[row] = renumbered[id];
+            }
+        }
+
+        /** Writes the snapshot beside the data files, replacing the previous one atomically. */
+        public void write() throws IOException {
+            synchronized (LedgerSnapshot.this) {
+                long start = System.nanoTime();
+                List<byte[]> names = new ArrayList<>();
+                int size = HEADER_BYTES + days.length * RECORD_BYTES + 8;
+                for (String name : files.keySet()) {
+                    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                    names.add(bytes);
+                    size += 2 + bytes.length + 16;
+                }
+                for (byte[] bytes : strings) size += 4 + bytes.length;
+
+                ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+                out.putInt(MAGIC).putInt(VERSION).putInt(files.size()).putInt(categoryCount)
+                    .putInt(strings.size() - categoryCount).putInt(days.length);
+                int n = 0;
+                for (long[] stamp : files.values()) {
+                    byte[] name = names.get(n++);
+                    out.putShort((short) name.length).put(name).putLong(stamp[0]).putLong(stamp[1]);
+                }
+                for (byte[] bytes : strings) out.putInt(bytes.length).put(bytes);
+                for (int row = 0; row < days.length; row++) {
+                    out.putInt(days[row]).putShort(minutes[row]).putLong(amounts[row])
+                        .putInt(categories[row]).putInt(descriptions[row]).putLong(ids[row]);
+                }
+                CRC32 crc = new CRC32();
+                crc.update(out.array(), 0, out.position());
+                out.putLong(crc.getValue());
+                out.flip();
+
+                File temp = new File(folder, FILE_NAME + ".tmp");
+                try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    while (out.hasRemaining()) {
+                        channel.write(out);
+                    }
+                    channel.force(true);
+                }
+                Files.move(temp.toPath(), new File(folder, FILE_NAME).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                WRITE_TIME.recordSince(start);
+            }
+        }
+    }
+
+    // Decodes the snapshot, collecting the months whose files changed and returning the rows of the rest
+    private RecordBatch read(Set<Integer> dirtyMonths) throws IOException {
+        ByteBuffer in;
+        synchronized (this) {
+            try (FileChannel channel = FileChannel.open(new File(folder, FILE_NAME).toPath(), StandardOpenOption.READ)) {
+                long length = channel.size();
+                if (length < HEADER_BYTES + 8 || length > Integer.MAX_VALUE) throw new IOException("Bad snapshot size");
+                in = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+                while (in.hasRemaining() && channel.read(in) >= 0) {
+                    // One bulk read
+                }
+            }
+        }
+        in.flip();
+        CRC32 crc = new CRC32();
+        crc.update(in.array(), 0, in.limit() - 8);
+        if (in.getLong(in.limit() - 8) != crc.getValue()) throw new IOException("Snapshot checksum mismatch");
+        if (in.getInt() != MAGIC || in.getInt() != VERSION) throw new IOException("Not a snapshot");
+        int fileCount = in.getInt();
+        int categoryCount = in.getInt();
+        int descriptionCount = in.getInt();
+        int rowCount = in.getInt();
+
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < fileCount; i++) {
+            byte[] bytes = new byte[in.getShort() & 0xFFFF];
+            in.get(bytes);
+            String name = new String(bytes, StandardCharsets.UTF_8);
+            long length = in.getLong();
+            long modified = in.getLong();
+            seen.add(name);
+            long[] now = stamps.get(name);
+            if (now == null || now[0] != length || now[1] != modified) dirtyMonths.add(LedgerLoader.monthOf(name));
+        }
+        for (String name : stamps.keySet()) {
+            if (!seen.contains(name)) dirtyMonths.add(LedgerLoader.monthOf(name));
+        }
+
+        String[] strings = new String[categoryCount + descriptionCount];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[in.getInt()];
+            in.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        RecordBatch rows = new RecordBatch(Math.max(1, rowCount));
+        for (int i = 0; i < rowCount; i++) {
+            int day = in.getInt();
+            int minute = in.getShort();
+            long paise = in.getLong();
+            int category = in.getInt();
+            int description = in.getInt();
+            long id = in.getLong();
+            if (dirtyMonths.contains(LedgerDates.monthIndex(day))) continue;
+            rows.add(id, day, minute, paise, strings[category], strings[categoryCount + description]);
+        }
+        return rows;
+    }
+
+    private static long[] stamp(File file) {
+        return new long[] {file.length(), file.lastModified()};
+    }
+}
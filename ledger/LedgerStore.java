@@ -0,0 +1,187 @@
+package ledger;
+
+/**
+ * In-memory ledger kept as primitive columns. Dates are epoch days plus a
+ * minute of day, amounts are whole paise, and categories and descriptions are
+ * stored as ids, categories into a {@link CategoryDictionary} and descriptions
+ * into a pool, so a row costs a few ints instead of four formatted Strings.
+ * Every row also carries its stable {@link ExpenseIds id}, which is how the
+ * journal names it in deletes and edits.
+ *
+ * <p>The columns and the description pool live on the heap or, with
+ * -Dexpense.columns=offheap, in direct buffers; see {@link LedgerColumns}.
+ * The query engine and description index stay on the heap either way.
+ */
+public class LedgerStore {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final LedgerColumns columns = LedgerColumns.create(INITIAL_CAPACITY);
+    private final StringPool descriptions = StringPool.create();
+    private int size;
+    private volatile int version;
+
+    private final CategoryDictionary dictionary;
+    private final LedgerAggregates aggregates = new LedgerAggregates();
+    private final DescriptionIndex descriptionIndex = new DescriptionIndex(this);
+    private final QueryEngine queryEngine = new QueryEngine(this);
+
+    /** A store with a dictionary of its own, holding just the categories its rows use. */
+    public LedgerStore() {
+        this(new CategoryDictionary());
+    }
+
+    public LedgerStore(CategoryDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /** Appends a row under a fresh id and returns its index. */
+    public int add(int epochDay, int minuteOfDay, long paise, String category, String description) {
+        return add(ExpenseIds.next(), epochDay, minuteOfDay, paise, category, description);
+    }
+
+    /** Appends a row and returns its index; an id of 0 is replaced by a fresh one. */
+    public int add(long id, int epochDay, int minuteOfDay, long paise, String category, String description) {
+        ensureCapacity(size + 1);
+        int row = size++;
+        int categoryId = categoryId(category);
+        int descriptionId = descriptions.intern(description);
+        columns.set(row, id != 0 ? id : ExpenseIds.next(), epochDay, minuteOfDay, paise, categoryId, descriptionId);
+        aggregates.add(epochDay, paise, categoryId);
+        descriptionIndex.add(row, descriptionId, description);
+        queryEngine.add(row, categoryId);
+        version++;
+        return row;
+    }
+
+    /** Removes a row, shifting the following rows up by one like a table model does. */
+    public void remove(int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        aggregates.remove(columns.day(row), columns.paise(row), columns.category(row));
+        columns.removeRow(row, size);
+        size--;
+        descriptionIndex.rowsShifted();
+        queryEngine.rowsShifted();
+        version++;
+    }
+
+    /** Replaces the contents of a row in place, keeping its index and id. */
+    public void update(int row, int epochDay, int minuteOfDay, long paise, String category, String description) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        aggregates.remove(columns.day(row), columns.paise(row), columns.category(row));
+        int categoryId = categoryId(category);
+        int descriptionId = descriptions.intern(description);
+        columns.set(row, columns.id(row), epochDay, minuteOfDay, paise, categoryId, descriptionId);
+        aggregates.add(epochDay, paise, categoryId);
+        // Both indexes rebuild their row lists on next use, as after a removal
+        descriptionIndex.rowChanged(descriptionId, description);
+        queryEngine.rowsShifted();
+        version++;
+    }
+
+    public void clear() {
+        size = 0;
+        aggregates.clear();
+        descriptionIndex.clearRows();
+        queryEngine.clearRows();
+        version++;
+    }
+
+    /** Running totals kept in step with every add, remove and clear. */
+    public LedgerAggregates aggregates() {
+        return aggregates;
+    }
+
+    /** Token and prefix search over the description column, kept in step like the aggregates. */
+    public DescriptionIndex descriptionIndex() {
+        return descriptionIndex;
+    }
+
+    /** Category, amount and date filtering over the loaded rows. */
+    public QueryEngine queryEngine() {
+        return queryEngine;
+    }
+
+    /**
+     * Bumped by every add, update, remove and clear. A reader on another thread can
+     * read it before and after looking at the columns and discard what it saw
+     * if the two differ.
+     */
+    public int version() {
+        return version;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long id(int row) {
+        return columns.id(row);
+    }
+
+    public int day(int row) {
+        return columns.day(row);
+    }
+
+    public int minute(int row) {
+        return columns.minute(row);
+    }
+
+    public long paise(int row) {
+        return columns.paise(row);
+    }
+
+    public int categoryId(int row) {
+        return columns.category(row);
+    }
+
+    public String category(int row) {
+        return dictionary.name(columns.category(row));
+    }
+
+    public String description(int row) {
+        return descriptions.get(columns.description(row));
+    }
+
+    /** Id of the row's description in the description pool. */
+    public int descriptionId(int row) {
+        return columns.description(row);
+    }
+
+    /** The dictionary the category ids point into. */
+    public CategoryDictionary categories() {
+        return dictionary;
+    }
+
+    public int categoryCount() {
+        return dictionary.size();
+    }
+
+    public String categoryName(int id) {
+        return dictionary.name(id);
+    }
+
+    /** Returns the id for a category name, or -1 if it is not in the dictionary. */
+    public int findCategoryId(String name) {
+        return dictionary.find(name);
+    }
+
+    /** Returns the id for a category name, registering it if it is new. */
+    public int categoryId(String name) {
+        return dictionary.intern(name);
+    }
+
+    /** True when the columns and descriptions are kept in direct buffers. */
+    public boolean offHeap() {
+        return columns.offHeapBytes() > 0;
+    }
+
+    /** Bytes of column and description storage held outside the heap. */
+    public long offHeapBytes() {
+        return columns.offHeapBytes() + descriptions.offHeapBytes();
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= columns.capacity()) return;
+        columns.grow(Math.max(needed, columns.capacity() * 2), size);
+    }
+}
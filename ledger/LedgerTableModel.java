@@ -0,0 +1,160 @@
+package ledger;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table model that reads straight from a {@link LedgerStore}. Nothing is
+ * copied or formatted up front: the date column hands out the packed
+ * epoch-minute and the amount column the paise, and {@link LedgerCellRenderer}
+ * formats them only for the rows being painted.
+ *
+ * <p>A {@link LedgerQuery} narrows the table to a view of store rows resolved
+ * through the store's {@link QueryEngine}; the view is re-resolved whenever
+ * rows are added or removed underneath it.
+ */
+public class LedgerTableModel extends AbstractTableModel {
+    public static final int DATE = 0;
+    public static final int AMOUNT = 1;
+    public static final int CATEGORY = 2;
+    public static final int DESCRIPTION = 3;
+
+    private static final String[] COLUMNS = {"Date", "Amount (INR)", "Category", "Description"};
+
+    private final LedgerStore store;
+    private LedgerQuery query = new LedgerQuery();
+    private int[] view;
+
+    public LedgerTableModel(LedgerStore store) {
+        this.store = store;
+    }
+
+    public LedgerStore store() {
+        return store;
+    }
+
+    /** Appends a row and returns its store row. */
+    public int add(int epochDay, int minute, long paise, String category, String description) {
+        int row = store.add(epochDay, minute, paise, category, description);
+        if (view != null) {
+            refreshView();
+        } else {
+            fireTableRowsInserted(row, row);
+        }
+        return row;
+    }
+
+    /** Appends a row under an id the caller already logged it with, and returns its store row. */
+    public int add(long id, int epochDay, int minute, long paise, String category, String description) {
+        int row = store.add(id, epochDay, minute, paise, category, description);
+        if (view != null) {
+            refreshView();
+        } else {
+            fireTableRowsInserted(row, row);
+        }
+        return row;
+    }
+
+    /** Replaces the values of the row shown at {@code row}, keeping its id. */
+    public void update(int row, int epochDay, int minute, long paise, String category, String description) {
+        store.update(storeRow(row), epochDay, minute, paise, category, description);
+        if (view != null) {
+            refreshView();
+        } else {
+            fireTableRowsUpdated(row, row);
+        }
+    }
+
+    /** Appends a whole batch with a single insert event. */
+    public void append(RecordBatch batch) {
+        if (batch.size() == 0) return;
+        int first = batch.appendTo(store);
+        if (view != null) {
+            refreshView();
+        } else {
+            fireTableRowsInserted(first, store.size() - 1);
+        }
+    }
+
+    /** Removes the row shown at {@code row}. */
+    public void remove(int row) {
+        store.remove(storeRow(row));
+        if (view != null) view = store.queryEngine().select(query);
+        fireTableRowsDeleted(row, row);
+    }
+
+    public void clear() {
+        store.clear();
+        if (view != null) view = new int[0];
+        fireTableDataChanged();
+    }
+
+    /** Shows only the rows matching {@code query}, keeping the current search words. */
+    public void setQuery(LedgerQuery query) {
+        this.query = query.withText(this.query.text());
+        refreshView();
+    }
+
+    /** Shows only rows whose description matches every word of {@code text}; blank shows all. */
+    public void setSearch(String text) {
+        query = query.withText(text);
+        refreshView();
+    }
+
+    /**
+     * Store rows on show, or null when every row is. A new array replaces the
+     * old one whenever the view changes, so callers may keep it.
+     */
+    public int[] view() {
+        return view;
+    }
+
+    /** Store row behind a table row. */
+    public int storeRow(int row) {
+        return view == null ? row : view[row];
+    }
+
+    private void refreshView() {
+        view = store.queryEngine().select(query);
+        fireTableDataChanged();
+    }
+
+    /** Packs a day and minute into the value shown in the date column. */
+    public static long epochMinute(int epochDay, int minute) {
+        return epochDay * 1440L + minute;
+    }
+
+    @Override
+    public int getRowCount() {
+        return view == null ? store.size() : view.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == DATE || column == AMOUNT ? Long.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int viewRow, int column) {
+        int row = storeRow(viewRow);
+        switch (column) {
+            case DATE:
+                return epochMinute(store.day(row), store.minute(row));
+            case AMOUNT:
+                return store.paise(row);
+            case CATEGORY:
+                return store.category(row);
+            default:
+                return store.description(row);
+        }
+    }
+}
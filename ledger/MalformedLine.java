@@ -0,0 +1,23 @@
+package ledger;
+
+import java.io.File;
+
+/** A line of a data file that {@link RecordParser}, or a loader like it, could not decode. */
+public final class MalformedLine {
+    public final File file;
+    public final long offset;
+    public final int line;
+    public final String reason;
+
+    public MalformedLine(File file, long offset, int line, String reason) {
+        this.file = file;
+        this.offset = offset;
+        this.line = line;
+        this.reason = reason;
+    }
+
+    @Override
+    public String toString() {
+        return file.getName() + " line " + line + " (byte " + offset + "): " + reason;
+    }
+}
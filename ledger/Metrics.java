@@ -0,0 +1,234 @@
+package ledger;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Process-wide counters and latency histograms. Both are lock-free, so the
+ * loader, journal and query paths record into them on every call. The whole
+ * registry is published as one JMX bean, {@value #OBJECT_NAME}, with an
+ * attribute per counter and per histogram statistic, and {@link #report}
+ * renders it as text for the diagnostics dialog and the CLI.
+ */
+public final class Metrics {
+    public static final String OBJECT_NAME = "expensetracker:type=Metrics";
+
+    private static final Map<String, Counter> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+    private static volatile boolean registered;
+
+    private Metrics() {
+    }
+
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, k -> new Counter());
+    }
+
+    public static Histogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, k -> new Histogram());
+    }
+
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void add(long delta) {
+            value.add(delta);
+        }
+
+        public void increment() {
+            value.increment();
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /**
+     * Latency histogram over nanoseconds with four buckets per power of two,
+     * so percentiles are exact to within about 20%.
+     */
+    public static final class Histogram {
+        private static final int SUB_BITS = 2;
+        private final AtomicLongArray buckets = new AtomicLongArray(64 << SUB_BITS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLongArray max = new AtomicLongArray(1);
+
+        public void record(long nanos) {
+            if (nanos < 0) nanos = 0;
+            buckets.incrementAndGet(bucket(nanos));
+            count.increment();
+            sum.add(nanos);
+            long seen;
+            while (nanos > (seen = max.get(0)) && !max.compareAndSet(0, seen, nanos)) {
+                // retry
+            }
+        }
+
+        /** Records the time since a {@link System#nanoTime()} reading. */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long meanNanos() {
+            long n = count.sum();
+            return n == 0 ? 0 : sum.sum() / n;
+        }
+
+        public long maxNanos() {
+            return max.get(0);
+        }
+
+        /** Upper bound of the bucket holding the given percentile (0-100). */
+        public long percentileNanos(double percentile) {
+            long n = count.sum();
+            if (n == 0) return 0;
+            long rank = (long) Math.ceil(n * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= Math.max(rank, 1)) return Math.min(upperBound(i), maxNanos());
+            }
+            return maxNanos();
+        }
+
+        private static int bucket(long nanos) {
+            if (nanos < (1 << SUB_BITS)) return (int) nanos;
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int sub = (int) (nanos >>> (exponent - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+            return ((exponent - SUB_BITS + 1) << SUB_BITS) | sub;
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < (1 << SUB_BITS)) return bucket;
+            int exponent = (bucket >>> SUB_BITS) + SUB_BITS - 1;
+            long sub = bucket & ((1 << SUB_BITS) - 1);
+            return ((1L << SUB_BITS | sub) + 1 << (exponent - SUB_BITS)) - 1;
+        }
+    }
+
+    /** Publishes the registry on the platform MBean server; later calls do nothing. */
+    public static synchronized void registerMBean() {
+        if (registered) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) server.registerMBean(new Bean(), name);
+            registered = true;
+        } catch (JMException ex) {
+            // Metrics still work in-process without JMX
+        }
+    }
+
+    /** Appends every counter and histogram as aligned text. */
+    public static StringBuilder report(StringBuilder sb) {
+        sb.append("Counters\n");
+        for (Map.Entry<String, Counter> entry : COUNTERS.entrySet()) {
+            sb.append(String.format("  %-24s %,14d%n", entry.getKey(), entry.getValue().get()));
+        }
+        sb.append("\nLatencies (ms)             count       mean        p50        p99        max\n");
+        for (Map.Entry<String, Histogram> entry : HISTOGRAMS.entrySet()) {
+            Histogram h = entry.getValue();
+            sb.append(String.format("  %-20s %9d %10.3f %10.3f %10.3f %10.3f%n", entry.getKey(), h.count(),
+                h.meanNanos() / 1e6, h.percentileNanos(50) / 1e6, h.percentileNanos(99) / 1e6, h.maxNanos() / 1e6));
+        }
+        return sb;
+    }
+
+    public static String report() {
+        return report(new StringBuilder()).toString();
+    }
+
+    // Attributes are "counter.<name>" and "<histogram>.<statistic>", listed afresh on every getMBeanInfo
+    private static final class Bean implements DynamicMBean {
+        private static final String[] STATS = {"count", "meanMillis", "p50Millis", "p99Millis", "maxMillis"};
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            if (attribute.startsWith("counter.")) {
+                Counter counter = COUNTERS.get(attribute.substring(8));
+                if (counter != null) return counter.get();
+            } else {
+                int dot = attribute.lastIndexOf('.');
+                Histogram h = dot < 0 ? null : HISTOGRAMS.get(attribute.substring(0, dot));
+                if (h != null) {
+                    switch (attribute.substring(dot + 1)) {
+                        case "count": return h.count();
+                        case "meanMillis": return h.meanNanos() / 1e6;
+                        case "p50Millis": return h.percentileNanos(50) / 1e6;
+                        case "p99Millis": return h.percentileNanos(99) / 1e6;
+                        case "maxMillis": return h.maxNanos() / 1e6;
+                        default: break;
+                    }
+                }
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException ex) {
+                    // Left out, as the DynamicMBean contract allows
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            // The bean declares no operations
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (String name : COUNTERS.keySet()) {
+                attributes.add(new MBeanAttributeInfo("counter." + name, "long", name, true, false, false));
+            }
+            for (String name : HISTOGRAMS.keySet()) {
+                for (String stat : STATS) {
+                    String type = stat.equals("count") ? "long" : "double";
+                    attributes.add(new MBeanAttributeInfo(name + "." + stat, type, name + " " + stat, true, false, false));
+                }
+            }
+            return new MBeanInfo(Metrics.class.getName(), "Expense tracker counters and latencies",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[0], null);
+        }
+    }
+}
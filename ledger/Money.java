@@ -0,0 +1,97 @@
+package ledger;
+
+/**
+ * Fixed-point rupee amounts held as whole paise in a {@code long}. Parsing is
+ * exact, and formatting writes lakh/crore grouped digits ("1,23,45,678.90")
+ * straight into the caller's StringBuilder without going through a double
+ * or String.format.
+ */
+public final class Money {
+    private static final long[] POW10 = new long[19];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10;
+    }
+
+    private Money() {
+    }
+
+    /**
+     * Parses "[-]digits[.digits]" into paise, ignoring grouping commas and
+     * rounding half up past the second decimal.
+     */
+    public static long parse(CharSequence text) {
+        int i = 0;
+        int end = text.length();
+        while (i < end && Character.isWhitespace(text.charAt(i))) i++;
+        while (end > i && Character.isWhitespace(text.charAt(end - 1))) end--;
+        boolean negative = i < end && text.charAt(i) == '-';
+        if (negative || (i < end && text.charAt(i) == '+')) i++;
+
+        long whole = 0;
+        int digits = 0;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == ',') continue;
+            if (c < '0' || c > '9') break;
+            if (++digits > 15) throw new NumberFormatException("Amount too large: " + text);
+            whole = whole * 10 + (c - '0');
+        }
+        long fraction = 0;
+        int fractionDigits = 0;
+        boolean roundUp = false;
+        if (i < end && text.charAt(i) == '.') {
+            for (i++; i < end; i++) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') break;
+                if (fractionDigits < 2) fraction = fraction * 10 + (c - '0');
+                else if (fractionDigits == 2) roundUp = c >= '5';
+                fractionDigits++;
+            }
+        }
+        if (i != end || digits + fractionDigits == 0) throw new NumberFormatException("Invalid amount: " + text);
+        if (fractionDigits == 1) fraction *= 10;
+        long paise = whole * 100 + fraction + (roundUp ? 1 : 0);
+        return negative ? -paise : paise;
+    }
+
+    /** Appends "INR 1,23,456.78", or "-INR ..." for a negative amount. */
+    public static StringBuilder appendInr(StringBuilder sb, long paise) {
+        sb.append(paise < 0 ? "-INR " : "INR ");
+        return appendDigits(sb, Math.abs(paise), true);
+    }
+
+    /** Appends the amount with lakh/crore grouping and no currency prefix. */
+    public static StringBuilder appendGrouped(StringBuilder sb, long paise) {
+        if (paise < 0) sb.append('-');
+        return appendDigits(sb, Math.abs(paise), true);
+    }
+
+    /** Appends the amount as the data files store it, e.g. "1234.50". */
+    public static StringBuilder appendPlain(StringBuilder sb, long paise) {
+        if (paise < 0) sb.append('-');
+        return appendDigits(sb, Math.abs(paise), false);
+    }
+
+    public static String formatInr(long paise) {
+        return appendInr(new StringBuilder(24), paise).toString();
+    }
+
+    public static String plain(long paise) {
+        return appendPlain(new StringBuilder(20), paise).toString();
+    }
+
+    private static StringBuilder appendDigits(StringBuilder sb, long paise, boolean grouped) {
+        long whole = paise / 100;
+        int count = 1;
+        while (count < POW10.length && whole >= POW10[count]) count++;
+        for (int i = count - 1; i >= 0; i--) {
+            sb.append((char) ('0' + (whole / POW10[i]) % 10));
+            // Indian grouping: a comma before the last three digits, then every two
+            if (grouped && i >= 3 && (i - 3) % 2 == 0) sb.append(',');
+        }
+        int fraction = (int) (paise % 100);
+        return sb.append('.').append((char) ('0' + fraction / 10)).append((char) ('0' + fraction % 10));
+    }
+}
@@ -0,0 +1,183 @@
+package ledger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binary storage for one month of expenses, data/segment_yyyy-MM.bin.
+ *
+ * <pre>
+ * header   magic "EXSG", version, record count, string count   (4 x int)
+ * records  day int, minute short, paise long, category int, description int, id long
+ * offsets  (string count + 1) ints into the string bytes
+ * strings  UTF-8 bytes of every distinct category and description
+ * </pre>
+ *
+ * Records are fixed width so a reader can map the file and walk it without
+ * any line parsing; categories and descriptions are indexes into the string
+ * table, which is decoded once per file.
+ */
+public final class MonthSegment {
+    public static final String PREFIX = "segment_";
+    public static final String SUFFIX = ".bin";
+
+    private static final int MAGIC = 0x45585347;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_BYTES = 30;
+
+    private MonthSegment() {
+    }
+
+    public static File segmentFile(File folder, int monthIndex) {
+        return new File(folder, PREFIX + LedgerDates.formatMonth(monthIndex) + SUFFIX);
+    }
+
+    public static boolean isSegmentFile(String name) {
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+
+    /** Month encoded in a segment file name, or -1 if the name does not decode. */
+    public static int monthOf(String name) {
+        if (!isSegmentFile(name) || name.length() != PREFIX.length() + 7 + SUFFIX.length()) return -1;
+        try {
+            return LedgerDates.parseMonth(name, PREFIX.length());
+        } catch (RuntimeException ex) {
+            return -1;
+        }
+    }
+
+    public static List<File> list(File folder) {
+        File[] files = folder.listFiles((dir, name) -> isSegmentFile(name));
+        return files == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(files));
+    }
+
+    public static RecordBatch read(File file) throws IOException {
+        return read(file, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /** Maps a segment and decodes the records whose day lies in [fromDay, toDay]. */
+    public static RecordBatch read(File file, int fromDay, int toDay) throws IOException {
+        RecordBatch batch = new RecordBatch();
+        scan(file, fromDay, toDay, null, new RecordParser.Handler() {
+            @Override
+            public void record(int epochDay, int minute, long paise, String category, String description) {
+                batch.add(epochDay, minute, paise, category, description);
+            }
+
+            @Override
+            public void record(long id, int epochDay, int minute, long paise, String category, String description) {
+                batch.add(id, epochDay, minute, paise, category, description);
+            }
+        });
+        return batch;
+    }
+
+    /**
+     * Maps a segment and passes each record dated within [fromDay, toDay] to
+     * {@code handler} without collecting them. When {@code categories} is not
+     * null only records in one of those categories are decoded, and a segment
+     * whose string table holds none of them is skipped after reading the table.
+     */
+    public static void scan(File file, int fromDay, int toDay, Set<String> categories,
+                            RecordParser.Handler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            int version = map.remaining() < HEADER_BYTES || map.getInt(0) != MAGIC ? -1 : map.getInt(4);
+            if (version != VERSION) throw new IOException("Not an expense segment: " + file);
+            int records = map.getInt(8);
+            int strings = map.getInt(12);
+            int offsetsAt = HEADER_BYTES + records * RECORD_BYTES;
+            int bytesAt = offsetsAt + (strings + 1) * 4;
+
+            String[] table = new String[strings];
+            byte[] scratch = new byte[64];
+            boolean[] wanted = categories == null ? null : new boolean[strings];
+            boolean any = categories == null;
+            for (int i = 0; i < strings; i++) {
+                int start = map.getInt(offsetsAt + i * 4);
+                int length = map.getInt(offsetsAt + (i + 1) * 4) - start;
+                if (scratch.length < length) scratch = new byte[length];
+                map.get(bytesAt + start, scratch, 0, length);
+                table[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+                if (wanted != null && categories.contains(table[i])) {
+                    wanted[i] = true;
+                    any = true;
+                }
+            }
+            if (!any) return;
+
+            for (int i = 0, at = HEADER_BYTES; i < records; i++, at += RECORD_BYTES) {
+                int day = map.getInt(at);
+                if (day < fromDay || day > toDay) continue;
+                int category = map.getInt(at + 14);
+                if (wanted != null && !wanted[category]) continue;
+                handler.record(map.getLong(at + 22), day, map.getShort(at + 4), map.getLong(at + 6),
+                    table[category], table[map.getInt(at + 18)]);
+            }
+        }
+    }
+
+    /** Writes {@code batch} as a segment, replacing any existing file. Rows without an id get a fresh one. */
+    public static void write(File file, RecordBatch batch) throws IOException {
+        Map<String, Integer> ids = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        int[] categoryIds = new int[batch.size()];
+        int[] descriptionIds = new int[batch.size()];
+        int stringBytes = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            for (int field = 0; field < 2; field++) {
+                String value = field == 0 ? batch.category(i) : batch.description(i);
+                Integer id = ids.get(value);
+                if (id == null) {
+                    id = strings.size();
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    strings.add(bytes);
+                    stringBytes += bytes.length;
+                    ids.put(value, id);
+                }
+                (field == 0 ? categoryIds : descriptionIds)[i] = id;
+            }
+        }
+
+        int size = HEADER_BYTES + batch.size() * RECORD_BYTES + (strings.size() + 1) * 4 + stringBytes;
+        ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(batch.size()).putInt(strings.size());
+        for (int i = 0; i < batch.size(); i++) {
+            out.putInt(batch.day(i)).putShort((short) batch.minute(i)).putLong(batch.paise(i))
+                .putInt(categoryIds[i]).putInt(descriptionIds[i])
+                .putLong(batch.id(i) != 0 ? batch.id(i) : ExpenseIds.next());
+        }
+        int offset = 0;
+        for (byte[] bytes : strings) {
+            out.putInt(offset);
+            offset += bytes.length;
+        }
+        out.putInt(offset);
+        for (byte[] bytes : strings) {
+            out.put(bytes);
+        }
+        out.flip();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(true);
+        }
+    }
+}
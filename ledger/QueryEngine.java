@@ -0,0 +1,221 @@
+package ledger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Answers {@link LedgerQuery} filters over a {@link LedgerStore} without
+ * scanning it. Each category keeps a {@link RowBitmap} of its rows, appended
+ * as rows arrive; the rows are also kept sorted by date and by amount, so a
+ * range is two binary searches and a slice. Every restricted dimension
+ * becomes a bitmap and the bitmaps are intersected smallest first.
+ *
+ * <p>Rows appended since the last query are sorted on their own and merged
+ * into the sorted columns when the next query runs, so loading stays cheap.
+ * Removing a row shifts the row numbers after it, so everything is rebuilt
+ * from the store on the next query after a removal.
+ */
+public class QueryEngine {
+    private static final Metrics.Histogram SELECT_TIME = Metrics.histogram("query.select");
+
+    private final LedgerStore store;
+    private RowBitmap[] categoryRows = new RowBitmap[16];
+    private int[] byDay = new int[0];
+    private int[] byAmount = new int[0];
+    private int sorted;
+    private boolean stale;
+
+    QueryEngine(LedgerStore store) {
+        this.store = store;
+    }
+
+    /** Called by the store for every appended row. */
+    void add(int row, int categoryId) {
+        if (stale) return;
+        if (categoryId >= categoryRows.length) {
+            categoryRows = Arrays.copyOf(categoryRows, Math.max(categoryId + 1, categoryRows.length * 2));
+        }
+        if (categoryRows[categoryId] == null) categoryRows[categoryId] = new RowBitmap();
+        categoryRows[categoryId].append(row);
+    }
+
+    /** Called by the store when a row was removed and the rows after it shifted. */
+    void rowsShifted() {
+        stale = true;
+        sorted = 0;
+    }
+
+    /** Called by the store when every row was removed. */
+    void clearRows() {
+        Arrays.fill(categoryRows, null);
+        sorted = 0;
+        stale = false;
+    }
+
+    /** Matching rows in ascending order, or null when the query matches every row. */
+    public int[] select(LedgerQuery query) {
+        if (query.isEmpty()) return null;
+        long start = System.nanoTime();
+        try {
+            return selectRows(query);
+        } finally {
+            SELECT_TIME.recordSince(start);
+        }
+    }
+
+    private int[] selectRows(LedgerQuery query) {
+        if (stale) rebuildCategories();
+
+        List<RowBitmap> parts = new ArrayList<>();
+        if (query.categories != null) {
+            RowBitmap union = new RowBitmap();
+            for (String name : query.categories) {
+                int id = store.findCategoryId(name);
+                if (id >= 0 && id < categoryRows.length && categoryRows[id] != null) {
+                    union = union.or(categoryRows[id]);
+                }
+            }
+            parts.add(union);
+        }
+        if (query.fromDay != Integer.MIN_VALUE || query.toDay != Integer.MAX_VALUE) {
+            syncSorted();
+            int lo = firstAbove(byDay, query.fromDay - 1L, true);
+            int hi = firstAbove(byDay, query.toDay, true);
+            parts.add(RowBitmap.ofUnsorted(byDay, lo, Math.max(lo, hi), store.size()));
+        }
+        if (query.minPaise != Long.MIN_VALUE || query.maxPaise != Long.MAX_VALUE) {
+            syncSorted();
+            int lo = query.minPaise == Long.MIN_VALUE ? 0 : firstAbove(byAmount, query.minPaise - 1, false);
+            int hi = firstAbove(byAmount, query.maxPaise, false);
+            parts.add(RowBitmap.ofUnsorted(byAmount, lo, Math.max(lo, hi), store.size()));
+        }
+        if (!query.text.isBlank()) {
+            int[] rows = store.descriptionIndex().search(query.text);
+            if (rows != null) parts.add(RowBitmap.ofSorted(rows, rows.length));
+        }
+        if (parts.isEmpty()) return null;
+
+        parts.sort((a, b) -> Integer.compare(a.cardinality(), b.cardinality()));
+        RowBitmap result = parts.get(0);
+        for (int i = 1; i < parts.size() && !result.isEmpty(); i++) {
+            result = result.and(parts.get(i));
+        }
+        return result.toArray();
+    }
+
+    private void rebuildCategories() {
+        Arrays.fill(categoryRows, null);
+        stale = false;
+        for (int row = 0; row < store.size(); row++) {
+            add(row, store.categoryId(row));
+        }
+    }
+
+    // Folds rows appended since the last query into both sorted columns
+    private void syncSorted() {
+        int size = store.size();
+        if (sorted == size) return;
+        byDay = mergeTail(byDay, true);
+        byAmount = mergeTail(byAmount, false);
+        sorted = size;
+    }
+
+    private int[] mergeTail(int[] column, boolean day) {
+        int size = store.size();
+        int tail = size - sorted;
+        long[] tailKeys = new long[tail];
+        int[] tailRows = new int[tail];
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        for (int i = 0; i < tail; i++) {
+            tailRows[i] = sorted + i;
+            tailKeys[i] = key(sorted + i, day);
+            min = Math.min(min, tailKeys[i]);
+            max = Math.max(max, tailKeys[i]);
+        }
+        int rowBits = 32 - Integer.numberOfLeadingZeros(size);
+        if (tail > 0 && max - min >= 0 && max - min < 1L << (63 - rowBits)) {
+            // Pack key and row into one long so a plain primitive sort does the work
+            for (int i = 0; i < tail; i++) tailKeys[i] = (tailKeys[i] - min) << rowBits | tailRows[i];
+            Arrays.parallelSort(tailKeys);
+            long mask = (1L << rowBits) - 1;
+            for (int i = 0; i < tail; i++) {
+                tailRows[i] = (int) (tailKeys[i] & mask);
+                tailKeys[i] = (tailKeys[i] >>> rowBits) + min;
+            }
+        } else {
+            sortPairs(tailKeys, tailRows, 0, tail - 1);
+        }
+
+        int[] merged = new int[size];
+        int i = 0, j = 0, n = 0;
+        while (i < sorted && j < tail) {
+            if (key(column[i], day) <= tailKeys[j]) merged[n++] = column[i++];
+            else merged[n++] = tailRows[j++];
+        }
+        while (i < sorted) merged[n++] = column[i++];
+        while (j < tail) merged[n++] = tailRows[j++];
+        return merged;
+    }
+
+    private long key(int row, boolean day) {
+        return day ? store.day(row) : store.paise(row);
+    }
+
+    // First position among the sorted entries whose key is greater than value
+    private int firstAbove(int[] column, long value, boolean day) {
+        int lo = 0, hi = sorted;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (key(column[mid], day) <= value) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // Quicksort of rows by key, both arrays permuted together
+    private static void sortPairs(long[] keys, int[] rows, int lo, int hi) {
+        while (hi - lo > 16) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < keys[lo]) swap(keys, rows, mid, lo);
+            if (keys[hi] < keys[lo]) swap(keys, rows, hi, lo);
+            if (keys[hi] < keys[mid]) swap(keys, rows, hi, mid);
+            long pivot = keys[mid];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot) i++;
+                while (keys[j] > pivot) j--;
+                if (i <= j) swap(keys, rows, i++, j--);
+            }
+            // Recurse into the smaller side to bound the stack depth
+            if (j - lo < hi - i) {
+                sortPairs(keys, rows, lo, j);
+                lo = i;
+            } else {
+                sortPairs(keys, rows, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            long k = keys[i];
+            int r = rows[i];
+            int j = i - 1;
+            while (j >= lo && keys[j] > k) {
+                keys[j + 1] = keys[j];
+                rows[j + 1] = rows[j];
+                j--;
+            }
+            keys[j + 1] = k;
+            rows[j + 1] = r;
+        }
+    }
+
+    private static void swap(long[] keys, int[] rows, int a, int b) {
+        long k = keys[a];
+        keys[a] = keys[b];
+        keys[b] = k;
+        int r = rows[a];
+        rows[a] = rows[b];
+        rows[b] = r;
+    }
+}
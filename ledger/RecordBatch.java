@@ -0,0 +1,151 @@
+package ledger;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * A growable block of decoded rows handed from a loader thread to the store.
+ * Columns mirror {@link LedgerStore} except that category and description are
+ * still plain Strings, since pooling happens when the batch is applied.
+ * A row's id is 0 until one is assigned, see {@link #assignIds()}.
+ */
+public class RecordBatch {
+    private long[] ids;
+    private int[] days;
+    private short[] minutes;
+    private long[] amounts;
+    private String[] categories;
+    private String[] descriptions;
+    private int size;
+
+    public RecordBatch() {
+        this(64);
+    }
+
+    public RecordBatch(int capacity) {
+        ids = new long[capacity];
+        days = new int[capacity];
+        minutes = new short[capacity];
+        amounts = new long[capacity];
+        categories = new String[capacity];
+        descriptions = new String[capacity];
+    }
+
+    public void add(int epochDay, int minuteOfDay, long paise, String category, String description) {
+        add(0, epochDay, minuteOfDay, paise, category, description);
+    }
+
+    public void add(long id, int epochDay, int minuteOfDay, long paise, String category, String description) {
+        if (size == days.length) grow(size + 1);
+        ids[size] = id;
+        days[size] = epochDay;
+        minutes[size] = (short) minuteOfDay;
+        amounts[size] = paise;
+        categories[size] = category;
+        descriptions[size] = description;
+        size++;
+    }
+
+    public void addAll(RecordBatch other) {
+        grow(size + other.size);
+        System.arraycopy(other.ids, 0, ids, size, other.size);
+        System.arraycopy(other.days, 0, days, size, other.size);
+        System.arraycopy(other.minutes, 0, minutes, size, other.size);
+        System.arraycopy(other.amounts, 0, amounts, size, other.size);
+        System.arraycopy(other.categories, 0, categories, size, other.size);
+        System.arraycopy(other.descriptions, 0, descriptions, size, other.size);
+        size += other.size;
+    }
+
+    /** Appends every row to the store, returning the index of the first one. */
+    public int appendTo(LedgerStore store) {
+        int first = store.size();
+        for (int i = 0; i < size; i++) {
+            store.add(ids[i], days[i], minutes[i], amounts[i], categories[i], descriptions[i]);
+        }
+        return first;
+    }
+
+    /** A copy of rows [from, to), e.g. to hand a large batch over in pieces. */
+    public RecordBatch slice(int from, int to) {
+        RecordBatch slice = new RecordBatch(0);
+        slice.ids = Arrays.copyOfRange(ids, from, to);
+        slice.days = Arrays.copyOfRange(days, from, to);
+        slice.minutes = Arrays.copyOfRange(minutes, from, to);
+        slice.amounts = Arrays.copyOfRange(amounts, from, to);
+        slice.categories = Arrays.copyOfRange(categories, from, to);
+        slice.descriptions = Arrays.copyOfRange(descriptions, from, to);
+        slice.size = to - from;
+        return slice;
+    }
+
+    /** Gives every row without an id a fresh one, in place. */
+    public void assignIds() {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == 0) ids[i] = ExpenseIds.next();
+        }
+    }
+
+    /** Drops the rows {@code keep} rejects, keeping the rest in order. */
+    public void retain(IntPredicate keep) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!keep.test(i)) continue;
+            ids[kept] = ids[i];
+            days[kept] = days[i];
+            minutes[kept] = minutes[i];
+            amounts[kept] = amounts[i];
+            categories[kept] = categories[i];
+            descriptions[kept] = descriptions[i];
+            kept++;
+        }
+        Arrays.fill(categories, kept, size, null);
+        Arrays.fill(descriptions, kept, size, null);
+        size = kept;
+    }
+
+    public void clear() {
+        Arrays.fill(categories, 0, size, null);
+        Arrays.fill(descriptions, 0, size, null);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long id(int i) {
+        return ids[i];
+    }
+
+    public int day(int i) {
+        return days[i];
+    }
+
+    public int minute(int i) {
+        return minutes[i];
+    }
+
+    public long paise(int i) {
+        return amounts[i];
+    }
+
+    public String category(int i) {
+        return categories[i];
+    }
+
+    public String description(int i) {
+        return descriptions[i];
+    }
+
+    private void grow(int needed) {
+        if (needed <= days.length) return;
+        int capacity = Math.max(needed, days.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        days = Arrays.copyOf(days, capacity);
+        minutes = Arrays.copyOf(minutes, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        descriptions = Arrays.copyOf(descriptions, capacity);
+    }
+}
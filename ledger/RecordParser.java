@@ -0,0 +1,287 @@
+package ledger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming parser for "dd-MM-yyyy HH:mm|amount|category|description" lines,
+ * optionally followed by "|#id", and for "-#id" tombstone lines.
+ * It scans the raw UTF-8 bytes of a reusable buffer, decodes the date and
+ * the amount (as paise) from digits in place, and resolves category and
+ * description through a small pool so repeated values cost no allocation.
+ * Lines that do not decode are reported with their byte offset and line
+ * number rather than dropped silently.
+ *
+ * <p>Tombstones are passed on as they come and nothing is resolved here;
+ * {@link DayFiles#read} is the reader that drops the rows they kill.
+ *
+ * <p>Instances are not thread-safe; use one per thread.
+ */
+public final class RecordParser {
+    private static final int POOL_LIMIT = 1 << 16;
+
+    public interface Handler {
+        void record(int epochDay, int minute, long paise, String category, String description);
+
+        /** Like the plain record method, with the line's id or 0 when it carries none. */
+        default void record(long id, int epochDay, int minute, long paise, String category, String description) {
+            record(epochDay, minute, paise, category, description);
+        }
+
+        /** A "-#id" line: every earlier record of the same file with this id is dead. */
+        default void tombstone(long id) {
+        }
+
+        /** Called for a line that is not a valid record; blank lines are ignored. */
+        default void malformed(long offset, int line, String reason) {
+        }
+    }
+
+    private byte[] buffer = new byte[64 * 1024];
+    private String[] pool = new String[1024];
+    private byte[][] poolKeys = new byte[1024][];
+    private int pooled;
+
+    private String error;
+    private int day;
+    private int minute;
+    private long paise;
+
+    /** Parses the whole stream, calling the handler once per line. */
+    public void parse(InputStream in, Handler handler) throws IOException {
+        int filled = 0;
+        int scanFrom = 0;
+        long base = 0;
+        int line = 1;
+        while (true) {
+            int n = in.read(buffer, filled, buffer.length - filled);
+            boolean eof = n < 0;
+            if (!eof) filled += n;
+
+            int lineStart = 0;
+            for (int i = scanFrom; i < filled; i++) {
+                if (buffer[i] == '\n') {
+                    parseLine(buffer, lineStart, i, base + lineStart, line++, handler);
+                    lineStart = i + 1;
+                }
+            }
+            if (eof) {
+                if (lineStart < filled) parseLine(buffer, lineStart, filled, base + lineStart, line, handler);
+                return;
+            }
+
+            int rest = filled - lineStart;
+            if (lineStart == 0 && rest == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            } else {
+                System.arraycopy(buffer, lineStart, buffer, 0, rest);
+            }
+            base += lineStart;
+            filled = rest;
+            scanFrom = rest;
+        }
+    }
+
+    /** Parses a single line held as a String, e.g. a journal record. */
+    public boolean parseLine(String text, Handler handler) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        boolean[] ok = {true};
+        parseLine(bytes, 0, bytes.length, 0, 1, new Handler() {
+            @Override
+            public void record(int epochDay, int minute, long paise, String category, String description) {
+                handler.record(epochDay, minute, paise, category, description);
+            }
+
+            @Override
+            public void record(long id, int epochDay, int minute, long paise, String category, String description) {
+                handler.record(id, epochDay, minute, paise, category, description);
+            }
+
+            @Override
+            public void tombstone(long id) {
+                handler.tombstone(id);
+            }
+
+            @Override
+            public void malformed(long offset, int line, String reason) {
+                ok[0] = false;
+                handler.malformed(offset, line, reason);
+            }
+        });
+        return ok[0] && bytes.length > 0;
+    }
+
+    private void parseLine(byte[] b, int from, int to, long offset, int line, Handler handler) {
+        if (to > from && b[to - 1] == '\r') to--;
+        if (to == from) return;
+
+        if (b[from] == '-' && to - from > 1 && b[from + 1] == '#') {
+            long id = hex(b, from + 2, to);
+            if (id == 0) handler.malformed(offset, line, "invalid tombstone id");
+            else handler.tombstone(id);
+            return;
+        }
+
+        int sep1 = -1, sep2 = -1, sep3 = -1, sep4 = to, fields = 1;
+        for (int i = from; i < to; i++) {
+            if (b[i] != '|') continue;
+            if (fields == 1) sep1 = i;
+            else if (fields == 2) sep2 = i;
+            else if (fields == 3) sep3 = i;
+            else if (fields == 4) sep4 = i;
+            fields++;
+        }
+        long id = 0;
+        // An empty fifth field, a line ending in '|', is read as carrying no id
+        if (fields == 5 && sep4 + 1 < to) {
+            id = b[sep4 + 1] == '#' ? hex(b, sep4 + 2, to) : 0;
+            if (id == 0) {
+                handler.malformed(offset + sep4 + 1 - from, line, "invalid id, expected #hex");
+                return;
+            }
+        }
+        if (fields != 4 && fields != 5) {
+            handler.malformed(offset, line, "expected 4 fields but found " + fields);
+        } else if (!decodeDate(b, from, sep1)) {
+            handler.malformed(offset, line, error);
+        } else if (!decodeAmount(b, sep1 + 1, sep2)) {
+            handler.malformed(offset + sep1 + 1 - from, line, error);
+        } else if (sep3 + 1 == sep4) {
+            handler.malformed(offset + sep3 + 1 - from, line, "missing description");
+        } else {
+            handler.record(id, day, minute, paise, string(b, sep2 + 1, sep3), string(b, sep3 + 1, sep4));
+        }
+    }
+
+    private boolean decodeDate(byte[] b, int from, int to) {
+        int length = to - from;
+        if ((length != 10 && length != 16) || b[from + 2] != '-' || b[from + 5] != '-') {
+            return fail("invalid date, expected dd-MM-yyyy HH:mm");
+        }
+        int d = digits(b, from, 2);
+        int m = digits(b, from + 3, 2);
+        int y = digits(b, from + 6, 4);
+        day = d < 0 || m < 0 || y < 0 ? Integer.MIN_VALUE : LedgerDates.epochDay(y, m, d);
+        if (day == Integer.MIN_VALUE) return fail("invalid date");
+
+        minute = 0;
+        if (length == 16) {
+            int h = digits(b, from + 11, 2);
+            int mi = digits(b, from + 14, 2);
+            if (b[from + 10] != ' ' || b[from + 13] != ':' || h < 0 || h > 23 || mi < 0 || mi > 59) {
+                return fail("invalid time");
+            }
+            minute = h * 60 + mi;
+        }
+        return true;
+    }
+
+    // Fixed-point decode of [-]digits[.digits], rounding half up to whole paise
+    private boolean decodeAmount(byte[] b, int from, int to) {
+        int i = from;
+        boolean negative = i < to && b[i] == '-';
+        if (negative) i++;
+        long whole = 0;
+        int wholeDigits = 0;
+        while (i < to && b[i] >= '0' && b[i] <= '9') {
+            if (++wholeDigits > 15) return fail("amount too large");
+            whole = whole * 10 + (b[i++] - '0');
+        }
+        long fraction = 0;
+        int fractionDigits = 0;
+        boolean roundUp = false;
+        if (i < to && b[i] == '.') {
+            i++;
+            while (i < to && b[i] >= '0' && b[i] <= '9') {
+                if (fractionDigits < 2) {
+                    fraction = fraction * 10 + (b[i] - '0');
+                } else if (fractionDigits == 2) {
+                    roundUp = b[i] >= '5';
+                }
+                fractionDigits++;
+                i++;
+            }
+        }
+        if (i != to || wholeDigits + fractionDigits == 0) return fail("invalid amount");
+        if (fractionDigits == 1) fraction *= 10;
+        long value = whole * 100 + fraction + (roundUp ? 1 : 0);
+        paise = negative ? -value : value;
+        return true;
+    }
+
+    private String string(byte[] b, int from, int to) {
+        int length = to - from;
+        int hash = 1;
+        for (int i = from; i < to; i++) hash = 31 * hash + b[i];
+        int mask = pool.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (pool[slot] != null) {
+            byte[] key = poolKeys[slot];
+            if (key.length == length && Arrays.equals(key, 0, length, b, from, to)) return pool[slot];
+            slot = (slot + 1) & mask;
+        }
+
+        String value = new String(b, from, length, StandardCharsets.UTF_8);
+        if (pooled >= POOL_LIMIT) {
+            // Mostly unique descriptions; stop the pool from growing without bound
+            Arrays.fill(pool, null);
+            Arrays.fill(poolKeys, null);
+            pooled = 0;
+        } else if (pooled * 2 >= pool.length) {
+            rehash();
+        }
+        insert(value, Arrays.copyOfRange(b, from, to));
+        return value;
+    }
+
+    private void rehash() {
+        String[] oldPool = pool;
+        byte[][] oldKeys = poolKeys;
+        pool = new String[oldPool.length * 2];
+        poolKeys = new byte[oldPool.length * 2][];
+        pooled = 0;
+        for (int i = 0; i < oldPool.length; i++) {
+            if (oldPool[i] != null) insert(oldPool[i], oldKeys[i]);
+        }
+    }
+
+    private void insert(String value, byte[] key) {
+        int hash = 1;
+        for (byte v : key) hash = 31 * hash + v;
+        int mask = pool.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (pool[slot] != null) slot = (slot + 1) & mask;
+        pool[slot] = value;
+        poolKeys[slot] = key;
+        pooled++;
+    }
+
+    private boolean fail(String reason) {
+        error = reason;
+        return false;
+    }
+
+    // 1 to 16 hex digits, or 0 if there are none, too many or a non-hex byte
+    private static long hex(byte[] b, int from, int to) {
+        if (to <= from || to - from > 16) return 0;
+        long v = 0;
+        for (int i = from; i < to; i++) {
+            int c = Character.digit(b[i], 16);
+            if (c < 0) return 0;
+            v = v << 4 | c;
+        }
+        return v;
+    }
+
+    private static int digits(byte[] b, int off, int n) {
+        int v = 0;
+        for (int i = off; i < off + n; i++) {
+            int c = b[i] - '0';
+            if (c < 0 || c > 9) return -1;
+            v = v * 10 + c;
+        }
+        return v;
+    }
+}
@@ -0,0 +1,130 @@
+package ledger;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Coalesces UI refresh requests. Callers mark parts of the screen dirty with
+ * bit flags from any thread; the first mark arms a one-frame timer and every
+ * mark until it fires is merged into the same refresh. When the timer fires,
+ * the {@link Stage} captures its inputs on the EDT and returns a job that runs
+ * on a background thread, and the job's result is handed back to the EDT to
+ * update the labels. Only one job runs at a time; marks that arrive while it
+ * runs are folded into the next frame. A frame whose prepare, job or apply
+ * throws is counted as {@code refresh.failed} and dropped, and the next mark
+ * schedules a fresh one.
+ *
+ * @param <T> what the background job produces for the labels
+ */
+public class RefreshScheduler<T> {
+    public static final int FRAME_MS = 16;
+    private static final Metrics.Histogram FRAME_TIME = Metrics.histogram("refresh.frame");
+    private static final Metrics.Counter MARKS = Metrics.counter("refresh.marks");
+    private static final Metrics.Counter FAILURES = Metrics.counter("refresh.failed");
+
+    /** The two halves of a refresh. */
+    public interface Stage<T> {
+        /**
+         * Runs on the EDT with the merged dirty flags and returns the work to
+         * do off it. The job may return null when the inputs changed while it
+         * ran, in which case the same flags are scheduled again.
+         */
+        Callable<T> prepare(int dirty);
+
+        /** Runs on the EDT with the job's result. */
+        void apply(int dirty, T result);
+    }
+
+    private final Stage<T> stage;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Timer timer;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "expense-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean running;
+    private int frames;
+
+    public RefreshScheduler(Stage<T> stage) {
+        this.stage = stage;
+        timer = new Timer(FRAME_MS, e -> fire());
+        timer.setRepeats(false);
+    }
+
+    /** Marks parts dirty; safe to call from any thread and any number of times per frame. */
+    public void markDirty(int flags) {
+        MARKS.increment();
+        if (pending.getAndAccumulate(flags, (a, b) -> a | b) == 0) {
+            SwingUtilities.invokeLater(this::arm);
+        }
+    }
+
+    /** Refreshes performed so far, for diagnostics. */
+    public int frames() {
+        return frames;
+    }
+
+    public void shutdown() {
+        timer.stop();
+        worker.shutdownNow();
+    }
+
+    private void arm() {
+        if (!running && pending.get() != 0 && !timer.isRunning()) {
+            timer.restart();
+        }
+    }
+
+    private void fire() {
+        int dirty = pending.getAndSet(0);
+        if (dirty == 0) return;
+        running = true;
+        frames++;
+        long start = System.nanoTime();
+        try {
+            Callable<T> job = stage.prepare(dirty);
+            worker.execute(() -> run(job, dirty, start));
+        } catch (RuntimeException ex) {
+            running = false;
+            failed();
+        }
+    }
+
+    private void run(Callable<T> job, int dirty, long start) {
+        T result = null;
+        boolean threw = false;
+        try {
+            result = job.call();
+        } catch (Exception ex) {
+            threw = true;
+            failed();
+        }
+        T done = result;
+        boolean retry = !threw && done == null;
+        SwingUtilities.invokeLater(() -> {
+            running = false;
+            try {
+                if (retry) {
+                    markDirty(dirty);
+                } else if (done != null) {
+                    stage.apply(dirty, done);
+                    FRAME_TIME.recordSince(start);
+                }
+            } catch (RuntimeException ex) {
+                failed();
+            } finally {
+                arm();
+            }
+        });
+    }
+
+    // A failed frame drops its flags; the labels catch up on the next mark
+    private static void failed() {
+        FAILURES.increment();
+    }
+}
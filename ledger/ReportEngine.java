@@ -0,0 +1,370 @@
+package ledger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Month by category pivots, year-over-year totals and the top descriptions
+ * of a {@link LedgerStore}, computed on a fork/join pool. The rows are split
+ * in half until a range is at most {@link #LEAF_ROWS} long; each leaf sums
+ * its rows into a {@link Partial} of month buckets and description totals,
+ * and the partials are merged pairwise on the way back up. Nothing is
+ * sorted and no row is touched twice, so a report over ten million rows
+ * costs one pass divided across the cores.
+ *
+ * <p>Subcategories are rolled up into their parent, as the filters do.
+ * The engine reads the store without locking: run it off the thread that
+ * writes the store and compare {@link LedgerStore#version()} before and
+ * after, discarding the report if they differ.
+ */
+public class ReportEngine {
+    public static final int LEAF_ROWS = 64 * 1024;
+    public static final int DEFAULT_TOP = 10;
+    private static final Metrics.Histogram REPORT_TIME = Metrics.histogram("report");
+
+    private final ForkJoinPool pool;
+
+    public ReportEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ReportEngine(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /** Report over every row. */
+    public Report run(LedgerStore store, int top) {
+        return run(store, Integer.MIN_VALUE, Integer.MAX_VALUE, top);
+    }
+
+    /** Report over the rows dated within [fromDay, toDay], listing the {@code top} largest descriptions. */
+    public Report run(LedgerStore store, int fromDay, int toDay, int top) {
+        long start = System.nanoTime();
+        CategoryDictionary dictionary = store.categories();
+        int[] roots = new int[dictionary.size()];
+        for (int id = 0; id < roots.length; id++) roots[id] = dictionary.root(id);
+        Partial merged = pool.invoke(new Slice(store, roots, fromDay, toDay, 0, store.size()));
+        Report report = new Report(store, merged, top);
+        REPORT_TIME.recordSince(start);
+        return report;
+    }
+
+    private static final class Slice extends RecursiveTask<Partial> {
+        private final LedgerStore store;
+        private final int[] roots;
+        private final int fromDay;
+        private final int toDay;
+        private final int from;
+        private final int to;
+
+        Slice(LedgerStore store, int[] roots, int fromDay, int toDay, int from, int to) {
+            this.store = store;
+            this.roots = roots;
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= LEAF_ROWS) return leaf();
+            int mid = (from + to) >>> 1;
+            Slice left = new Slice(store, roots, fromDay, toDay, from, mid);
+            left.fork();
+            Partial right = new Slice(store, roots, fromDay, toDay, mid, to).compute();
+            return left.join().merge(right);
+        }
+
+        private Partial leaf() {
+            Partial partial = new Partial(roots.length);
+            for (int row = from; row < to; row++) {
+                int day = store.day(row);
+                if (day < fromDay || day > toDay) continue;
+                int category = store.categoryId(row);
+                // A category registered after the report started has no parent yet
+                int root = category < roots.length ? roots[category] : category;
+                partial.add(row, day, store.paise(row), root, store.descriptionId(row));
+            }
+            return partial;
+        }
+    }
+
+    /** Sums over one range of rows: a month by category grid and a total per description. */
+    private static final class Partial {
+        private int rows;
+        private int firstMonth;
+        // months[m - firstMonth][root category], rows left null until used
+        private long[][] months = new long[0][];
+        private int categories;
+        private final DescriptionTotals descriptions = new DescriptionTotals();
+
+        Partial(int categories) {
+            this.categories = categories;
+        }
+
+        void add(int row, int epochDay, long paise, int category, int description) {
+            rows++;
+            cells(LedgerDates.monthIndex(epochDay), category)[category] += paise;
+            descriptions.add(description, paise, row);
+        }
+
+        Partial merge(Partial other) {
+            if (other.rows == 0) return this;
+            if (rows == 0) return other;
+            for (int i = 0; i < other.months.length; i++) {
+                long[] cells = other.months[i];
+                if (cells == null) continue;
+                long[] into = cells(other.firstMonth + i, cells.length - 1);
+                for (int c = 0; c < cells.length; c++) into[c] += cells[c];
+            }
+            rows += other.rows;
+            descriptions.addAll(other.descriptions);
+            return this;
+        }
+
+        private long[] cells(int month, int category) {
+            if (months.length == 0) {
+                months = new long[12][];
+                firstMonth = month;
+            } else if (month < firstMonth) {
+                int shift = Math.max(firstMonth - month, months.length);
+                long[][] grown = new long[months.length + shift][];
+                System.arraycopy(months, 0, grown, shift, months.length);
+                months = grown;
+                firstMonth -= shift;
+            } else if (month - firstMonth >= months.length) {
+                months = Arrays.copyOf(months, Math.max(month - firstMonth + 1, months.length * 2));
+            }
+            if (category >= categories) categories = category + 1;
+            int i = month - firstMonth;
+            if (months[i] == null) {
+                months[i] = new long[categories];
+            } else if (months[i].length <= category) {
+                months[i] = Arrays.copyOf(months[i], categories);
+            }
+            return months[i];
+        }
+    }
+
+    /** Open-addressing map from description id to total, count and one row that has it. */
+    private static final class DescriptionTotals {
+        // Slots hold id + 1, 0 when empty; kept at most half full
+        private int[] keys = new int[256];
+        private long[] sums = new long[256];
+        private int[] counts = new int[256];
+        private int[] rows = new int[256];
+        private int size;
+
+        void add(int description, long paise, int row) {
+            add(description, paise, 1, row);
+        }
+
+        void addAll(DescriptionTotals other) {
+            for (int slot = 0; slot < other.keys.length; slot++) {
+                if (other.keys[slot] != 0) {
+                    add(other.keys[slot] - 1, other.sums[slot], other.counts[slot], other.rows[slot]);
+                }
+            }
+        }
+
+        private void add(int description, long paise, int count, int row) {
+            int mask = keys.length - 1;
+            int slot = mix(description) & mask;
+            while (keys[slot] != 0 && keys[slot] != description + 1) slot = (slot + 1) & mask;
+            if (keys[slot] == 0) {
+                keys[slot] = description + 1;
+                rows[slot] = row;
+                if (++size * 2 > keys.length) {
+                    sums[slot] = paise;
+                    counts[slot] = count;
+                    rehash();
+                    return;
+                }
+            }
+            sums[slot] += paise;
+            counts[slot] += count;
+        }
+
+        private void rehash() {
+            int[] oldKeys = keys;
+            long[] oldSums = sums;
+            int[] oldCounts = counts;
+            int[] oldRows = rows;
+            int capacity = oldKeys.length * 2;
+            keys = new int[capacity];
+            sums = new long[capacity];
+            counts = new int[capacity];
+            rows = new int[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == 0) continue;
+                int slot = mix(oldKeys[i] - 1) & mask;
+                while (keys[slot] != 0) slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                sums[slot] = oldSums[i];
+                counts[slot] = oldCounts[i];
+                rows[slot] = oldRows[i];
+            }
+        }
+
+        private static int mix(int id) {
+            int h = id * 0x9e3779b9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /** A description with its total and number of expenses. */
+    public static final class DescriptionTotal {
+        public final String description;
+        public final long paise;
+        public final int count;
+
+        DescriptionTotal(String description, long paise, int count) {
+            this.description = description;
+            this.paise = paise;
+            this.count = count;
+        }
+    }
+
+    /**
+     * A finished report. Months run from {@link #firstMonth} for
+     * {@link #months} months with no gaps; categories are the top-level ones
+     * that have rows, largest total first.
+     */
+    public static final class Report {
+        public final int rows;
+        public final long total;
+        public final int firstMonth;
+        public final int months;
+        public final List<String> categories;
+        // pivot[month - firstMonth][category column]
+        private final long[][] pivot;
+        private final long[] monthTotals;
+        private final long[] categoryTotals;
+        public final List<DescriptionTotal> top;
+
+        Report(LedgerStore store, Partial partial, int top) {
+            rows = partial.rows;
+            int used = 0;
+            int first = -1;
+            int last = -1;
+            long[] byCategory = new long[partial.categories];
+            boolean[] seen = new boolean[partial.categories];
+            for (int i = 0; i < partial.months.length; i++) {
+                long[] cells = partial.months[i];
+                if (cells == null) continue;
+                if (first < 0) first = i;
+                last = i;
+                for (int c = 0; c < cells.length; c++) {
+                    byCategory[c] += cells[c];
+                    if (cells[c] != 0) seen[c] = true;
+                }
+            }
+            // Growing the grid backwards leaves empty months before the first one
+            firstMonth = partial.firstMonth + Math.max(first, 0);
+            months = first < 0 ? 0 : last - first + 1;
+
+            List<Integer> order = new ArrayList<>();
+            for (int c = 0; c < seen.length; c++) {
+                if (seen[c]) order.add(c);
+            }
+            order.sort((a, b) -> Long.compare(byCategory[b], byCategory[a]));
+            List<String> names = new ArrayList<>(order.size());
+            int[] column = new int[partial.categories];
+            categoryTotals = new long[order.size()];
+            for (int c : order) {
+                column[c] = used;
+                categoryTotals[used++] = byCategory[c];
+                names.add(store.categoryName(c));
+            }
+            categories = Collections.unmodifiableList(names);
+
+            pivot = new long[months][used];
+            monthTotals = new long[months];
+            long sum = 0;
+            for (int m = 0; m < months; m++) {
+                long[] cells = partial.months[first + m];
+                if (cells == null) continue;
+                for (int c = 0; c < cells.length; c++) {
+                    if (!seen[c]) continue;
+                    pivot[m][column[c]] = cells[c];
+                    monthTotals[m] += cells[c];
+                }
+                sum += monthTotals[m];
+            }
+            total = sum;
+            this.top = topDescriptions(store, partial.descriptions, top);
+        }
+
+        /** Spend in a month, given as a {@link LedgerDates#monthIndex(int)}, and category column. */
+        public long cell(int monthIndex, int column) {
+            int m = monthIndex - firstMonth;
+            return m >= 0 && m < months ? pivot[m][column] : 0;
+        }
+
+        public long monthTotal(int monthIndex) {
+            int m = monthIndex - firstMonth;
+            return m >= 0 && m < months ? monthTotals[m] : 0;
+        }
+
+        public long categoryTotal(int column) {
+            return categoryTotals[column];
+        }
+
+        public int firstYear() {
+            return Math.floorDiv(firstMonth, 12);
+        }
+
+        /** Last year with rows, or one before {@link #firstYear} for an empty report. */
+        public int lastYear() {
+            return months == 0 ? firstYear() - 1 : Math.floorDiv(firstMonth + months - 1, 12);
+        }
+
+        public long yearTotal(int year) {
+            long sum = 0;
+            for (int month = 0; month < 12; month++) sum += monthTotal(year * 12 + month);
+            return sum;
+        }
+
+        /** Spend in one category column over a year. */
+        public long yearTotal(int year, int column) {
+            long sum = 0;
+            for (int month = 0; month < 12; month++) sum += cell(year * 12 + month, column);
+            return sum;
+        }
+
+        /** Change from the year before in percent, or NaN when the year before had no spend. */
+        public double yearOverYear(int year) {
+            long previous = yearTotal(year - 1);
+            return previous == 0 ? Double.NaN : (yearTotal(year) - previous) * 100.0 / previous;
+        }
+
+        private static List<DescriptionTotal> topDescriptions(LedgerStore store, DescriptionTotals totals, int top) {
+            if (top <= 0) return List.of();
+            // Min-heap of slots holding the largest totals seen so far
+            PriorityQueue<Integer> heap = new PriorityQueue<>(top + 1,
+                (a, b) -> Long.compare(totals.sums[a], totals.sums[b]));
+            for (int slot = 0; slot < totals.keys.length; slot++) {
+                if (totals.keys[slot] == 0) continue;
+                if (heap.size() < top) {
+                    heap.add(slot);
+                } else if (totals.sums[slot] > totals.sums[heap.peek()]) {
+                    heap.poll();
+                    heap.add(slot);
+                }
+            }
+            DescriptionTotal[] result = new DescriptionTotal[heap.size()];
+            for (int i = result.length - 1; i >= 0; i--) {
+                int slot = heap.poll();
+                result[i] = new DescriptionTotal(store.description(totals.rows[slot]), totals.sums[slot], totals.counts[slot]);
+            }
+            return List.of(result);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package ledger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Materialized per-day, per-category totals for a folder of expense files,
+ * kept in a rollup.dat sidecar together with a stamp of every file they
+ * were read from:
+ *
+ * <pre>
+ * R|1
+ * F|name|size|modified|dd-MM-yyyy,dd-MM-yyyy,...   (days the file holds)
+ * D|dd-MM-yyyy|category|paise|count
+ * </pre>
+ *
+ * {@link #open} compares the stamps with the folder. Days held by a new,
+ * changed or deleted file are dropped and recomputed from only the files
+ * that hold those days, so a summary after an edit parses one or two files
+ * instead of the whole history.
+ *
+ * <p>Writers never touch the sidecar: a file appended to since it was
+ * stamped no longer matches its stamp, so the next open re-reads it along
+ * with whatever another process added. The sidecar is replaced atomically,
+ * and whichever open renames last simply leaves more days to recompute.
+ */
+public class Rollup {
+    public static final String FILE_NAME = "rollup.dat";
+    private static final String HEADER = "R|1";
+
+    private static final class Stamp {
+        final long size;
+        final long modified;
+        final Set<Integer> days;
+
+        Stamp(long size, long modified, Set<Integer> days) {
+            this.size = size;
+            this.modified = modified;
+            this.days = days;
+        }
+
+        boolean matches(File file) {
+            return file.length() == size && file.lastModified() == modified;
+        }
+    }
+
+    private final File folder;
+    private final FilenameFilter expenseFiles;
+    private final TreeMap<Integer, Map<String, long[]>> days = new TreeMap<>();
+    private final Map<String, Stamp> stamps = new HashMap<>();
+    private final TreeMap<Integer, long[]> months = new TreeMap<>();
+    private final TreeMap<String, long[]> categories = new TreeMap<>();
+
+    private Rollup(File folder, FilenameFilter expenseFiles) {
+        this.folder = folder;
+        this.expenseFiles = expenseFiles;
+    }
+
+    /** Loads the sidecar and brings it up to date with the files that changed since it was written. */
+    public static Rollup open(File folder, FilenameFilter expenseFiles) throws IOException {
+        Rollup rollup = new Rollup(folder, expenseFiles);
+        if (!rollup.read()) {
+            rollup.days.clear();
+            rollup.stamps.clear();
+        }
+        if (rollup.reconcile()) {
+            rollup.write();
+        }
+        for (Map.Entry<Integer, Map<String, long[]>> day : rollup.days.entrySet()) {
+            for (Map.Entry<String, long[]> cat : day.getValue().entrySet()) {
+                rollup.total(day.getKey(), cat.getKey(), cat.getValue()[0], cat.getValue()[1]);
+            }
+        }
+        return rollup;
+    }
+
+    /** Drops the sidecar so the next {@link #open} rebuilds it from every file. */
+    public static void invalidate(File folder) {
+        new File(folder, FILE_NAME).delete();
+    }
+
+    public long total() {
+        long total = 0;
+        for (long[] month : months.values()) total += month[0];
+        return total;
+    }
+
+    public long count() {
+        long count = 0;
+        for (long[] month : months.values()) count += month[1];
+        return count;
+    }
+
+    /** Total for a {@link LedgerDates#monthIndex(int)}. */
+    public long monthTotal(int monthIndex) {
+        long[] month = months.get(monthIndex);
+        return month == null ? 0 : month[0];
+    }
+
+    /** Category name to {paise, count}, sorted by name. */
+    public Map<String, long[]> categories() {
+        return categories;
+    }
+
+    /** Month index to {paise, count}, in date order. */
+    public Map<Integer, long[]> months() {
+        return months;
+    }
+
+    private void add(int epochDay, long paise, String category) {
+        long[] day = days.computeIfAbsent(epochDay, k -> new HashMap<>()).computeIfAbsent(category, k -> new long[2]);
+        day[0] += paise;
+        day[1]++;
+    }
+
+    private void total(int epochDay, String category, long paise, long count) {
+        long[] month = months.computeIfAbsent(LedgerDates.monthIndex(epochDay), k -> new long[2]);
+        month[0] += paise;
+        month[1] += count;
+        long[] cat = categories.computeIfAbsent(category, k -> new long[2]);
+        cat[0] += paise;
+        cat[1] += count;
+    }
+
+    private boolean read() throws IOException {
+        File file = new File(folder, FILE_NAME);
+        if (!file.exists()) return false;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            if (!HEADER.equals(line)) return false;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\\|", -1);
+                if (line.startsWith("F|") && fields.length == 5) {
+                    Set<Integer> held = new HashSet<>();
+                    for (String day : fields[4].split(",")) {
+                        if (!day.isEmpty()) held.add(LedgerDates.parseDay(day, 0));
+                    }
+                    stamps.put(fields[1], new Stamp(Long.parseLong(fields[2]), Long.parseLong(fields[3]), held));
+                } else if (line.startsWith("D|") && fields.length == 5) {
+                    days.computeIfAbsent(LedgerDates.parseDay(fields[1], 0), k -> new HashMap<>())
+                        .put(fields[2], new long[] {Long.parseLong(fields[3]), Long.parseLong(fields[4])});
+                } else {
+                    return false;
+                }
+            }
+        } catch (RuntimeException ex) {
+            return false;
+        }
+        return true;
+    }
+
+    // Recomputes the days held by new, changed or deleted files; true if anything changed
+    private boolean reconcile() throws IOException {
+        File[] files = listFiles();
+        Set<String> present = new HashSet<>();
+        Set<String> changed = new HashSet<>();
+        Set<Integer> dirty = new HashSet<>();
+        for (File file : files) {
+            present.add(file.getName());
+            Stamp stamp = stamps.get(file.getName());
+            if (stamp == null || !stamp.matches(file)) {
+                changed.add(file.getName());
+                if (stamp != null) dirty.addAll(stamp.days);
+            }
+        }
+        for (Map.Entry<String, Stamp> entry : stamps.entrySet()) {
+            if (!present.contains(entry.getKey())) dirty.addAll(entry.getValue().days);
+        }
+        stamps.keySet().retainAll(present);
+        if (changed.isEmpty() && dirty.isEmpty()) return false;
+
+        days.keySet().removeAll(dirty);
+        RecordParser parser = new RecordParser();
+        for (File file : files) {
+            boolean whole = changed.contains(file.getName());
+            Stamp stamp = stamps.get(file.getName());
+            if (!whole && Collections.disjoint(stamp.days, dirty)) continue;
+            Set<Integer> held = new HashSet<>();
+            long size = file.length();
+            long modified = file.lastModified();
+            DayFiles.scan(file, parser, (day, minute, paise, category, description) -> {
+                held.add(day);
+                if (whole || dirty.contains(day)) add(day, paise, category);
+            });
+            if (whole) stamps.put(file.getName(), new Stamp(size, modified, held));
+        }
+        return true;
+    }
+
+    private void write() throws IOException {
+        // A temp file of its own, so concurrent writers never interleave in one
+        File temp = File.createTempFile(FILE_NAME + ".", ".tmp", folder);
+        StringBuilder line = new StringBuilder(128);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(temp, StandardCharsets.UTF_8))) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (Map.Entry<String, Stamp> entry : new TreeMap<>(stamps).entrySet()) {
+                Stamp stamp = entry.getValue();
+                line.setLength(0);
+                line.append("F|").append(entry.getKey()).append('|').append(stamp.size).append('|').append(stamp.modified).append('|');
+                for (int day : new TreeSet<>(stamp.days)) LedgerDates.appendDay(line, day).append(',');
+                if (!stamp.days.isEmpty()) line.setLength(line.length() - 1);
+                writer.append(line);
+                writer.newLine();
+            }
+            for (Map.Entry<Integer, Map<String, long[]>> day : days.entrySet()) {
+                for (Map.Entry<String, long[]> cat : day.getValue().entrySet()) {
+                    line.setLength(0);
+                    LedgerDates.appendDay(line.append("D|"), day.getKey()).append('|').append(cat.getKey())
+                        .append('|').append(cat.getValue()[0]).append('|').append(cat.getValue()[1]);
+                    writer.append(line);
+                    writer.newLine();
+                }
+            }
+        }
+        try {
+            Files.move(temp.toPath(), new File(folder, FILE_NAME).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    private File[] listFiles() {
+        File[] files = folder.listFiles(expenseFiles);
+        if (files == null) return new File[0];
+        Arrays.sort(files);
+        return files;
+    }
+}
@@ -0,0 +1,239 @@
+package ledger;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of row numbers in the style of a roaring bitmap. Rows are
+ * split into chunks of 65536 by their high 16 bits; a chunk holding up to
+ * {@link #ARRAY_LIMIT} rows is a sorted array of the low bits, a denser one
+ * is a plain 1024-word bitmap. Sparse categories therefore cost two bytes a
+ * row and dense ones one bit a row, and AND/OR work chunk by chunk with the
+ * cheapest algorithm for each pair of container kinds.
+ */
+public final class RowBitmap {
+    static final int ARRAY_LIMIT = 4096;
+    private static final int CHUNK_WORDS = 1024;
+
+    private int[] keys = new int[4];
+    private Object[] containers = new Object[4];
+    private int[] cards = new int[4];
+    private int count;
+
+    /** Adds a row that is greater than every row already in the set. */
+    public void append(int row) {
+        int key = row >>> 16;
+        char low = (char) row;
+        if (count == 0 || keys[count - 1] != key) {
+            if (count > 0 && keys[count - 1] > key) throw new IllegalArgumentException("Rows must ascend: " + row);
+            addContainer(key, new char[8], 0);
+        }
+        int i = count - 1;
+        Object container = containers[i];
+        if (container instanceof char[]) {
+            char[] array = (char[]) container;
+            int card = cards[i];
+            if (card > 0 && array[card - 1] >= low) throw new IllegalArgumentException("Rows must ascend: " + row);
+            if (card == ARRAY_LIMIT) {
+                long[] bits = toBits(array, card);
+                bits[low >>> 6] |= 1L << low;
+                containers[i] = bits;
+            } else {
+                if (card == array.length) containers[i] = array = Arrays.copyOf(array, card * 2);
+                array[card] = low;
+            }
+        } else {
+            long[] bits = (long[]) container;
+            bits[low >>> 6] |= 1L << low;
+        }
+        cards[i]++;
+    }
+
+    /** Builds a set from ascending rows. */
+    public static RowBitmap ofSorted(int[] rows, int length) {
+        RowBitmap bitmap = new RowBitmap();
+        for (int i = 0; i < length; i++) bitmap.append(rows[i]);
+        return bitmap;
+    }
+
+    /**
+     * Builds a set from rows in any order by setting them in a scratch bitmap
+     * over {@code [0, universe)} and compressing it, which avoids sorting.
+     */
+    public static RowBitmap ofUnsorted(int[] rows, int from, int to, int universe) {
+        long[] dense = new long[(universe + 63) >>> 6];
+        for (int i = from; i < to; i++) {
+            dense[rows[i] >>> 6] |= 1L << rows[i];
+        }
+        RowBitmap bitmap = new RowBitmap();
+        for (int start = 0; start < dense.length; start += CHUNK_WORDS) {
+            int end = Math.min(dense.length, start + CHUNK_WORDS);
+            int card = 0;
+            for (int w = start; w < end; w++) card += Long.bitCount(dense[w]);
+            if (card == 0) continue;
+            long[] bits = Arrays.copyOfRange(dense, start, start + CHUNK_WORDS);
+            bitmap.addContainer(start / CHUNK_WORDS, card <= ARRAY_LIMIT ? toArray(bits, card) : bits, card);
+        }
+        return bitmap;
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < count; i++) total += cards[i];
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /** Rows in both sets. */
+    public RowBitmap and(RowBitmap other) {
+        RowBitmap out = new RowBitmap();
+        int i = 0, j = 0;
+        while (i < count && j < other.count) {
+            if (keys[i] < other.keys[j]) i++;
+            else if (keys[i] > other.keys[j]) j++;
+            else {
+                Object a = containers[i], b = other.containers[j];
+                if (a instanceof long[] && b instanceof long[]) {
+                    out.addBits(keys[i], andBits((long[]) a, (long[]) b));
+                } else if (a instanceof char[] && b instanceof char[]) {
+                    char[] merged = new char[Math.min(cards[i], other.cards[j])];
+                    int n = andArrays((char[]) a, cards[i], (char[]) b, other.cards[j], merged);
+                    if (n > 0) out.addContainer(keys[i], merged, n);
+                } else {
+                    boolean aIsArray = a instanceof char[];
+                    char[] array = (char[]) (aIsArray ? a : b);
+                    int card = aIsArray ? cards[i] : other.cards[j];
+                    long[] bits = (long[]) (aIsArray ? b : a);
+                    char[] kept = new char[card];
+                    int n = 0;
+                    for (int k = 0; k < card; k++) {
+                        char v = array[k];
+                        if ((bits[v >>> 6] & (1L << v)) != 0) kept[n++] = v;
+                    }
+                    if (n > 0) out.addContainer(keys[i], kept, n);
+                }
+                i++;
+                j++;
+            }
+        }
+        return out;
+    }
+
+    /** Rows in either set. */
+    public RowBitmap or(RowBitmap other) {
+        RowBitmap out = new RowBitmap();
+        int i = 0, j = 0;
+        while (i < count || j < other.count) {
+            if (j == other.count || (i < count && keys[i] < other.keys[j])) {
+                out.addContainer(keys[i], copy(containers[i], cards[i]), cards[i]);
+                i++;
+            } else if (i == count || keys[i] > other.keys[j]) {
+                out.addContainer(other.keys[j], copy(other.containers[j], other.cards[j]), other.cards[j]);
+                j++;
+            } else {
+                long[] bits = containers[i] instanceof long[]
+                    ? ((long[]) containers[i]).clone() : toBits((char[]) containers[i], cards[i]);
+                Object b = other.containers[j];
+                if (b instanceof long[]) {
+                    long[] words = (long[]) b;
+                    for (int w = 0; w < CHUNK_WORDS; w++) bits[w] |= words[w];
+                } else {
+                    char[] array = (char[]) b;
+                    for (int k = 0; k < other.cards[j]; k++) bits[array[k] >>> 6] |= 1L << array[k];
+                }
+                out.addBits(keys[i], bits);
+                i++;
+                j++;
+            }
+        }
+        return out;
+    }
+
+    /** The rows in ascending order. */
+    public int[] toArray() {
+        int[] rows = new int[cardinality()];
+        int at = 0;
+        for (int i = 0; i < count; i++) {
+            int base = keys[i] << 16;
+            Object container = containers[i];
+            if (container instanceof char[]) {
+                char[] array = (char[]) container;
+                for (int k = 0; k < cards[i]; k++) rows[at++] = base | array[k];
+            } else {
+                long[] bits = (long[]) container;
+                for (int w = 0; w < CHUNK_WORDS; w++) {
+                    long word = bits[w];
+                    while (word != 0) {
+                        rows[at++] = base | (w << 6) + Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    private void addBits(int key, long[] bits) {
+        int card = 0;
+        for (long word : bits) card += Long.bitCount(word);
+        if (card == 0) return;
+        addContainer(key, card <= ARRAY_LIMIT ? toArray(bits, card) : bits, card);
+    }
+
+    private void addContainer(int key, Object container, int card) {
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, count * 2);
+            containers = Arrays.copyOf(containers, count * 2);
+            cards = Arrays.copyOf(cards, count * 2);
+        }
+        keys[count] = key;
+        containers[count] = container;
+        cards[count] = card;
+        count++;
+    }
+
+    private static Object copy(Object container, int card) {
+        return container instanceof long[] ? ((long[]) container).clone() : Arrays.copyOf((char[]) container, card);
+    }
+
+    private static long[] andBits(long[] a, long[] b) {
+        long[] out = new long[CHUNK_WORDS];
+        for (int w = 0; w < CHUNK_WORDS; w++) out[w] = a[w] & b[w];
+        return out;
+    }
+
+    private static int andArrays(char[] a, int na, char[] b, int nb, char[] out) {
+        int i = 0, j = 0, n = 0;
+        while (i < na && j < nb) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return n;
+    }
+
+    private static long[] toBits(char[] array, int card) {
+        long[] bits = new long[CHUNK_WORDS];
+        for (int k = 0; k < card; k++) bits[array[k] >>> 6] |= 1L << array[k];
+        return bits;
+    }
+
+    private static char[] toArray(long[] bits, int card) {
+        char[] array = new char[card];
+        int n = 0;
+        for (int w = 0; w < CHUNK_WORDS; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                array[n++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return array;
+    }
+}
@@ -0,0 +1,40 @@
+package ledger;
+
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Converts a data folder from per-day text files to monthly binary segments.
+ *
+ * <pre>
+ * java ledger.SegmentConverter [data folder]
+ * </pre>
+ *
+ * Run it while the tracker is closed. Pending journal records are folded in
+ * first, and the text files of each month are removed only once its segment
+ * is in place. Add -Dexpense.storage=binary when starting the tracker so new
+ * months are written as segments too.
+ */
+public final class SegmentConverter {
+    private SegmentConverter() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        File folder = new File(args.length > 0 ? args[0] : "data");
+        int before = DayFiles.list(folder).size();
+        convert(folder);
+        System.out.println("Converted " + before + " day files into "
+            + MonthSegment.list(folder).size() + " month segments in " + folder);
+    }
+
+    public static void convert(File folder) throws Exception {
+        Journal journal = new Journal(folder, Journal.FsyncPolicy.ALWAYS);
+        try {
+            journal.convertToSegments().get();
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+        } finally {
+            journal.close();
+        }
+    }
+}
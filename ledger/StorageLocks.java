@@ -0,0 +1,222 @@
+package ledger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Month-level write locks and version counters shared by every process that
+ * writes a data folder. Each month owns an 8-byte region of storage.lock,
+ * which is both the region locked with {@link FileChannel#lock} and the
+ * little-endian counter bumped after every rewrite of the month's files.
+ *
+ * <p>File locks belong to the whole process and cannot overlap within it,
+ * so threads first take one of {@link #STRIPES} in-process locks chosen by
+ * month. Writers to different months therefore proceed in parallel, both
+ * across threads and across processes. A writer compares the version it
+ * last saw with the one it finds under the lock to tell whether somebody
+ * else rewrote the month in between.
+ *
+ * <p>Far past the month regions, each running process also holds a one-byte
+ * region at {@link #LIVE_BASE} plus its pid, so others can tell a journal
+ * left by a dead process from one that is still in use.
+ */
+public final class StorageLocks {
+    public static final String FILE_NAME = "storage.lock";
+    static final int STRIPES = 64;
+    static final long LIVE_BASE = 1L << 40;
+
+    private static final Map<String, StorageLocks> OPEN = new ConcurrentHashMap<>();
+    private static final Metrics.Histogram WAIT_TIME = Metrics.histogram("storage.lock.wait");
+
+    private final FileChannel channel;
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private FileLock alive;
+
+    private StorageLocks(File folder) throws IOException {
+        folder.mkdirs();
+        channel = FileChannel.open(new File(folder, FILE_NAME).toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new ReentrantLock();
+    }
+
+    /**
+     * The locks of a folder, shared by everything in this process that uses
+     * it. Closing the channel would drop every lock the process holds on the
+     * file, so it stays open for the life of the process.
+     */
+    public static StorageLocks of(File folder) throws IOException {
+        String key = folder.getCanonicalPath();
+        StorageLocks locks = OPEN.get(key);
+        if (locks != null) return locks;
+        synchronized (OPEN) {
+            locks = OPEN.get(key);
+            if (locks == null) {
+                locks = new StorageLocks(folder);
+                OPEN.put(key, locks);
+            }
+            return locks;
+        }
+    }
+
+    /** Exclusive hold on a set of months, released by {@link #close()}. */
+    public final class Held implements AutoCloseable {
+        private final List<ReentrantLock> taken = new ArrayList<>();
+        private final List<FileLock> regions = new ArrayList<>();
+
+        private Held() {
+        }
+
+        /** Version of a held month as of now. */
+        public long version(int monthIndex) throws IOException {
+            return read(monthIndex);
+        }
+
+        /** Stores a version chosen with {@link #nextVersion} for a held month. */
+        public void set(int monthIndex, long version) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, version);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position(monthIndex) + buffer.position());
+            }
+        }
+
+        /** Moves a held month to a new version after rewriting or appending to its files. */
+        public long bump(int monthIndex) throws IOException {
+            long version = nextVersion(read(monthIndex));
+            set(monthIndex, version);
+            return version;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                for (FileLock region : regions) region.release();
+            } finally {
+                for (int i = taken.size() - 1; i >= 0; i--) taken.get(i).unlock();
+            }
+        }
+    }
+
+    /** Locks one month. */
+    public Held lock(int monthIndex) throws IOException {
+        TreeSet<Integer> months = new TreeSet<>();
+        months.add(monthIndex);
+        return lock(months);
+    }
+
+    /**
+     * Locks several months. Stripes are taken in stripe order and file
+     * regions in month order, so two writers locking overlapping sets can
+     * never deadlock.
+     */
+    public Held lock(Iterable<Integer> monthIndexes) throws IOException {
+        TreeSet<Integer> months = new TreeSet<>();
+        TreeSet<Integer> stripeIds = new TreeSet<>();
+        for (int month : monthIndexes) {
+            months.add(month);
+            stripeIds.add(Math.floorMod(month, STRIPES));
+        }
+        long start = System.nanoTime();
+        Held held = new Held();
+        try {
+            for (int stripe : stripeIds) {
+                stripes[stripe].lock();
+                held.taken.add(stripes[stripe]);
+            }
+            for (int month : months) {
+                held.regions.add(channel.lock(position(month), 8, false));
+            }
+        } catch (IOException | RuntimeException ex) {
+            held.close();
+            throw ex;
+        }
+        WAIT_TIME.recordSince(start);
+        return held;
+    }
+
+    /** Locks every month at once, e.g. to clear the folder. */
+    public Held lockAll() throws IOException {
+        long start = System.nanoTime();
+        Held held = new Held();
+        try {
+            for (ReentrantLock stripe : stripes) {
+                stripe.lock();
+                held.taken.add(stripe);
+            }
+            held.regions.add(channel.lock(0, LIVE_BASE, false));
+        } catch (IOException | RuntimeException ex) {
+            held.close();
+            throw ex;
+        }
+        WAIT_TIME.recordSince(start);
+        return held;
+    }
+
+    /**
+     * A version to follow {@code current}. Versions are only ever compared
+     * for equality; the random step keeps two writers that both start from
+     * the same version, e.g. one of them after a crash, from ever writing
+     * the same value.
+     */
+    public static long nextVersion(long current) {
+        return current + 1 + ThreadLocalRandom.current().nextInt(1 << 20);
+    }
+
+    /** Marks this process as running for as long as it lives. */
+    public synchronized void claimProcess() throws IOException {
+        if (alive == null) alive = channel.lock(LIVE_BASE + ProcessHandle.current().pid(), 1, false);
+    }
+
+    /**
+     * Claims the region of process {@code pid}, or returns null while that
+     * process is still running or somebody else holds the claim.
+     */
+    public FileLock claimDeadProcess(long pid) throws IOException {
+        try {
+            return channel.tryLock(LIVE_BASE + pid, 1, false);
+        } catch (OverlappingFileLockException ex) {
+            return null;
+        }
+    }
+
+    /** Current version of every month that was ever rewritten, read without locking. */
+    public Map<Integer, Long> versions() throws IOException {
+        Map<Integer, Long> versions = new HashMap<>();
+        long size = Math.min(channel.size(), LIVE_BASE);
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE)).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+            // Reads the whole file; it is 8 bytes a month
+        }
+        for (int at = 0; at + 8 <= buffer.position(); at += 8) {
+            long version = buffer.getLong(at);
+            if (version != 0) versions.put(at / 8, version);
+        }
+        return versions;
+    }
+
+    private long read(int monthIndex) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        long position = position(monthIndex);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) return 0;
+        }
+        return buffer.getLong(0);
+    }
+
+    private static long position(int monthIndex) {
+        return Math.max(0, monthIndex) * 8L;
+    }
+}
@@ -0,0 +1,170 @@
+package ledger;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Distinct descriptions of a {@link LedgerStore} numbered in order of first
+ * use. Chosen together with the {@link LedgerColumns}: on the heap it is a
+ * list and a map; off the heap the UTF-8 bytes, their offsets and an
+ * open-addressing hash table all sit in direct buffers, and {@link #get}
+ * decodes a short-lived String on each call.
+ */
+interface StringPool {
+    static StringPool create() {
+        return LedgerColumns.offHeapByDefault() ? new OffHeap() : new Heap();
+    }
+
+    /** Id of {@code value}, adding it if it is new. */
+    int intern(String value);
+
+    String get(int id);
+
+    int size();
+
+    long offHeapBytes();
+
+    final class Heap implements StringPool {
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        @Override
+        public int intern(String value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                values.add(value);
+                ids.put(value, id);
+            }
+            return id;
+        }
+
+        @Override
+        public String get(int id) {
+            return values.get(id);
+        }
+
+        @Override
+        public int size() {
+            return values.size();
+        }
+
+        @Override
+        public long offHeapBytes() {
+            return 0;
+        }
+    }
+
+    final class OffHeap implements StringPool {
+        private ByteBuffer bytes = direct(16 * 1024);
+        // Start of every value, plus the end of the last one
+        private ByteBuffer offsets = direct(1024 * 4);
+        private ByteBuffer hashes = direct(1024 * 4);
+        // Slots hold id + 1, 0 when empty; kept at most half full
+        private ByteBuffer table = direct(2048 * 4);
+        private int slots = 2048;
+        private int size;
+        private int end;
+
+        @Override
+        public int intern(String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            int hash = value.hashCode();
+            int mask = slots - 1;
+            int slot = mix(hash) & mask;
+            while (true) {
+                int entry = table.getInt(slot << 2);
+                if (entry == 0) break;
+                int id = entry - 1;
+                if (hashes.getInt(id << 2) == hash && matches(id, encoded)) return id;
+                slot = (slot + 1) & mask;
+            }
+
+            int id = size;
+            ensureBytes(end + encoded.length);
+            bytes.put(end, encoded);
+            if ((id + 2) * 4 > offsets.capacity()) {
+                offsets = copy(offsets, offsets.capacity() * 2);
+                hashes = copy(hashes, hashes.capacity() * 2);
+            }
+            offsets.putInt(id << 2, end);
+            end += encoded.length;
+            offsets.putInt((id + 1) << 2, end);
+            hashes.putInt(id << 2, hash);
+            table.putInt(slot << 2, id + 1);
+            size++;
+            if (size * 2 > slots) rehash(slots * 2);
+            return id;
+        }
+
+        @Override
+        public String get(int id) {
+            int start = offsets.getInt(id << 2);
+            byte[] value = new byte[offsets.getInt((id + 1) << 2) - start];
+            bytes.get(start, value);
+            return new String(value, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public long offHeapBytes() {
+            return (long) bytes.capacity() + offsets.capacity() + hashes.capacity() + table.capacity();
+        }
+
+        private boolean matches(int id, byte[] encoded) {
+            int start = offsets.getInt(id << 2);
+            if (offsets.getInt((id + 1) << 2) - start != encoded.length) return false;
+            for (int i = 0; i < encoded.length; i++) {
+                if (bytes.get(start + i) != encoded[i]) return false;
+            }
+            return true;
+        }
+
+        private void ensureBytes(int needed) {
+            if (needed <= bytes.capacity()) return;
+            long grown = Math.max(needed, (long) bytes.capacity() * 2);
+            if (grown > Integer.MAX_VALUE) {
+                if (needed < 0) throw new IllegalStateException("Description pool is full");
+                grown = Integer.MAX_VALUE;
+            }
+            bytes = copy(bytes, (int) grown);
+        }
+
+        private void rehash(int newSlots) {
+            ByteBuffer grown = direct(newSlots * 4);
+            int mask = newSlots - 1;
+            for (int id = 0; id < size; id++) {
+                int slot = mix(hashes.getInt(id << 2)) & mask;
+                while (grown.getInt(slot << 2) != 0) slot = (slot + 1) & mask;
+                grown.putInt(slot << 2, id + 1);
+            }
+            table = grown;
+            slots = newSlots;
+        }
+
+        // Spreads String.hashCode, whose low bits are poor for short keys
+        private static int mix(int hash) {
+            hash = (hash ^ (hash >>> 16)) * 0x45d9f3b;
+            return hash ^ (hash >>> 16);
+        }
+
+        private static ByteBuffer direct(int capacity) {
+            return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+        }
+
+        private static ByteBuffer copy(ByteBuffer from, int capacity) {
+            ByteBuffer to = direct(capacity);
+            to.put(0, from, 0, from.capacity());
+            return to;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package ledger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class CategorizerTest {
+    private final Categorizer categorizer = Categorizer.defaults();
+
+    @Test
+    void keywordsMatchWholeWordsOfANarration() {
+        assertEquals("Food & Dining", categorizer.categorize("UPI/ZOMATO/1234"));
+        assertEquals("Transport", categorizer.categorize("IRCTC E-TICKET"));
+        assertEquals("Transport", categorizer.categorize("OLA CABS"));
+        assertEquals("Mobile/Internet", categorizer.categorize("VI prepaid"));
+        assertEquals("Clothing", categorizer.categorize("H&M store"));
+        assertEquals("Bills & Utilities", categorizer.categorize("Water bill March"));
+    }
+
+    @Test
+    void keywordsInsideOtherWordsDoNotMatch() {
+        assertEquals(Categorizer.FALLBACK, categorizer.categorize("LIC PREMIUM"));
+        assertEquals(Categorizer.FALLBACK, categorizer.categorize("Parent teacher meet"));
+        assertEquals(Categorizer.FALLBACK, categorizer.categorize("Coca Cola"));
+        assertEquals(Categorizer.FALLBACK, categorizer.categorize("Business lunch"));
+        assertEquals(Categorizer.FALLBACK, categorizer.categorize("Gossip magazine"));
+        assertEquals(Categorizer.FALLBACK, categorizer.categorize("Las Vegas trip"));
+        assertEquals(Categorizer.FALLBACK, categorizer.categorize("Water heater bill"));
+    }
+
+    @Test
+    void theFirstRuleWithAMatchWins() {
+        // "bus" is a Transport keyword and "school" an Education one, and Transport comes first
+        assertEquals("Transport", categorizer.categorize("School bus fees"));
+        assertEquals("Gifts", categorizer.categorize("Birthday gifts"));
+    }
+}
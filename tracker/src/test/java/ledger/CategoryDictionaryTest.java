@@ -0,0 +1,60 @@
+package ledger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CategoryDictionaryTest {
+    @TempDir
+    File folder;
+
+    private CategoryDictionary load(String text, List<MalformedLine> skipped) throws IOException {
+        File file = new File(folder, CategoryDictionary.FILE_NAME);
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        CategoryDictionary dictionary = new CategoryDictionary(file);
+        dictionary.load(skipped);
+        return dictionary;
+    }
+
+    @Test
+    void withoutAFileTheBuiltInCategoriesAreDefined() throws IOException {
+        CategoryDictionary dictionary = new CategoryDictionary(new File(folder, CategoryDictionary.FILE_NAME));
+        List<MalformedLine> skipped = new ArrayList<>();
+        dictionary.load(skipped);
+        assertEquals(CategoryDictionary.DEFAULTS, dictionary.definedNames());
+        assertEquals(List.of(), skipped);
+    }
+
+    @Test
+    void invalidLinesAreSkippedAndTheRestLoads() throws IOException {
+        List<MalformedLine> skipped = new ArrayList<>();
+        CategoryDictionary dictionary = load("# comment\nFood\nSnacks|Food\nFood|Other\n\nTea|Snacks\n|Food\nRent\n",
+            skipped);
+
+        assertEquals(List.of("Food", "Snacks", "Other", "Rent"), dictionary.definedNames());
+        assertEquals(dictionary.find("Food"), dictionary.parent(dictionary.find("Snacks")));
+        assertEquals(-1, dictionary.parent(dictionary.find("Food")));
+        assertEquals(List.of(4, 6, 7), skipped.stream().map(line -> line.line).toList());
+        assertEquals(List.of(27L, 39L, 50L), skipped.stream().map(line -> line.offset).toList());
+        assertEquals("Food has subcategories of its own", skipped.get(0).reason);
+    }
+
+    @Test
+    void savedCategoriesLoadBackUnderTheirParents() throws IOException {
+        List<MalformedLine> skipped = new ArrayList<>();
+        CategoryDictionary dictionary = load("Snacks|Food\nBus|Transport\n", skipped);
+        dictionary.save();
+
+        CategoryDictionary reloaded = new CategoryDictionary(new File(folder, CategoryDictionary.FILE_NAME));
+        reloaded.load(skipped);
+        assertEquals(List.of("Food", "Snacks", "Transport", "Bus"), reloaded.definedNames());
+        assertEquals(List.of(), skipped);
+    }
+}
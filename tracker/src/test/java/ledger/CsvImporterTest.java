@@ -0,0 +1,66 @@
+package ledger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CsvImporterTest {
+    private static final CsvImporter.Mapping MAPPING = CsvImporter.Mapping.parse(CsvImporter.Mapping.DEFAULT_SPEC);
+
+    @TempDir
+    File folder;
+
+    private final RecordBatch imported = new RecordBatch();
+
+    private CsvImporter.Result run(String text) throws IOException, InterruptedException {
+        File csv = new File(folder, "statement.csv");
+        Files.write(csv.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return new CsvImporter(Categorizer.defaults()).run(csv, MAPPING, imported::addAll, null);
+    }
+
+    @Test
+    void splitKeepsQuotedDelimitersAndQuotes() {
+        List<String> fields = new ArrayList<>();
+        CsvImporter.split("01-02-2025,\"1,200.50\",\"Rent, \"\"Feb\"\"\",", ',', fields);
+        assertEquals(List.of("01-02-2025", "1,200.50", "Rent, \"Feb\"", ""), fields);
+
+        CsvImporter.split("a\t\"b\tc\"", '\t', fields);
+        assertEquals(List.of("a", "b\tc"), fields);
+    }
+
+    @Test
+    void linesAcrossReadBlocksAreImportedOnce() throws IOException, InterruptedException {
+        // Well past one 256 KB read block, with one line longer than a whole block
+        StringBuilder csv = new StringBuilder("date,amount,description\n");
+        int rows = 20_000;
+        long expected = 0;
+        for (int i = 1; i <= rows; i++) {
+            String description = i == rows / 2 ? "x".repeat(300_000) : "Item " + i + ", shop " + (i % 7);
+            csv.append("01-02-2025,").append(i).append(",\"").append(description).append("\"\r\n");
+            expected += i * 100L;
+        }
+        csv.append("bad date,5,Tea\n");
+        CsvImporter.Result result = run(csv.toString());
+
+        assertEquals(rows, result.imported);
+        assertEquals(rows, imported.size());
+        long total = 0;
+        for (int i = 0; i < imported.size(); i++) total += imported.paise(i);
+        assertEquals(expected, total);
+        assertEquals("Item 1, shop 1", imported.description(0));
+        assertEquals(300_000, imported.description(rows / 2 - 1).length());
+        assertEquals("Item " + rows + ", shop " + (rows % 7), imported.description(rows - 1));
+
+        assertEquals(1, result.malformedCount);
+        MalformedLine bad = result.malformed.get(0);
+        assertEquals(rows + 2, bad.line);
+        assertEquals(csv.length() - "bad date,5,Tea\n".length(), bad.offset);
+    }
+}
@@ -0,0 +1,67 @@
+package ledger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DayFilesTest {
+    private static final int DAY = LedgerDates.epochDay(2025, 10, 31);
+
+    @TempDir
+    File folder;
+
+    private File cliFile(int epochDay) {
+        return new File(folder, LedgerDates.formatDay(epochDay) + ".txt");
+    }
+
+    private List<String> scan(File file) throws IOException {
+        List<String> rows = new ArrayList<>();
+        DayFiles.scan(file, new RecordParser(), new RecordParser.Handler() {
+            @Override
+            public void record(int epochDay, int minute, long paise, String category, String description) {
+                rows.add(description);
+            }
+
+            @Override
+            public void record(long id, int epochDay, int minute, long paise, String category, String description) {
+                assertNotEquals(0, id);
+                rows.add(description + "@" + LedgerDates.formatDay(epochDay));
+            }
+        });
+        return rows;
+    }
+
+    @Test
+    void appendWritesEachDayOnceWithIdsAndBumpsItsMonth() throws IOException {
+        RecordBatch rows = new RecordBatch();
+        rows.add(DAY + 1, 60, 10_00, "Food", "चाय");
+        rows.add(DAY, 61, 20_00, "Food", "Coffee");
+        rows.add(DAY + 1, 62, 30_00, "Transport", "Bus");
+        long written = DayFiles.append(folder, this::cliFile, rows);
+
+        assertEquals(cliFile(DAY).length() + cliFile(DAY + 1).length(), written);
+        assertEquals(List.of("Coffee@31-10-2025"), scan(cliFile(DAY)));
+        assertEquals(List.of("चाय@01-11-2025", "Bus@01-11-2025"), scan(cliFile(DAY + 1)));
+        assertNotEquals(0, rows.id(0));
+
+        Map<Integer, Long> versions = StorageLocks.of(folder).versions();
+        assertEquals(2, versions.size());
+        RecordBatch more = new RecordBatch();
+        more.add(DAY, 63, 5_00, "Food", "Tea");
+        DayFiles.append(folder, this::cliFile, more);
+        assertNotEquals(versions.get(LedgerDates.monthIndex(DAY)),
+            StorageLocks.of(folder).versions().get(LedgerDates.monthIndex(DAY)));
+        assertEquals(List.of("Coffee@31-10-2025", "Tea@31-10-2025"), scan(cliFile(DAY)));
+        assertEquals(2, new String(Files.readAllBytes(cliFile(DAY).toPath()), StandardCharsets.UTF_8)
+            .split("\n").length);
+    }
+}
@@ -0,0 +1,83 @@
+package ledger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class DayTotalsTest {
+    private static final int SPAN = 2_000;
+    private static final int CATEGORIES = 5;
+
+    // Reference totals per day and category, offset so SPAN days fit either side of the start
+    private final long[][] expected = new long[CATEGORIES][2 * SPAN];
+
+    private long expectedSum(int from, int to, int category) {
+        long sum = 0;
+        for (int day = Math.max(from, -SPAN); day <= Math.min(to, SPAN - 1); day++) {
+            if (category >= 0) {
+                sum += expected[category][day + SPAN];
+            } else {
+                for (long[] byDay : expected) sum += byDay[day + SPAN];
+            }
+        }
+        return sum;
+    }
+
+    @Test
+    void rangeSumsMatchAScanWhileTheWindowGrowsBothWays() {
+        Random random = new Random(13);
+        DayTotals totals = new DayTotals();
+        // Days spread out from the first one seen, so the trees regrow backwards and forwards
+        for (int i = 0; i < 20_000; i++) {
+            int spread = Math.min(SPAN, 8 + i / 8);
+            int day = random.nextInt(2 * spread) - spread;
+            int category = random.nextInt(CATEGORIES);
+            long paise = 1 + random.nextInt(10_000);
+            if (random.nextInt(4) == 0) {
+                totals.remove(day, paise, category);
+                expected[category][day + SPAN] -= paise;
+            } else {
+                totals.add(day, paise, category);
+                expected[category][day + SPAN] += paise;
+            }
+            if (i % 997 == 0) assertRanges(random, totals);
+        }
+        assertRanges(random, totals);
+    }
+
+    private void assertRanges(Random random, DayTotals totals) {
+        for (int i = 0; i < 50; i++) {
+            int from = random.nextInt(2 * SPAN + 200) - SPAN - 100;
+            int to = from + random.nextInt(400);
+            assertEquals(expectedSum(from, to, -1), totals.sum(from, to), from + ".." + to);
+            int category = random.nextInt(CATEGORIES);
+            assertEquals(expectedSum(from, to, category), totals.sum(from, to, category), from + ".." + to);
+        }
+        assertEquals(expectedSum(-SPAN, SPAN, -1), totals.sum(Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1));
+    }
+
+    @Test
+    void emptyUnknownAndClearedTotalsAreZero() {
+        DayTotals totals = new DayTotals();
+        assertEquals(0, totals.sum(0, 100));
+        totals.add(10, 500, 2);
+        assertEquals(500, totals.sum(10, 10));
+        assertEquals(0, totals.sum(11, 100));
+        assertEquals(0, totals.sum(0, 100, 7));
+        assertEquals(0, totals.sum(20, 10));
+        totals.clear();
+        assertEquals(0, totals.sum(0, 100));
+        totals.add(-40_000, 300, 0);
+        assertEquals(300, totals.sum(-40_000, -40_000, 0));
+    }
+
+    @Test
+    void dailyAverageCoversTheDaysEndingWithTheLastOne() {
+        DayTotals totals = new DayTotals();
+        totals.add(100, 7_00, 0);
+        totals.add(94, 7_00, 1);
+        totals.add(93, 1_000_00, 1);
+        assertEquals(2_00, totals.dailyAverage(100, 7));
+    }
+}
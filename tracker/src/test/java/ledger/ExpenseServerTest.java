@@ -0,0 +1,77 @@
+package ledger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExpenseServerTest {
+    @TempDir
+    File folder;
+
+    private static final int DAY = LedgerDates.epochDay(2025, 10, 30);
+
+    private static ExpenseServer start(File folder) throws IOException {
+        return ExpenseServer.start(folder, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+    private static HttpURLConnection get(ExpenseServer server, String path) throws IOException {
+        URL url = new URL("http", "127.0.0.1", server.address().getPort(), path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.getResponseCode();
+        return connection;
+    }
+
+    private static int status(ExpenseServer server, String path) throws IOException {
+        HttpURLConnection connection = get(server, path);
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String count(ExpenseServer server, String path) throws IOException {
+        HttpURLConnection connection = get(server, path);
+        try {
+            return connection.getHeaderField("X-Total-Count");
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    void badDatesInAQueryAreRejectedAsBadRequests() throws IOException {
+        try (ExpenseServer server = start(folder)) {
+            assertEquals(200, status(server, "/summary?from=01-10-2025&to=31-10-2025"));
+            assertEquals(400, status(server, "/summary?from=1"));
+            assertEquals(400, status(server, "/expenses?to=31-10"));
+            assertEquals(400, status(server, "/expenses?from=31-02-2025"));
+        }
+    }
+
+    @Test
+    void aCategoryFilterTakesInTheSubcategoriesOfTheFoldersDictionary() throws IOException {
+        Files.write(new File(folder, CategoryDictionary.FILE_NAME).toPath(),
+            "Food\nSnacks|Food\n".getBytes(StandardCharsets.UTF_8));
+        StringBuilder rows = new StringBuilder();
+        DayFiles.appendLine(rows, 1, DAY, 60, 10_00, "Food", "Lunch").append('\n');
+        DayFiles.appendLine(rows, 2, DAY, 61, 20_00, "Snacks", "Chips").append('\n');
+        DayFiles.appendLine(rows, 3, DAY, 62, 30_00, "Transport", "Bus").append('\n');
+        Files.write(DayFiles.dayFile(folder, DAY).toPath(), rows.toString().getBytes(StandardCharsets.UTF_8));
+
+        try (ExpenseServer server = start(folder)) {
+            assertEquals("2", count(server, "/expenses?category=Food"));
+            assertEquals("1", count(server, "/expenses?category=Snacks"));
+            assertEquals("3", count(server, "/expenses"));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ledger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JournalTest {
+    private static final int DAY = LedgerDates.epochDay(2025, 10, 30);
+    // The log a process that is no longer running left behind
+    private static final String DEAD_LOG = Journal.LOG_PREFIX + "-999999999" + Journal.LOG_SUFFIX;
+    private static final String DEAD_MARKER = Journal.LOG_PREFIX + "-999999999" + Journal.MARKER_SUFFIX;
+
+    @TempDir
+    File folder;
+
+    private RecordBatch rows(int epochDay) throws IOException {
+        List<MalformedLine> malformed = new ArrayList<>();
+        RecordBatch rows = LedgerLoader.readDayFile(DayFiles.dayFile(folder, epochDay), malformed);
+        assertEquals(List.of(), malformed);
+        return rows;
+    }
+
+    private static List<String> descriptions(RecordBatch rows) {
+        List<String> descriptions = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) descriptions.add(rows.description(i));
+        return descriptions;
+    }
+
+    private static String record(long id, int minute, long paise, String description) {
+        return DayFiles.appendLine(new StringBuilder(), id, DAY, minute, paise, "Food", description).toString();
+    }
+
+    private void write(String name, String text) throws IOException {
+        Files.write(new File(folder, name).toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void closeFoldsAddsDeletesAndEditsIntoTheDayFile() throws IOException {
+        try (Journal journal = new Journal(folder, Journal.FsyncPolicy.NEVER)) {
+            journal.add(1, DAY, 600, 100_00, "Food", "Breakfast").join();
+            journal.add(2, DAY, 780, 250_00, "Food", "Lunch").join();
+            journal.add(3, DAY, 1200, 400_00, "Food", "Dinner").join();
+            journal.delete(2, DAY, 780, 250_00, "Food", "Lunch").join();
+            journal.edit(3, DAY, 1200, 400_00, "Food", "Dinner", DAY, 1230, 450_00, "Food", "Late dinner").join();
+        }
+        RecordBatch rows = rows(DAY);
+        assertEquals(List.of("Breakfast", "Late dinner"), descriptions(rows));
+        assertEquals(450_00, rows.paise(1));
+        assertEquals(3, rows.id(1));
+    }
+
+    @Test
+    void deletesOfCompactedRowsBecomeTombstones() throws IOException {
+        try (Journal journal = new Journal(folder, Journal.FsyncPolicy.NEVER)) {
+            for (int i = 1; i <= 8; i++) journal.add(i, DAY, i, i * 100, "Food", "Item " + i).join();
+            journal.compact().join();
+            journal.delete(4, DAY, 4, 400, "Food", "Item 4").join();
+        }
+        assertEquals(List.of("Item 1", "Item 2", "Item 3", "Item 5", "Item 6", "Item 7", "Item 8"),
+            descriptions(rows(DAY)));
+        String text = Files.readString(DayFiles.dayFile(folder, DAY).toPath(), StandardCharsets.UTF_8);
+        assertEquals(1, text.lines().filter(line -> line.startsWith("-#")).count());
+    }
+
+    @Test
+    void foldsIntoADayFileWhoseLinesEndInASeparator() throws IOException {
+        write(DayFiles.dayFile(folder, DAY).getName(), "30-10-2025 09:00|5.00|Food|Tea|\n");
+        try (Journal journal = new Journal(folder, Journal.FsyncPolicy.NEVER)) {
+            journal.add(DAY, 600, 20_00, "Food", "Coffee").join();
+        }
+        assertEquals(List.of("Tea", "Coffee"), descriptions(rows(DAY)));
+    }
+
+    @Test
+    void theLogOfAProcessThatDiedIsReplayedOnOpen() throws IOException {
+        write(DEAD_LOG, "A|" + record(1, 60, 10_00, "Tea") + "\n"
+            + "A|" + record(2, 61, 20_00, "Coffee") + "\n"
+            + "D|" + record(1, 60, 10_00, "Tea") + "\n"
+            + "A|30-10-2025 10:0");
+        new Journal(folder, Journal.FsyncPolicy.NEVER).close();
+
+        assertEquals(List.of("Coffee"), descriptions(rows(DAY)));
+        assertFalse(new File(folder, DEAD_LOG).exists());
+    }
+
+    @Test
+    void aCompactionInterruptedAfterItsMarkerIsFinishedOnceWithoutReplayingTheLog() throws IOException {
+        File day = DayFiles.dayFile(folder, DAY);
+        String existing = record(1, 60, 10_00, "Tea") + "\n";
+        String appended = record(2, 61, 20_00, "Coffee") + "\n";
+        write(day.getName(), existing);
+        // The crash left the log, its marker and the staged append, but nothing was installed
+        write(DEAD_LOG, "A|" + appended);
+        write(day.getName() + "." + DEAD_LOG + ".tmp", appended);
+        long before = existing.length();
+        long after = before + appended.length();
+        write(DEAD_MARKER, "M|" + LedgerDates.monthIndex(DAY) + "|0|1\n"
+            + "P|" + day.getName() + "|" + before + "|" + after + "\n");
+
+        new Journal(folder, Journal.FsyncPolicy.NEVER).close();
+
+        assertEquals(List.of("Tea", "Coffee"), descriptions(rows(DAY)));
+        assertFalse(new File(folder, DEAD_MARKER).exists());
+        assertFalse(new File(folder, day.getName() + "." + DEAD_LOG + ".tmp").exists());
+    }
+
+    @Test
+    void aFailedCompactionFailsOnlyItsOwnCaller() throws IOException {
+        try (Journal journal = new Journal(folder, Journal.FsyncPolicy.NEVER)) {
+            journal.setInstallListener(file -> {
+                throw new IllegalStateException("listener failed");
+            });
+            journal.add(1, DAY, 60, 10_00, "Food", "Tea").join();
+            CompletionException failed = assertThrows(CompletionException.class, () -> journal.compact().join());
+            assertEquals("listener failed", failed.getCause().getMessage());
+
+            journal.setInstallListener(file -> { });
+            journal.add(2, DAY, 61, 20_00, "Food", "Coffee").join();
+        }
+        assertEquals(List.of("Tea", "Coffee"), descriptions(rows(DAY)));
+    }
+
+    @Test
+    void writesAreRefusedOnceClosed() throws IOException {
+        Journal journal = new Journal(folder, Journal.FsyncPolicy.NEVER);
+        journal.close();
+        assertTrue(journal.add(DAY, 0, 100, "Food", "Late").isCompletedExceptionally());
+    }
+}
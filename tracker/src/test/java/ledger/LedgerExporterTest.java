@@ -0,0 +1,78 @@
+package ledger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LedgerExporterTest {
+    private static final int SEP = LedgerDates.epochDay(2025, 9, 30);
+    private static final int OCT = LedgerDates.epochDay(2025, 10, 1);
+
+    @TempDir
+    File folder;
+
+    // A September segment and two October day files, listed newest first
+    private List<File> files() throws IOException {
+        RecordBatch september = new RecordBatch();
+        september.add(SEP - 1, 8 * 60, 5_00, "Transport", "Bus");
+        september.add(SEP, 9 * 60 + 5, 12_50, "Food", "Tea, hot");
+        File segment = MonthSegment.segmentFile(folder, LedgerDates.monthIndex(SEP));
+        MonthSegment.write(segment, september);
+
+        RecordBatch october = new RecordBatch();
+        october.add(OCT, 13 * 60, 120_00, "Food", "Lunch \"thali\"");
+        october.add(OCT + 1, 20 * 60 + 30, 1_000_00, "Rent", "October");
+        DayFiles.append(folder, day -> DayFiles.dayFile(folder, day), october);
+        Files.write(DayFiles.dayFile(folder, OCT).toPath(), "not a record\n".getBytes(StandardCharsets.UTF_8),
+            StandardOpenOption.APPEND);
+        return List.of(DayFiles.dayFile(folder, OCT + 1), DayFiles.dayFile(folder, OCT), segment);
+    }
+
+    private LedgerExporter.Result export(LedgerExporter.Query query, LedgerExporter.Format format)
+            throws IOException, InterruptedException {
+        return new LedgerExporter().export(files(), query, format, new File(folder, "out"));
+    }
+
+    private List<String> lines() throws IOException {
+        return Files.readAllLines(new File(folder, "out").toPath(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void csvListsEveryRowInDateOrderWithQuotedFields() throws IOException, InterruptedException {
+        LedgerExporter.Result result = export(new LedgerExporter.Query(), LedgerExporter.Format.CSV);
+
+        assertEquals(List.of(
+            "date,amount,category,description",
+            "29-09-2025 08:00,5.00,Transport,Bus",
+            "30-09-2025 09:05,12.50,Food,\"Tea, hot\"",
+            "01-10-2025 13:00,120.00,Food,\"Lunch \"\"thali\"\"\"",
+            "02-10-2025 20:30,1000.00,Rent,October"), lines());
+        assertEquals(4, result.rows);
+        assertEquals(3, result.files);
+        assertEquals(1, result.skippedLines);
+    }
+
+    @Test
+    void jsonLinesKeepOnlyTheQueriedDaysAndCategories() throws IOException, InterruptedException {
+        LedgerExporter.Query query = new LedgerExporter.Query().between(SEP, OCT + 1).categories(Set.of("Food"));
+        LedgerExporter.Result result = export(query, LedgerExporter.Format.JSONL);
+        List<Map<String, String>> records = new ArrayList<>();
+        for (String line : lines()) records.add(Json.parseObject(line));
+
+        assertEquals(List.of(
+            Map.of("date", "30-09-2025 09:05", "amount", "12.50", "category", "Food", "description", "Tea, hot"),
+            Map.of("date", "01-10-2025 13:00", "amount", "120.00", "category", "Food",
+                "description", "Lunch \"thali\"")), records);
+        assertEquals(2, result.rows);
+    }
+}
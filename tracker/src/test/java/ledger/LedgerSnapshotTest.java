@@ -0,0 +1,105 @@
+package ledger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LedgerSnapshotTest {
+    private static final int JAN = LedgerDates.epochDay(2025, 1, 10);
+    private static final int FEB = LedgerDates.epochDay(2025, 2, 10);
+    private static final int MAR = LedgerDates.epochDay(2025, 3, 10);
+    private static final int APR = LedgerDates.epochDay(2025, 4, 10);
+
+    @TempDir
+    File folder;
+
+    private void append(int epochDay, String... descriptions) throws IOException {
+        RecordBatch rows = new RecordBatch();
+        for (String description : descriptions) rows.add(epochDay, 9 * 60, 10_00, "Food", description);
+        DayFiles.append(folder, day -> DayFiles.dayFile(folder, day), rows);
+    }
+
+    // Restores, parses what needs replaying and returns every description with its day
+    private Set<String> load(LedgerSnapshot snapshot, List<File> replayed) throws IOException {
+        List<File> replay = new ArrayList<>();
+        RecordBatch rows = snapshot.restore(DayFiles.list(folder), replay);
+        List<MalformedLine> malformed = new ArrayList<>();
+        for (File file : replay) rows.addAll(LedgerLoader.readDayFile(file, malformed));
+        assertTrue(malformed.isEmpty());
+        replayed.addAll(replay);
+
+        Set<String> seen = new TreeSet<>();
+        for (int i = 0; i < rows.size(); i++) {
+            seen.add(rows.description(i) + "@" + LedgerDates.formatDay(rows.day(i)));
+        }
+        LedgerStore store = new LedgerStore();
+        rows.appendTo(store);
+        snapshot.checkpoint(store).write();
+        return seen;
+    }
+
+    private static Set<String> names(List<File> files) {
+        Set<String> names = new TreeSet<>();
+        for (File file : files) names.add(file.getName());
+        return names;
+    }
+
+    @Test
+    void onlyMonthsWithAChangedNewOrDeletedFileAreReplayed() throws IOException {
+        append(JAN, "Tea");
+        append(FEB, "Lunch");
+        append(MAR, "Bus");
+        append(APR, "Rent");
+        append(APR + 1, "Power");
+        List<File> replayed = new ArrayList<>();
+        Set<String> before = load(new LedgerSnapshot(folder), replayed);
+        assertEquals(5, replayed.size());
+
+        // A fresh start with nothing changed restores every row and parses nothing
+        replayed.clear();
+        assertEquals(before, load(new LedgerSnapshot(folder), replayed));
+        assertEquals(List.of(), replayed);
+
+        append(FEB, "Dinner");
+        append(MAR + 1, "Train");
+        Files.delete(DayFiles.dayFile(folder, APR + 1).toPath());
+        replayed.clear();
+        Set<String> after = load(new LedgerSnapshot(folder), replayed);
+
+        assertEquals(Set.of(DayFiles.dayFile(folder, FEB).getName(), DayFiles.dayFile(folder, MAR).getName(),
+            DayFiles.dayFile(folder, MAR + 1).getName(), DayFiles.dayFile(folder, APR).getName()), names(replayed));
+        assertEquals(new TreeSet<>(List.of("Tea@10-01-2025", "Lunch@10-02-2025", "Dinner@10-02-2025",
+            "Bus@10-03-2025", "Train@11-03-2025", "Rent@10-04-2025")), after);
+    }
+
+    @Test
+    void aDamagedSnapshotReplaysEverything() throws IOException {
+        append(JAN, "Tea");
+        append(FEB, "Lunch");
+        List<File> replayed = new ArrayList<>();
+        Set<String> before = load(new LedgerSnapshot(folder), replayed);
+
+        File file = new File(folder, LedgerSnapshot.FILE_NAME);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file.toPath(), bytes);
+        replayed.clear();
+        assertEquals(before, load(new LedgerSnapshot(folder), replayed));
+        assertEquals(2, replayed.size());
+
+        Files.write(file.toPath(), "EXSN".getBytes(StandardCharsets.UTF_8));
+        replayed.clear();
+        assertEquals(before, load(new LedgerSnapshot(folder), replayed));
+        assertEquals(2, replayed.size());
+    }
+}
@@ -0,0 +1,67 @@
+package ledger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class MoneyTest {
+    @Test
+    void parsesWholeAndFractionalRupees() {
+        assertEquals(12_345_00, Money.parse("12345"));
+        assertEquals(1_50, Money.parse("1.5"));
+        assertEquals(1_05, Money.parse("1.05"));
+        assertEquals(50, Money.parse(".50"));
+        assertEquals(7_00, Money.parse("7."));
+    }
+
+    @Test
+    void roundsHalfUpPastTheSecondDecimal() {
+        assertEquals(1_23, Money.parse("1.234"));
+        assertEquals(1_24, Money.parse("1.235"));
+        assertEquals(1_00, Money.parse("0.999"));
+        assertEquals(-1_24, Money.parse("-1.235"));
+    }
+
+    @Test
+    void ignoresGroupingCommasSignsAndSurroundingSpace() {
+        assertEquals(1_23_45_678_90L, Money.parse(" 1,23,45,678.90 "));
+        assertEquals(-250_00, Money.parse("-250"));
+        assertEquals(250_00, Money.parse("+250"));
+    }
+
+    @Test
+    void rejectsInvalidAndOversizedAmounts() {
+        assertThrows(NumberFormatException.class, () -> Money.parse(""));
+        assertThrows(NumberFormatException.class, () -> Money.parse("-"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("12a"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1.2.3"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1234567890123456"));
+    }
+
+    @Test
+    void groupsDigitsInLakhsAndCrores() {
+        assertEquals("0.00", Money.appendGrouped(new StringBuilder(), 0).toString());
+        assertEquals("999.99", Money.appendGrouped(new StringBuilder(), 999_99).toString());
+        assertEquals("1,000.00", Money.appendGrouped(new StringBuilder(), 1_000_00).toString());
+        assertEquals("1,00,000.00", Money.appendGrouped(new StringBuilder(), 1_00_000_00L).toString());
+        assertEquals("1,23,45,678.90", Money.appendGrouped(new StringBuilder(), 1_23_45_678_90L).toString());
+        assertEquals("-12,345.05", Money.appendGrouped(new StringBuilder(), -12_345_05).toString());
+    }
+
+    @Test
+    void formatsInrAndPlainAmounts() {
+        assertEquals("INR 1,234.50", Money.formatInr(1_234_50));
+        assertEquals("-INR 0.05", Money.formatInr(-5));
+        assertEquals("1234.50", Money.plain(1_234_50));
+        assertEquals("-0.05", Money.plain(-5));
+    }
+
+    @Test
+    void plainFormatParsesBackToTheSameAmount() {
+        long[] amounts = {0, 1, 99, 100, 1_234_56, -98_76, 999_999_999_999_99L};
+        for (long paise : amounts) {
+            assertEquals(paise, Money.parse(Money.plain(paise)));
+        }
+    }
+}
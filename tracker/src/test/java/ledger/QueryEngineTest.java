@@ -0,0 +1,78 @@
+package ledger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class QueryEngineTest {
+    private static final String[] CATEGORIES = {"Food", "Transport", "Rent", "Fuel"};
+    private static final int FIRST_DAY = LedgerDates.epochDay(2025, 1, 1);
+
+    private static LedgerStore randomStore(Random random, int rows) {
+        LedgerStore store = new LedgerStore();
+        for (int i = 0; i < rows; i++) {
+            store.add(FIRST_DAY + random.nextInt(365), random.nextInt(1440), 100 + random.nextInt(100_000),
+                CATEGORIES[random.nextInt(CATEGORIES.length)], "item " + random.nextInt(50));
+        }
+        return store;
+    }
+
+    // What select should return, found by checking every row
+    private static int[] scan(LedgerStore store, Set<String> categories, long min, long max, int from, int to) {
+        List<Integer> rows = new ArrayList<>();
+        for (int row = 0; row < store.size(); row++) {
+            if (categories != null && !categories.contains(store.category(row))) continue;
+            if (store.paise(row) < min || store.paise(row) > max) continue;
+            if (store.day(row) < from || store.day(row) > to) continue;
+            rows.add(row);
+        }
+        return rows.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static void assertQueries(LedgerStore store) {
+        QueryEngine engine = store.queryEngine();
+        Set<String> foodOrFuel = Set.of("Food", "Fuel");
+        assertArrayEquals(scan(store, foodOrFuel, Long.MIN_VALUE, Long.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE),
+            engine.select(new LedgerQuery().categories(foodOrFuel)));
+        assertArrayEquals(scan(store, null, 5_000, 20_000, Integer.MIN_VALUE, Integer.MAX_VALUE),
+            engine.select(new LedgerQuery().amountBetween(5_000, 20_000)));
+        assertArrayEquals(scan(store, null, Long.MIN_VALUE, Long.MAX_VALUE, FIRST_DAY + 30, FIRST_DAY + 59),
+            engine.select(new LedgerQuery().between(FIRST_DAY + 30, FIRST_DAY + 59)));
+        assertArrayEquals(scan(store, Set.of("Rent"), 1_000, 50_000, FIRST_DAY + 100, FIRST_DAY + 200),
+            engine.select(new LedgerQuery().categories(Set.of("Rent"))
+                .amountBetween(1_000, 50_000).between(FIRST_DAY + 100, FIRST_DAY + 200)));
+        assertArrayEquals(new int[0], engine.select(new LedgerQuery().categories(Set.of("Unknown"))));
+    }
+
+    @Test
+    void matchesAFullScan() {
+        assertQueries(randomStore(new Random(3), 20_000));
+    }
+
+    @Test
+    void emptyQuerySelectsEverything() {
+        assertNull(randomStore(new Random(5), 10).queryEngine().select(new LedgerQuery()));
+    }
+
+    @Test
+    void followsAppendsRemovesAndUpdates() {
+        Random random = new Random(9);
+        LedgerStore store = randomStore(random, 5_000);
+        assertQueries(store);
+
+        for (int i = 0; i < 500; i++) {
+            store.add(FIRST_DAY + random.nextInt(365), 0, 100 + random.nextInt(100_000),
+                CATEGORIES[random.nextInt(CATEGORIES.length)], "late");
+        }
+        assertQueries(store);
+
+        for (int i = 0; i < 300; i++) store.remove(random.nextInt(store.size()));
+        store.update(0, FIRST_DAY + 45, 0, 10_000, "Fuel", "changed");
+        assertQueries(store);
+    }
+}
@@ -0,0 +1,133 @@
+package ledger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class RecordParserTest {
+    /** Collects what the parser reports, one string per callback. */
+    private static final class Events implements RecordParser.Handler {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void record(int epochDay, int minute, long paise, String category, String description) {
+            record(0, epochDay, minute, paise, category, description);
+        }
+
+        @Override
+        public void record(long id, int epochDay, int minute, long paise, String category, String description) {
+            events.add(LedgerDates.formatDateTime(epochDay, minute) + "|" + Money.plain(paise) + "|" + category
+                + "|" + description + "|" + Long.toHexString(id));
+        }
+
+        @Override
+        public void tombstone(long id) {
+            events.add("dead " + Long.toHexString(id));
+        }
+
+        @Override
+        public void malformed(long offset, int line, String reason) {
+            events.add("bad " + line + "@" + offset + " " + reason);
+        }
+    }
+
+    private static List<String> parse(String text) throws IOException {
+        Events events = new Events();
+        new RecordParser().parse(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), events);
+        return events.events;
+    }
+
+    @Test
+    void parsesRecordsWithAndWithoutTime() throws IOException {
+        assertEquals(List.of(
+                "30-10-2025 21:38|250.50|Food|Lunch with team|0",
+                "01-11-2025 00:00|12.00|Transport|Bus|0"),
+            parse("30-10-2025 21:38|250.5|Food|Lunch with team\n01-11-2025|12|Transport|Bus\n"));
+    }
+
+    @Test
+    void readsTrailingIdsAndTombstones() throws IOException {
+        assertEquals(List.of("30-10-2025 21:38|1.00|Food|x|1a2b", "dead 1a2b"),
+            parse("30-10-2025 21:38|1.00|Food|x|#1a2b\n-#1a2b\n"));
+    }
+
+    @Test
+    void readsALineEndingInASeparatorAsHavingNoId() throws IOException {
+        assertEquals(List.of("30-10-2025 21:38|1.00|Food|x|0", "30-10-2025 21:39|2.00|Food|y|0"),
+            parse("30-10-2025 21:38|1.00|Food|x|\n30-10-2025 21:39|2|Food|y|\r\n"));
+        assertEquals(List.of("30-10-2025 21:38|1.00|Food|x|0"), parse("30-10-2025 21:38|1.00|Food|x|"));
+
+        RecordBatch rows = new RecordBatch();
+        assertTrue(DayFiles.parseLine("30-10-2025 21:38|1.00|Food|x|", rows));
+        assertEquals("x", rows.description(0));
+    }
+
+    @Test
+    void cleanedFieldsKeepARecordOnOneValidLine() throws IOException {
+        String line = DayFiles.appendLine(new StringBuilder(), 0x2a, LedgerDates.epochDay(2025, 10, 30), 60, 10_00,
+            DayFiles.clean(" Food|Drink "), DayFiles.clean("Tea|Snacks\r\nand more")).toString();
+        assertEquals(List.of("30-10-2025 01:00|10.00|Food/Drink|Tea/Snacks  and more|2a"), parse(line + "\n"));
+    }
+
+    @Test
+    void handlesCrlfBlankLinesAndAMissingFinalNewline() throws IOException {
+        assertEquals(List.of("30-10-2025 21:38|1.00|Food|a|0", "30-10-2025 21:39|2.00|Food|b|0"),
+            parse("30-10-2025 21:38|1|Food|a\r\n\r\n\n30-10-2025 21:39|2|Food|b"));
+    }
+
+    @Test
+    void roundsAmountsToWholePaise() throws IOException {
+        assertEquals(List.of("30-10-2025 21:38|10.13|Food|x|0", "30-10-2025 21:38|-3.50|Food|refund|0"),
+            parse("30-10-2025 21:38|10.125|Food|x\n30-10-2025 21:38|-3.5|Food|refund\n"));
+    }
+
+    @Test
+    void reportsMalformedLinesWithLineAndByteOffset() throws IOException {
+        String[] lines = {
+            "30-10-2025 21:38|1|Food|a",
+            "garbage",
+            "31-02-2025 10:00|1|Food|a",
+            "30-10-2025 25:00|1|Food|a",
+            "30-10-2025 21:38|abc|Food|a",
+            "30-10-2025 21:38|1|Food|",
+            "30-10-2025 21:38|1|Food|a|id",
+            "-#zz",
+        };
+        long[] starts = new long[lines.length];
+        for (int i = 1; i < lines.length; i++) starts[i] = starts[i - 1] + lines[i - 1].length() + 1;
+
+        assertEquals(List.of(
+                "30-10-2025 21:38|1.00|Food|a|0",
+                "bad 2@" + starts[1] + " expected 4 fields but found 1",
+                "bad 3@" + starts[2] + " invalid date",
+                "bad 4@" + starts[3] + " invalid time",
+                "bad 5@" + (starts[4] + 17) + " invalid amount",
+                "bad 6@" + (starts[5] + 24) + " missing description",
+                "bad 7@" + (starts[6] + 26) + " invalid id, expected #hex",
+                "bad 8@" + starts[7] + " invalid tombstone id"),
+            parse(String.join("\n", lines) + "\n"));
+    }
+
+    @Test
+    void keepsMultibyteTextAndLinesLongerThanTheBuffer() throws IOException {
+        String description = "चाय ".repeat(30_000).trim();
+        assertEquals(List.of("30-10-2025 21:38|5.00|Food|" + description + "|0"),
+            parse("30-10-2025 21:38|5|Food|" + description + "\n"));
+    }
+
+    @Test
+    void parseLineReportsWhetherTheLineWasARecord() {
+        RecordParser parser = new RecordParser();
+        Events events = new Events();
+        assertTrue(parser.parseLine("30-10-2025 21:38|1|Food|a", events));
+        assertFalse(parser.parseLine("30-10-2025 21:38|1|Food", events));
+        assertFalse(parser.parseLine("", events));
+    }
+}
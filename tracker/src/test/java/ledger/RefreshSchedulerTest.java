@@ -0,0 +1,65 @@
+package ledger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class RefreshSchedulerTest {
+    /** Fails the first frame at {@code failAt}, then reports the dirty flags it was given. */
+    private static final class FlakyStage implements RefreshScheduler.Stage<Integer> {
+        final String failAt;
+        final AtomicInteger applied = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+        int frames;
+
+        FlakyStage(String failAt) {
+            this.failAt = failAt;
+        }
+
+        private void maybeFail(String at, int frame) {
+            if (frame == 1 && at.equals(failAt)) throw new IllegalStateException(at + " failed");
+        }
+
+        @Override
+        public Callable<Integer> prepare(int dirty) {
+            int frame = ++frames;
+            maybeFail("prepare", frame);
+            return () -> {
+                maybeFail("job", frame);
+                return frame;
+            };
+        }
+
+        @Override
+        public void apply(int dirty, Integer frame) {
+            maybeFail("apply", frame);
+            applied.set(dirty);
+            done.countDown();
+        }
+    }
+
+    private static void assertRecovers(String failAt) throws InterruptedException {
+        FlakyStage stage = new FlakyStage(failAt);
+        RefreshScheduler<Integer> scheduler = new RefreshScheduler<>(stage);
+        try {
+            scheduler.markDirty(1);
+            // Marks again until a frame after the failed one lands
+            for (int i = 0; i < 100 && !stage.done.await(20, TimeUnit.MILLISECONDS); i++) scheduler.markDirty(2);
+            assertEquals(0, stage.done.getCount(), failAt);
+            assertEquals(2, stage.applied.get() & 2, failAt);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void aFrameThatThrowsDoesNotStopLaterFrames() throws InterruptedException {
+        assertRecovers("prepare");
+        assertRecovers("job");
+        assertRecovers("apply");
+    }
+}
@@ -0,0 +1,97 @@
+package ledger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+class ReportEngineTest {
+    private static final String[] CATEGORIES = {"Food", "Groceries", "Restaurants", "Transport", "Rent"};
+    private static final int FIRST_DAY = LedgerDates.epochDay(2023, 6, 1);
+
+    private static LedgerStore randomStore(Random random, int rows) {
+        CategoryDictionary dictionary = new CategoryDictionary();
+        dictionary.define("Groceries", "Food");
+        dictionary.define("Restaurants", "Food");
+        LedgerStore store = new LedgerStore(dictionary);
+        for (int i = 0; i < rows; i++) {
+            // Rows out of date order, so slices grow their month grids both ways
+            store.add(FIRST_DAY + random.nextInt(900), random.nextInt(1440), 100 + random.nextInt(100_000),
+                CATEGORIES[random.nextInt(CATEGORIES.length)], "item " + random.nextInt(500));
+        }
+        return store;
+    }
+
+    // Checks every number of the report against sums taken row by row
+    private static void assertMatchesScan(LedgerStore store, int fromDay, int toDay) {
+        ReportEngine.Report report = new ReportEngine().run(store, fromDay, toDay, 5);
+        Map<Integer, Map<String, Long>> cells = new TreeMap<>();
+        Map<String, Long> byCategory = new HashMap<>();
+        Map<String, Long> byDescription = new HashMap<>();
+        int rows = 0;
+        long total = 0;
+        for (int row = 0; row < store.size(); row++) {
+            int day = store.day(row);
+            if (day < fromDay || day > toDay) continue;
+            String root = store.categoryName(store.categories().root(store.categoryId(row)));
+            long paise = store.paise(row);
+            cells.computeIfAbsent(LedgerDates.monthIndex(day), m -> new HashMap<>()).merge(root, paise, Long::sum);
+            byCategory.merge(root, paise, Long::sum);
+            byDescription.merge(store.description(row), paise, Long::sum);
+            rows++;
+            total += paise;
+        }
+
+        assertEquals(rows, report.rows);
+        assertEquals(total, report.total);
+        // Subcategories roll up into Food
+        assertEquals(byCategory.keySet(), new HashSet<>(report.categories));
+        assertEquals(cells.keySet().iterator().next(), report.firstMonth);
+        for (int c = 0; c < report.categories.size(); c++) {
+            String category = report.categories.get(c);
+            assertEquals(byCategory.get(category), report.categoryTotal(c));
+            if (c > 0) assertTrue(report.categoryTotal(c - 1) >= report.categoryTotal(c));
+            for (int month = report.firstMonth; month < report.firstMonth + report.months; month++) {
+                Map<String, Long> cell = cells.getOrDefault(month, Map.of());
+                assertEquals(cell.getOrDefault(category, 0L), report.cell(month, c));
+            }
+        }
+        for (Map.Entry<Integer, Map<String, Long>> month : cells.entrySet()) {
+            long sum = month.getValue().values().stream().mapToLong(Long::longValue).sum();
+            assertEquals(sum, report.monthTotal(month.getKey()));
+        }
+
+        List<Long> largest = new ArrayList<>(byDescription.values());
+        largest.sort((a, b) -> Long.compare(b, a));
+        assertEquals(5, report.top.size());
+        for (int i = 0; i < report.top.size(); i++) {
+            ReportEngine.DescriptionTotal top = report.top.get(i);
+            assertEquals(largest.get(i), top.paise);
+            assertEquals(byDescription.get(top.description), top.paise);
+        }
+    }
+
+    @Test
+    void matchesAScanAcrossManySlices() {
+        LedgerStore store = randomStore(new Random(7), 3 * ReportEngine.LEAF_ROWS + 123);
+        assertMatchesScan(store, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        assertMatchesScan(store, FIRST_DAY + 200, FIRST_DAY + 500);
+    }
+
+    @Test
+    void anEmptyRangeGivesAnEmptyReport() {
+        ReportEngine.Report report = new ReportEngine().run(randomStore(new Random(9), 100), 0, 1, 3);
+        assertEquals(0, report.rows);
+        assertEquals(0, report.total);
+        assertEquals(0, report.months);
+        assertEquals(List.of(), report.categories);
+        assertEquals(List.of(), report.top);
+    }
+}
@@ -0,0 +1,75 @@
+package ledger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RollupTest {
+    private static final FilenameFilter EXPENSE_FILES =
+        (dir, name) -> name.endsWith(".txt") && !name.equals("budget.txt");
+
+    @TempDir
+    File folder;
+
+    private void append(String day, String... lines) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) text.append(day).append(' ').append(line).append('\n');
+        Files.write(new File(folder, day + ".txt").toPath(), text.toString().getBytes(StandardCharsets.UTF_8),
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private Rollup open() throws IOException {
+        return Rollup.open(folder, EXPENSE_FILES);
+    }
+
+    private static long categoryTotal(Rollup rollup, String category) {
+        long[] total = rollup.categories().get(category);
+        return total == null ? 0 : total[0];
+    }
+
+    @Test
+    void totalsFollowAppendsAndDeletesBetweenOpens() throws IOException {
+        append("30-10-2025", "09:00|10|Food|Tea", "13:00|120|Food|Lunch");
+        append("01-11-2025", "08:00|30|Transport|Bus");
+        Rollup rollup = open();
+        assertEquals(160_00, rollup.total());
+        assertEquals(3, rollup.count());
+        assertTrue(new File(folder, Rollup.FILE_NAME).exists());
+
+        // Another writer appends to one day and starts a new one
+        append("30-10-2025", "20:00|40|Food|Dinner|#2a");
+        append("02-11-2025", "10:00|5|Other|Pen");
+        rollup = open();
+        assertEquals(205_00, rollup.total());
+        assertEquals(170_00, categoryTotal(rollup, "Food"));
+        assertEquals(35_00, rollup.monthTotal(LedgerDates.monthIndex(LedgerDates.epochDay(2025, 11, 1))));
+
+        new File(folder, "30-10-2025.txt").delete();
+        rollup = open();
+        assertEquals(35_00, rollup.total());
+        assertEquals(0, categoryTotal(rollup, "Food"));
+        assertEquals(2, rollup.count());
+
+        // Unchanged files are served from the sidecar alone
+        assertEquals(35_00, open().total());
+    }
+
+    @Test
+    void anUnreadableSidecarIsRebuiltFromTheFiles() throws IOException {
+        append("30-10-2025", "09:00|10|Food|Tea");
+        open();
+        Files.write(new File(folder, Rollup.FILE_NAME).toPath(), "R|9\nD|junk\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(10_00, open().total());
+
+        Rollup.invalidate(folder);
+        assertEquals(10_00, open().total());
+    }
+}
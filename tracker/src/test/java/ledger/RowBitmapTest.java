@@ -0,0 +1,89 @@
+package ledger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+class RowBitmapTest {
+    private static final int UNIVERSE = 300_000;
+
+    // Rows drawn with the given density; dense chunks become bitmap containers
+    private static TreeSet<Integer> randomRows(Random random, double density) {
+        TreeSet<Integer> rows = new TreeSet<>();
+        for (int row = 0; row < UNIVERSE; row++) {
+            if (random.nextDouble() < density) rows.add(row);
+        }
+        return rows;
+    }
+
+    private static int[] toArray(TreeSet<Integer> rows) {
+        return rows.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test
+    void appendAndBuildersAgree() {
+        Random random = new Random(7);
+        for (double density : new double[] {0.001, 0.05, 0.5}) {
+            int[] rows = toArray(randomRows(random, density));
+            RowBitmap sorted = RowBitmap.ofSorted(rows, rows.length);
+            assertArrayEquals(rows, sorted.toArray());
+            assertEquals(rows.length, sorted.cardinality());
+
+            int[] shuffled = rows.clone();
+            for (int i = shuffled.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int t = shuffled[i];
+                shuffled[i] = shuffled[j];
+                shuffled[j] = t;
+            }
+            assertArrayEquals(rows, RowBitmap.ofUnsorted(shuffled, 0, shuffled.length, UNIVERSE).toArray());
+        }
+    }
+
+    @Test
+    void andAndOrMatchSetOperationsForEveryContainerPair() {
+        Random random = new Random(11);
+        double[] densities = {0.0005, 0.02, 0.3};
+        for (double da : densities) {
+            for (double db : densities) {
+                TreeSet<Integer> a = randomRows(random, da);
+                TreeSet<Integer> b = randomRows(random, db);
+                RowBitmap left = RowBitmap.ofSorted(toArray(a), a.size());
+                RowBitmap right = RowBitmap.ofSorted(toArray(b), b.size());
+
+                TreeSet<Integer> both = new TreeSet<>(a);
+                both.retainAll(b);
+                TreeSet<Integer> either = new TreeSet<>(a);
+                either.addAll(b);
+                assertArrayEquals(toArray(both), left.and(right).toArray(), da + " and " + db);
+                assertArrayEquals(toArray(either), left.or(right).toArray(), da + " or " + db);
+                assertEquals(either.size(), left.or(right).cardinality());
+            }
+        }
+    }
+
+    @Test
+    void emptySetsAndDisjointChunks() {
+        RowBitmap empty = new RowBitmap();
+        RowBitmap low = RowBitmap.ofSorted(new int[] {1, 2, 3}, 3);
+        RowBitmap high = RowBitmap.ofSorted(new int[] {70_000, 200_000}, 2);
+        assertTrue(empty.isEmpty());
+        assertTrue(low.and(high).isEmpty());
+        assertArrayEquals(new int[] {1, 2, 3, 70_000, 200_000}, low.or(high).toArray());
+        assertArrayEquals(low.toArray(), low.or(empty).toArray());
+        assertTrue(empty.and(low).isEmpty());
+    }
+
+    @Test
+    void appendRejectsRowsOutOfOrder() {
+        RowBitmap bitmap = new RowBitmap();
+        bitmap.append(100_000);
+        assertThrows(IllegalArgumentException.class, () -> bitmap.append(5));
+        assertThrows(IllegalArgumentException.class, () -> bitmap.append(100_000));
+    }
+}
@@ -0,0 +1,103 @@
+package ledger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileLock;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StorageLocksTest {
+    private static final int MONTH = LedgerDates.monthIndex(LedgerDates.epochDay(2025, 10, 1));
+
+    @TempDir
+    File folder;
+
+    @Test
+    void bumpsAreSeenByVersionsAndLaterHolds() throws IOException {
+        StorageLocks locks = StorageLocks.of(folder);
+        assertSame(locks, StorageLocks.of(new File(folder, ".")));
+        assertEquals(Map.of(), locks.versions());
+
+        long version;
+        try (StorageLocks.Held held = locks.lock(MONTH)) {
+            assertEquals(0, held.version(MONTH));
+            version = held.bump(MONTH);
+            assertNotEquals(0, version);
+        }
+        try (StorageLocks.Held held = locks.lock(List.of(MONTH + 1, MONTH))) {
+            assertEquals(version, held.version(MONTH));
+            assertNotEquals(version, held.bump(MONTH));
+            held.set(MONTH + 1, 42);
+        }
+        Map<Integer, Long> versions = locks.versions();
+        assertEquals(2, versions.size());
+        assertEquals(42L, versions.get(MONTH + 1));
+        assertTrue(versions.get(MONTH) > version);
+    }
+
+    @Test
+    void onlyWritersToTheSameStripeWaitForEachOther() throws Exception {
+        StorageLocks locks = StorageLocks.of(folder);
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        StorageLocks.Held held = locks.lock(MONTH);
+        try {
+            // Another month on another stripe goes ahead at once
+            other.submit(() -> {
+                try (StorageLocks.Held next = locks.lock(MONTH + 1)) {
+                    return next.bump(MONTH + 1);
+                }
+            }).get(10, TimeUnit.SECONDS);
+
+            // The same month waits until the first hold is closed
+            CountDownLatch started = new CountDownLatch(1);
+            Future<Long> waiting = other.submit(() -> {
+                started.countDown();
+                try (StorageLocks.Held next = locks.lock(MONTH)) {
+                    return next.version(MONTH);
+                }
+            });
+            started.await();
+            try {
+                waiting.get(200, TimeUnit.MILLISECONDS);
+                throw new AssertionError("Took a held month");
+            } catch (TimeoutException expected) {
+                assertFalse(waiting.isDone());
+            }
+            long version = held.bump(MONTH);
+            held.close();
+            held = null;
+            assertEquals(version, waiting.get(10, TimeUnit.SECONDS));
+        } finally {
+            if (held != null) held.close();
+            other.shutdownNow();
+        }
+    }
+
+    @Test
+    void aRunningProcessCannotBeClaimed() throws IOException {
+        StorageLocks locks = StorageLocks.of(folder);
+        locks.claimProcess();
+        assertNull(locks.claimDeadProcess(ProcessHandle.current().pid()));
+
+        FileLock claim = locks.claimDeadProcess(Integer.MAX_VALUE);
+        assertNotNull(claim);
+        assertNull(locks.claimDeadProcess(Integer.MAX_VALUE));
+        claim.release();
+    }
+}
@@ -0,0 +1,80 @@
+package ledger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class StringPoolTest {
+    private static void assertPoolsAgree(StringPool pool) {
+        Random random = new Random(17);
+        List<String> values = new ArrayList<>();
+        Map<String, Integer> ids = new HashMap<>();
+        for (int i = 0; i < 50_000; i++) {
+            // Repeats, multibyte text and the odd long value, enough to grow every buffer
+            String value = random.nextInt(3) == 0 ? "चाय " + random.nextInt(2_000)
+                : random.nextInt(500) == 0 ? "x".repeat(5_000 + i) : "item " + random.nextInt(20_000);
+            int id = pool.intern(value);
+            Integer known = ids.putIfAbsent(value, id);
+            if (known == null) {
+                assertEquals(values.size(), id, value);
+                values.add(value);
+            } else {
+                assertEquals(known.intValue(), id, value);
+            }
+        }
+        assertEquals(values.size(), pool.size());
+        for (int id = 0; id < values.size(); id++) assertEquals(values.get(id), pool.get(id));
+        assertEquals(values.size(), pool.intern(""));
+        assertEquals("", pool.get(values.size()));
+    }
+
+    @Test
+    void heapPoolNumbersValuesInOrderOfFirstUse() {
+        StringPool pool = new StringPool.Heap();
+        assertPoolsAgree(pool);
+        assertEquals(0, pool.offHeapBytes());
+    }
+
+    @Test
+    void offHeapPoolNumbersValuesInOrderOfFirstUse() {
+        StringPool pool = new StringPool.OffHeap();
+        assertPoolsAgree(pool);
+        assertTrue(pool.offHeapBytes() > 0);
+    }
+
+    @Test
+    void offHeapColumnsKeepRowsAcrossGrowthAndRemoval() {
+        LedgerColumns heap = new LedgerColumns.Heap(4);
+        LedgerColumns offHeap = new LedgerColumns.OffHeap(4);
+        int size = 0;
+        for (int row = 0; row < 1_000; row++, size++) {
+            if (size == heap.capacity()) {
+                heap.grow(size * 2, size);
+                offHeap.grow(size * 2, size);
+            }
+            heap.set(row, row + 1L << 40, 20_000 + row, row % 1440, -row * 7L, row % 9, row / 3);
+            offHeap.set(row, row + 1L << 40, 20_000 + row, row % 1440, -row * 7L, row % 9, row / 3);
+        }
+        for (int row : new int[] {999, 500, 0, 250}) {
+            heap.removeRow(row, size);
+            offHeap.removeRow(row, size);
+            size--;
+        }
+        for (int row = 0; row < size; row++) {
+            assertEquals(heap.id(row), offHeap.id(row));
+            assertEquals(heap.day(row), offHeap.day(row));
+            assertEquals(heap.minute(row), offHeap.minute(row));
+            assertEquals(heap.paise(row), offHeap.paise(row));
+            assertEquals(heap.category(row), offHeap.category(row));
+            assertEquals(heap.description(row), offHeap.description(row));
+        }
+        assertEquals(20_001, offHeap.day(0));
+        assertEquals(20_998, offHeap.day(size - 1));
+    }
+}